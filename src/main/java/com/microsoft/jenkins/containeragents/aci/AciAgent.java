@@ -3,6 +3,7 @@ package com.microsoft.jenkins.containeragents.aci;
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
+import com.microsoft.jenkins.containeragents.aci.usage.JarCacheRecorder;
 import com.microsoft.jenkins.containeragents.remote.ISSHLaunchable;
 import com.microsoft.jenkins.containeragents.remote.SSHLauncher;
 import com.microsoft.jenkins.containeragents.util.AzureContainerUtils;
@@ -27,7 +28,9 @@ import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.StaplerRequest2;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,6 +52,22 @@ public class AciAgent extends AbstractCloudSlave implements ISSHLaunchable, Trac
 
     private final String launchType;
 
+    private final int timeout;
+
+    private final List<AciBootstrapFile> bootstrapFiles;
+
+    private final String jvmOptions;
+
+    private final boolean appCds;
+
+    private final String jarCachePath;
+
+    private final String jumpHost;
+
+    private final String jumpPort;
+
+    private final String jumpCredentialsId;
+
     private String host;
 
     private final ProvisioningActivity.Id provisioningId;
@@ -61,6 +80,7 @@ public class AciAgent extends AbstractCloudSlave implements ISSHLaunchable, Trac
                 : new SSHLauncher());
 
         setLabelString(template.getLabel());
+        setNumExecutors(template.getNumExecutors());
         setRetentionStrategy(template.getRetentionStrategy());
 
         this.credentialsId = cloud.getCredentialsId();
@@ -69,6 +89,15 @@ public class AciAgent extends AbstractCloudSlave implements ISSHLaunchable, Trac
         this.sshCredentialsId = template.getSshCredentialsId();
         this.sshPort = template.getSshPort();
         this.launchType = template.getLaunchMethodType();
+        this.timeout = template.getTimeout();
+        this.bootstrapFiles = new ArrayList<>(template.getBootstrapFiles());
+        this.jvmOptions = template.getJvmOptions();
+        this.appCds = template.isAppCds();
+        this.jarCachePath = template.getJarCachePath();
+        final AciPrivateIpAddress privateIpAddress = template.getPrivateIpAddress();
+        this.jumpHost = privateIpAddress == null ? null : privateIpAddress.getJumpHost();
+        this.jumpPort = privateIpAddress == null ? null : privateIpAddress.getJumpPort();
+        this.jumpCredentialsId = privateIpAddress == null ? null : privateIpAddress.getJumpCredentialsId();
 
         this.provisioningId = new ProvisioningActivity.Id(cloud.name, template.getName(), getNodeName());
     }
@@ -84,17 +113,17 @@ public class AciAgent extends AbstractCloudSlave implements ISSHLaunchable, Trac
         if (computer == null || StringUtils.isEmpty(cloudName)) {
             return;
         }
+        // The container group is still deleted with the credentials of the agent when its cloud was removed
         final Cloud cloud = Jenkins.get().getCloud(cloudName);
-        if (cloud == null) {
-            return;
-        }
-        if (!(cloud instanceof AciCloud)) {
+        if (cloud != null && !(cloud instanceof AciCloud)) {
             String msg = String.format("Cloud %s is not a AciCloud", cloudName);
             LOGGER.log(Level.WARNING, msg);
             listener.fatalError(msg);
             return;
         }
 
+        JarCacheRecorder.get().finish(this, computer);
+
         Computer.threadPoolForRemoting.execute(() -> AciService.deleteAciContainerGroup(credentialsId,
                 resourceGroup,
                 AciAgent.this.getNodeName(),
@@ -114,6 +143,18 @@ public class AciAgent extends AbstractCloudSlave implements ISSHLaunchable, Trac
         return deployName;
     }
 
+    public String getCloudName() {
+        return cloudName;
+    }
+
+    public String getCredentialsId() {
+        return credentialsId;
+    }
+
+    public String getResourceGroup() {
+        return resourceGroup;
+    }
+
     @Override
     public Node reconfigure(@NonNull StaplerRequest2 req, JSONObject form) {
         return this;
@@ -121,15 +162,34 @@ public class AciAgent extends AbstractCloudSlave implements ISSHLaunchable, Trac
 
     @Override
     public StandardUsernameCredentials getSshCredential() throws IllegalArgumentException {
+        return lookupCredentials(sshCredentialsId);
+    }
+
+    @Override
+    public String getJumpHost() {
+        return StringUtils.trimToNull(jumpHost);
+    }
+
+    @Override
+    public int getJumpPort() {
+        return AciPrivateIpAddress.parsePort(jumpPort);
+    }
+
+    @Override
+    public StandardUsernameCredentials getJumpCredential() throws IllegalArgumentException {
+        return lookupCredentials(jumpCredentialsId);
+    }
+
+    private static StandardUsernameCredentials lookupCredentials(String id) throws IllegalArgumentException {
         StandardUsernameCredentials credentials = CredentialsMatchers.firstOrNull(
                 CredentialsProvider.lookupCredentialsInItemGroup(
                         StandardUsernameCredentials.class,
                         Jenkins.get(),
                         ACL.SYSTEM2,
                         Collections.emptyList()),
-                CredentialsMatchers.withId(sshCredentialsId));
+                CredentialsMatchers.withId(id));
         if (credentials == null) {
-            throw new IllegalArgumentException("Could not find credentials with id: " + sshCredentialsId);
+            throw new IllegalArgumentException("Could not find credentials with id: " + id);
         }
 
         return credentials;
@@ -150,11 +210,37 @@ public class AciAgent extends AbstractCloudSlave implements ISSHLaunchable, Trac
         return StringUtils.defaultString(host);
     }
 
+    @Override
+    public int getTimeout() {
+        // Agents saved before the timeout was recorded
+        return timeout > 0 ? timeout : Constants.DEFAULT_SSH_TIMEOUT_MINUTES;
+    }
+
     public void setHost(String host) {
         this.host = host;
     }
 
     @NonNull
+    @Override
+    public List<AciBootstrapFile> getBootstrapFiles() {
+        return bootstrapFiles == null ? new ArrayList<>() : bootstrapFiles;
+    }
+
+    @Override
+    public String getJvmOptions() {
+        return StringUtils.defaultString(jvmOptions);
+    }
+
+    @Override
+    public boolean isAppCds() {
+        return appCds;
+    }
+
+    @Override
+    public String getJarCachePath() {
+        return jarCachePath;
+    }
+
     @Override
     public ProvisioningActivity.Id getId() {
         return provisioningId;
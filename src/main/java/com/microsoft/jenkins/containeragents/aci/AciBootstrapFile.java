@@ -0,0 +1,66 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import com.microsoft.jenkins.containeragents.Messages;
+import com.microsoft.jenkins.containeragents.remote.BootstrapFile;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.io.File;
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * File on the controller uploaded to SSH agents before the agent starts, e.g. a JDK override, a settings file or a
+ * tool bundle.
+ */
+public class AciBootstrapFile extends AbstractDescribableImpl<AciBootstrapFile>
+        implements BootstrapFile, Serializable {
+    @Serial
+    private static final long serialVersionUID = 2866393710592213845L;
+
+    private final String source;
+
+    private final String remotePath;
+
+    @DataBoundConstructor
+    public AciBootstrapFile(String source, String remotePath) {
+        this.source = StringUtils.trim(source);
+        this.remotePath = StringUtils.trim(remotePath);
+    }
+
+    @Override
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String getRemotePath() {
+        return remotePath;
+    }
+
+    @Extension
+    public static class DescriptorImpl extends Descriptor<AciBootstrapFile> {
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Aci Bootstrap File";
+        }
+
+        public FormValidation doCheckSource(@QueryParameter String value) {
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.ok();
+            }
+            if (!new File(value.trim()).isAbsolute()) {
+                return FormValidation.error(Messages.Bootstrap_File_Source_Error());
+            }
+            return FormValidation.ok();
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import com.azure.core.management.polling.PollResult;
+import com.azure.core.util.polling.LongRunningOperationStatus;
+import com.azure.core.util.polling.PollResponse;
+import com.azure.core.util.polling.SyncPoller;
+import com.azure.resourcemanager.AzureResourceManager;
+import com.azure.resourcemanager.containerinstance.fluent.ContainerGroupsClient;
+import com.azure.resourcemanager.containerinstance.fluent.models.ContainerGroupInner;
+import com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler;
+import com.microsoft.jenkins.containeragents.util.AzureContainerUtils;
+import com.microsoft.jenkins.containeragents.util.Constants;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Budget.DELETE;
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Budget.READ;
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Priority.CLEANUP;
+
+/**
+ * Deletes all container groups of a cloud at once, instead of one agent termination at a time.
+ * <p>
+ * The container groups are found by the {@code JenkinsInstance} tag of this Jenkins. Where other clouds use the same
+ * resource group, only the groups with the {@code JenkinsCloud} tag of the cloud or the name of one of its agents are
+ * deleted. The deletes run concurrently up to the parallelism, and each long running delete is polled until Azure
+ * reports it done, so a finished teardown leaves nothing billed behind.
+ * <p>
+ * A teardown runs on shutdown if the cloud asks for it, and on demand from the cloud page or the {@code aci-teardown}
+ * CLI command. When a cloud is removed or moved to another resource group, {@link AciOrphanedCloudMonitor} asks an
+ * administrator to confirm the teardown of what it left behind.
+ */
+public final class AciBulkTeardown {
+    private static final Logger LOGGER = Logger.getLogger(AciBulkTeardown.class.getName());
+
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    static final long TIMEOUT_MILLIS = 30 * Constants.MILLIS_IN_MINUTE;
+
+    // Jenkins waits for the terminators, so deletes still running after this are left to Azure
+    static final long SHUTDOWN_TIMEOUT_MILLIS = 2 * Constants.MILLIS_IN_MINUTE;
+
+    private static final long POLL_INTERVAL_MILLIS = 2 * Constants.MILLIS_IN_SECOND;
+
+    // The latest teardown of each cloud by name, to show its progress
+    private static final Map<String, AciBulkTeardown> TEARDOWNS = new ConcurrentHashMap<>();
+
+    // The resource group of each cloud when the configuration was last saved
+    private static final Map<String, Location> LOCATIONS = new ConcurrentHashMap<>();
+
+    private final String cloudName;
+
+    private final String credentialsId;
+
+    private final String resourceGroup;
+
+    private final int parallelism;
+
+    private final AtomicInteger total = new AtomicInteger();
+
+    private final AtomicInteger deleted = new AtomicInteger();
+
+    private final List<String> failures = new CopyOnWriteArrayList<>();
+
+    private final long startTime = System.currentTimeMillis();
+
+    private volatile long endTime;
+
+    private AciBulkTeardown(String cloudName, String credentialsId, String resourceGroup, int parallelism) {
+        this.cloudName = cloudName;
+        this.credentialsId = credentialsId;
+        this.resourceGroup = resourceGroup;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Creates a teardown of the cloud, unless one is running already.
+     *
+     * @return the teardown to run, or null if the cloud is being torn down.
+     */
+    public static AciBulkTeardown create(AciCloud cloud, int parallelism) {
+        return create(cloud.getName(), cloud.getCredentialsId(), cloud.getResourceGroup(), parallelism);
+    }
+
+    private static synchronized AciBulkTeardown create(String cloudName,
+                                                       String credentialsId,
+                                                       String resourceGroup,
+                                                       int parallelism) {
+        AciBulkTeardown current = TEARDOWNS.get(cloudName);
+        if (current != null && !current.isDone()) {
+            return null;
+        }
+        AciBulkTeardown teardown = new AciBulkTeardown(cloudName, credentialsId, resourceGroup, parallelism);
+        TEARDOWNS.put(cloudName, teardown);
+        return teardown;
+    }
+
+    /**
+     * Starts a teardown of the cloud in the background, unless one is running already.
+     *
+     * @return the running teardown.
+     */
+    public static AciBulkTeardown start(AciCloud cloud) {
+        AciBulkTeardown teardown = create(cloud, DEFAULT_PARALLELISM);
+        if (teardown == null) {
+            return TEARDOWNS.get(cloud.getName());
+        }
+        AciCloud.getThreadPool().submit(() -> teardown.run(null, TIMEOUT_MILLIS));
+        return teardown;
+    }
+
+    /**
+     * Starts a teardown of a cloud which is no longer configured in the background, unless one is running already.
+     */
+    static void start(String cloudName, String credentialsId, String resourceGroup) {
+        AciBulkTeardown teardown = create(cloudName, credentialsId, resourceGroup, DEFAULT_PARALLELISM);
+        if (teardown != null) {
+            AciCloud.getThreadPool().submit(() -> teardown.run(null, TIMEOUT_MILLIS));
+        }
+    }
+
+    /**
+     * @return the latest teardown of the cloud, or null if there was none since Jenkins started.
+     */
+    public static AciBulkTeardown getLatest(String cloudName) {
+        return TEARDOWNS.get(cloudName);
+    }
+
+    /**
+     * Deletes the container groups of the cloud and removes its agents.
+     *
+     * @param out           where to report the progress, may be null.
+     * @param timeoutMillis how long to wait for the deletes to complete.
+     * @return whether all container groups were deleted.
+     */
+    public boolean run(PrintStream out, long timeoutMillis) {
+        try {
+            teardown(out, timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.add("Interrupted");
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, String.format("AciBulkTeardown: teardown of cloud %s failed", cloudName), e);
+            failures.add(String.valueOf(e.getMessage()));
+        } finally {
+            endTime = System.currentTimeMillis();
+            report(out, getSummary());
+        }
+        return failures.isEmpty();
+    }
+
+    private void teardown(PrintStream out, long timeoutMillis) throws Exception {
+        if (StringUtils.isBlank(credentialsId) || StringUtils.isBlank(resourceGroup)) {
+            throw new IllegalStateException("Cloud " + cloudName + " has no credentials or resource group");
+        }
+        final Jenkins jenkins = Jenkins.get();
+        final List<AciAgent> agents = new ArrayList<>();
+        final Set<String> agentNames = new TreeSet<>();
+        for (Node node : jenkins.getNodes()) {
+            if (node instanceof AciAgent agent && cloudName.equals(agent.getCloudName())
+                    && resourceGroup.equals(agent.getResourceGroup())) {
+                agents.add(agent);
+                agentNames.add(agent.getNodeName());
+                Computer computer = agent.toComputer();
+                if (computer != null) {
+                    computer.setAcceptingTasks(false);
+                }
+            }
+        }
+
+        final AzureResourceManager azureClient = AzureContainerUtils.getAzureClient(credentialsId);
+        final ArmRequestScheduler scheduler = ArmRequestScheduler.forClient(azureClient);
+        final ContainerGroupsClient client = azureClient.containerGroups().manager().serviceClient()
+                .getContainerGroups();
+        final String instanceId = jenkins.getLegacyInstanceId();
+        final boolean shared = isSharedResourceGroup(jenkins);
+        final List<String> names = new ArrayList<>();
+        for (ContainerGroupInner group : scheduler.call(READ, CLEANUP,
+                () -> client.listByResourceGroup(resourceGroup).stream().toList())) {
+            if (isOwned(group.tags(), instanceId, cloudName, shared, agentNames, group.name())) {
+                names.add(group.name());
+            }
+        }
+        total.set(names.size());
+        report(out, String.format("Deleting %d container groups of cloud %s in %s",
+                names.size(), cloudName, resourceGroup));
+
+        final Set<String> remaining = ConcurrentHashMap.newKeySet();
+        remaining.addAll(names);
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism,
+                new NamingThreadFactory(new DaemonThreadFactory(), "AciBulkTeardown " + cloudName));
+        try {
+            for (String name : names) {
+                pool.submit(() -> {
+                    try {
+                        delete(scheduler, client, name);
+                        remaining.remove(name);
+                        deleted.incrementAndGet();
+                        report(out, "Deleted " + name);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        failures.add(name + ": interrupted");
+                    } catch (Exception e) {
+                        LOGGER.log(Level.WARNING, String.format("AciBulkTeardown: failed to delete %s", name), e);
+                        failures.add(name + ": " + e.getMessage());
+                        report(out, "Failed to delete " + name + ": " + e.getMessage());
+                    }
+                });
+            }
+            pool.shutdown();
+            if (!pool.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                failures.add(String.format("Timed out waiting for %d deletes", remaining.size()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Agents whose container group is gone, or never got one, have nothing left to terminate
+        for (AciAgent agent : agents) {
+            if (!remaining.contains(agent.getNodeName())) {
+                try {
+                    jenkins.removeNode(agent);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, String.format("AciBulkTeardown: failed to remove agent %s",
+                            agent.getNodeName()), e);
+                }
+            }
+        }
+    }
+
+    private void delete(ArmRequestScheduler scheduler, ContainerGroupsClient client, String name)
+            throws InterruptedException {
+        SyncPoller<PollResult<ContainerGroupInner>, ContainerGroupInner> poller =
+                scheduler.call(DELETE, CLEANUP, () -> client.beginDelete(resourceGroup, name));
+        while (true) {
+            PollResponse<PollResult<ContainerGroupInner>> response = scheduler.call(READ, CLEANUP, poller::poll);
+            LongRunningOperationStatus status = response.getStatus();
+            if (status == LongRunningOperationStatus.SUCCESSFULLY_COMPLETED) {
+                return;
+            }
+            if (status.isComplete()) {
+                PollResult.Error error = response.getValue() == null ? null : response.getValue().getError();
+                throw new IllegalStateException(String.format("Delete %s: %s", status,
+                        error == null ? "no error reported" : error.getMessage()));
+            }
+            Duration retryAfter = response.getRetryAfter();
+            Thread.sleep(retryAfter == null ? POLL_INTERVAL_MILLIS : retryAfter.toMillis());
+        }
+    }
+
+    private boolean isSharedResourceGroup(Jenkins jenkins) {
+        for (AciCloud cloud : jenkins.clouds.getAll(AciCloud.class)) {
+            if (!cloudName.equals(cloud.getName()) && resourceGroup.equals(cloud.getResourceGroup())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a container group belongs to the cloud.
+     *
+     * @param tags                the tags of the container group.
+     * @param instanceId          the id of this Jenkins.
+     * @param cloudName           the name of the cloud.
+     * @param sharedResourceGroup whether other clouds use the same resource group.
+     * @param agentNames          the agents of the cloud.
+     * @param name                the name of the container group.
+     * @return true if the container group was created for the cloud.
+     */
+    static boolean isOwned(Map<String, String> tags,
+                           String instanceId,
+                           String cloudName,
+                           boolean sharedResourceGroup,
+                           Set<String> agentNames,
+                           String name) {
+        if (tags == null || !StringUtils.equalsIgnoreCase(instanceId, tags.get(Constants.TAG_JENKINS_INSTANCE))) {
+            return false;
+        }
+        String cloud = tags.get(Constants.TAG_JENKINS_CLOUD);
+        if (cloud != null) {
+            return cloud.equals(cloudName);
+        }
+        // Created before the cloud tag, only known agents can be told apart from those of other clouds
+        return !sharedResourceGroup || agentNames.contains(name);
+    }
+
+    private void report(PrintStream out, String message) {
+        LOGGER.log(Level.INFO, "AciBulkTeardown: {0}", message);
+        if (out != null) {
+            out.println(message);
+        }
+    }
+
+    public String getCloudName() {
+        return cloudName;
+    }
+
+    public boolean isDone() {
+        return endTime != 0;
+    }
+
+    public int getTotal() {
+        return total.get();
+    }
+
+    public int getDeleted() {
+        return deleted.get();
+    }
+
+    public List<String> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    public String getSummary() {
+        long elapsed = (isDone() ? endTime : System.currentTimeMillis()) - startTime;
+        return String.format("Deleted %d of %d container groups, %d failed, %s after %d s",
+                deleted.get(), total.get(), failures.size(), isDone() ? "done" : "running",
+                elapsed / Constants.MILLIS_IN_SECOND);
+    }
+
+    private static Map<String, Location> getLocations() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Location> locations = new HashMap<>();
+        for (AciCloud cloud : jenkins.clouds.getAll(AciCloud.class)) {
+            locations.put(cloud.getName(), new Location(cloud.getCredentialsId(), cloud.getResourceGroup()));
+        }
+        return locations;
+    }
+
+    @Initializer(after = InitMilestone.JOB_CONFIG_ADAPTED)
+    public static void recordLocations() {
+        LOCATIONS.putAll(getLocations());
+    }
+
+    @Terminator
+    public static void teardownOnShutdown() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return;
+        }
+        for (AciCloud cloud : jenkins.clouds.getAll(AciCloud.class)) {
+            if (cloud.isTeardownOnShutdown()) {
+                AciBulkTeardown teardown = create(cloud, DEFAULT_PARALLELISM);
+                if (teardown != null) {
+                    teardown.run(null, SHUTDOWN_TIMEOUT_MILLIS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds clouds which were removed or moved to another resource group, as nothing else would delete their
+     * container groups. Their teardown waits for an administrator to confirm it in {@link AciOrphanedCloudMonitor}.
+     */
+    @Extension
+    public static final class CloudListener extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (!(o instanceof Jenkins)) {
+                return;
+            }
+            Map<String, Location> current = getLocations();
+            for (Map.Entry<String, Location> entry : LOCATIONS.entrySet()) {
+                Location previous = entry.getValue();
+                Location location = current.get(entry.getKey());
+                if (location != null && Objects.equals(previous.resourceGroup, location.resourceGroup)) {
+                    continue;
+                }
+                if (current.containsValue(previous)) {
+                    // Clouds have no identity but their name, a cloud in the same place is most likely renamed
+                    LOGGER.log(Level.INFO, "AciBulkTeardown: cloud {0} was renamed or another cloud uses {1}, "
+                            + "keeping its container groups", new Object[]{entry.getKey(), previous.resourceGroup});
+                    continue;
+                }
+                LOGGER.log(Level.WARNING, "AciBulkTeardown: cloud {0} was removed or moved away from {1}, "
+                                + "confirm the teardown of its container groups in Manage Jenkins",
+                        new Object[]{entry.getKey(), previous.resourceGroup});
+                AciOrphanedCloudMonitor.get().add(entry.getKey(), previous.credentialsId, previous.resourceGroup);
+            }
+            LOCATIONS.clear();
+            LOCATIONS.putAll(current);
+        }
+    }
+
+    private static final class Location {
+        private final String credentialsId;
+
+        private final String resourceGroup;
+
+        Location(String credentialsId, String resourceGroup) {
+            this.credentialsId = credentialsId;
+            this.resourceGroup = resourceGroup;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Location other && Objects.equals(credentialsId, other.credentialsId)
+                    && Objects.equals(resourceGroup, other.resourceGroup);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(credentialsId, resourceGroup);
+        }
+    }
+}
@@ -4,7 +4,9 @@ package com.microsoft.jenkins.containeragents.aci;
 import com.azure.resourcemanager.AzureResourceManager;
 import com.azure.resourcemanager.resources.models.Deployment;
 import com.azure.resourcemanager.resources.models.GenericResource;
+import com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler;
 import com.microsoft.jenkins.containeragents.util.AzureContainerUtils;
+import com.microsoft.jenkins.containeragents.util.Constants;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Extension;
 import hudson.model.AsyncPeriodicWork;
@@ -23,12 +25,17 @@ import java.io.Serializable;
 import java.nio.file.Paths;
 import java.time.OffsetDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Budget.DELETE;
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Budget.READ;
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Priority.CLEANUP;
+
 @Extension
 public class AciCleanTask extends AsyncPeriodicWork {
     private static final Logger LOGGER = Logger.getLogger(AciCleanTask.class.getName());
@@ -192,6 +199,7 @@ public class AciCleanTask extends AsyncPeriodicWork {
             try {
 
                 AzureResourceManager azureClient = AzureContainerUtils.getAzureClient(cloud.getCredentialsId());
+                ArmRequestScheduler scheduler = ArmRequestScheduler.forClient(azureClient);
 
                 // This will throw if the deployment can't be found.  This could happen in a couple instances
                 // 1) The deployment has already been deleted
@@ -201,8 +209,8 @@ public class AciCleanTask extends AsyncPeriodicWork {
                 // of retries.  If we hit 0, we remove the deployment from our list.
                 Deployment deployment;
                 try {
-                    deployment = azureClient.deployments().
-                            getByResourceGroup(info.getResourceGroupName(), info.getDeploymentName());
+                    deployment = scheduler.call(READ, CLEANUP, () -> azureClient.deployments().
+                            getByResourceGroup(info.getResourceGroupName(), info.getDeploymentName()));
                 } catch (NullPointerException e) {
                     LOGGER.log(getNormalLoggingLevel(),
                             "AzureAciCleanUpTask: cleanDeployments: Deployment not found, skipping");
@@ -230,8 +238,8 @@ public class AciCleanTask extends AsyncPeriodicWork {
                                     + "Failed deployment older than {0} minutes, deleting",
                             failTimeoutInMinutes);
                     // Delete the deployment
-                    azureClient.deployments()
-                            .deleteByResourceGroup(info.getResourceGroupName(), info.getDeploymentName());
+                    scheduler.run(DELETE, CLEANUP, () -> azureClient.deployments()
+                            .deleteByResourceGroup(info.getResourceGroupName(), info.getDeploymentName()));
                 } else if ("succeeded".equalsIgnoreCase(state)
                         && diffTimeInMinutes > successTimeoutInMinutes) {
                     LOGGER.log(getNormalLoggingLevel(),
@@ -239,8 +247,8 @@ public class AciCleanTask extends AsyncPeriodicWork {
                                     + "Successful deployment older than {0} minutes, deleting",
                             successTimeoutInMinutes);
                     // Delete the deployment
-                    azureClient.deployments()
-                            .deleteByResourceGroup(info.getResourceGroupName(), info.getDeploymentName());
+                    scheduler.run(DELETE, CLEANUP, () -> azureClient.deployments()
+                            .deleteByResourceGroup(info.getResourceGroupName(), info.getDeploymentName()));
                 } else {
                     LOGGER.log(getNormalLoggingLevel(),
                             "AzureAciCleanUpTask: cleanDeployments: Deployment newer than timeout, keeping");
@@ -289,11 +297,20 @@ public class AciCleanTask extends AsyncPeriodicWork {
 
         Set<String> validContainerSet = getValidContainer();
 
-        for (final GenericResource resource : azureClient.genericResources().listByResourceGroup(resourceGroup)) {
+        List<GenericResource> resources;
+        try {
+            resources = ArmRequestScheduler.forClient(azureClient).call(READ, CLEANUP,
+                    () -> azureClient.genericResources().listByResourceGroup(resourceGroup).stream().toList());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        for (final GenericResource resource : resources) {
             if (resource.resourceProviderNamespace().equalsIgnoreCase("Microsoft.ContainerInstance")
                     && resource.resourceType().equalsIgnoreCase("containerGroups")
-                    && resource.tags().containsKey("JenkinsInstance")
-                    && resource.tags().get("JenkinsInstance")
+                    && resource.tags().containsKey(Constants.TAG_JENKINS_INSTANCE)
+                    && resource.tags().get(Constants.TAG_JENKINS_INSTANCE)
                     .equalsIgnoreCase(Jenkins.get().getLegacyInstanceId())) {
                 if (!validContainerSet.contains(resource.name())) {
                     AciCloud.getThreadPool().submit(() -> AciService.deleteAciContainerGroup(credentialsId,
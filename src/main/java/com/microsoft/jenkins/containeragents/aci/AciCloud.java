@@ -1,7 +1,10 @@
 package com.microsoft.jenkins.containeragents.aci;
 
 import com.azure.resourcemanager.AzureResourceManager;
+import com.azure.resourcemanager.containerinstance.models.Container;
+import com.azure.resourcemanager.containerinstance.fluent.models.UsageInner;
 import com.azure.resourcemanager.containerinstance.models.ContainerGroup;
+import com.azure.resourcemanager.network.fluent.models.VirtualNetworkUsageInner;
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
@@ -9,7 +12,12 @@ import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredenti
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.microsoft.azure.util.AzureBaseCredentials;
+import com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler;
+import com.microsoft.jenkins.containeragents.strategy.DemandForecast;
 import com.microsoft.jenkins.containeragents.strategy.ProvisionRetryStrategy;
+import com.microsoft.jenkins.containeragents.strategy.ProvisionStatistics;
+import com.microsoft.jenkins.containeragents.strategy.TemplateSelectionPolicy;
+import com.microsoft.jenkins.containeragents.strategy.WeeklyArrivalModel;
 import com.microsoft.jenkins.containeragents.util.AzureContainerUtils;
 import com.microsoft.jenkins.containeragents.util.Constants;
 import edu.umd.cs.findbugs.annotations.NonNull;
@@ -18,12 +26,15 @@ import hudson.model.Computer;
 import hudson.model.Descriptor;
 import hudson.model.Item;
 import hudson.model.Label;
+import hudson.model.Node;
 import hudson.security.ACL;
 import hudson.slaves.Cloud;
 import hudson.slaves.EnvironmentVariablesNodeProperty;
 import hudson.slaves.NodeProvisioner;
 import hudson.util.ListBoxModel;
 import jenkins.model.Jenkins;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.jenkinsci.plugins.cloudstats.TrackedPlannedNode;
 import org.kohsuke.stapler.AncestorInPath;
@@ -35,17 +46,32 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Budget.READ;
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Priority.CLEANUP;
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Priority.PROVISION;
 
 public class AciCloud extends Cloud {
     private static final Logger LOGGER = Logger.getLogger(AciCloud.class.getName());
 
+    private static final int DEFAULT_FORECAST_LEAD_MINUTES = 5;
+
+    private static final long MIN_READINESS_CHECK_INTERVAL_MILLIS = 5 * 1000;
+
     private String credentialsId;
 
     private String logAnalyticsCredentialsId;
@@ -54,16 +80,35 @@ public class AciCloud extends Cloud {
 
     private List<AciContainerTemplate> templates;
 
+    private TemplateSelectionPolicy templateSelectionPolicy;
+
+    private boolean demandForecasting;
+
+    private int forecastLeadMinutes = DEFAULT_FORECAST_LEAD_MINUTES;
+
+    private boolean teardownOnShutdown;
+
     private static ExecutorService threadPool;
 
     private transient ProvisionRetryStrategy provisionRetryStrategy = new ProvisionRetryStrategy();
 
+    private transient ProvisionStatistics provisionStatistics = new ProvisionStatistics();
+
+    // Agents which are being provisioned, by node name, with their template name
+    private transient Map<String, String> plannedAgents = new ConcurrentHashMap<>();
+
     private transient Supplier<AzureResourceManager> azureClient = createAzureClientSupplier();
 
+    private transient CapacityPreflight capacityPreflight = createCapacityPreflight();
+
     private Supplier<AzureResourceManager> createAzureClientSupplier() {
         return Suppliers.memoize(() -> AzureContainerUtils.getAzureClient(credentialsId));
     }
 
+    private CapacityPreflight createCapacityPreflight() {
+        return new CapacityPreflight(this::loadCapacity, getThreadPool(), System::currentTimeMillis);
+    }
+
     @DataBoundConstructor
     public AciCloud(String name,
                     String credentialsId,
@@ -80,6 +125,26 @@ public class AciCloud extends Cloud {
         this.logAnalyticsCredentialsId = logAnalyticsCredentialsId;
     }
 
+    @DataBoundSetter
+    public void setTemplateSelectionPolicy(TemplateSelectionPolicy templateSelectionPolicy) {
+        this.templateSelectionPolicy = templateSelectionPolicy;
+    }
+
+    @DataBoundSetter
+    public void setDemandForecasting(boolean demandForecasting) {
+        this.demandForecasting = demandForecasting;
+    }
+
+    @DataBoundSetter
+    public void setForecastLeadMinutes(int forecastLeadMinutes) {
+        this.forecastLeadMinutes = forecastLeadMinutes;
+    }
+
+    @DataBoundSetter
+    public void setTeardownOnShutdown(boolean teardownOnShutdown) {
+        this.teardownOnShutdown = teardownOnShutdown;
+    }
+
     public AzureResourceManager getAzureClient() {
         if (azureClient == null) {
             azureClient = createAzureClientSupplier();
@@ -93,79 +158,298 @@ public class AciCloud extends Cloud {
         try {
             LOGGER.log(Level.INFO, "Start ACI container for label {0} workLoad {1}",
                     new Object[] {cloudState.getLabel(), excessWorkload});
-            List<NodeProvisioner.PlannedNode> r = new ArrayList<>();
-            final AciContainerTemplate template = getFirstTemplate(cloudState.getLabel());
+            return provisionAgents(cloudState.getLabel(), excessWorkload);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        }
+        return Collections.emptyList();
+    }
+
+    private List<NodeProvisioner.PlannedNode> provisionAgents(Label label, int workload) throws Exception {
+        List<NodeProvisioner.PlannedNode> r = new ArrayList<>();
+        final List<AciContainerTemplate> candidates = getAvailableTemplates(label);
+        candidates.removeIf(this::isAtCapacity);
+        int remainingWorkload = workload;
+        while (remainingWorkload > 0 && !candidates.isEmpty()) {
+            final AciContainerTemplate template =
+                    getTemplateSelectionPolicy().select(candidates, provisionStatistics);
+            final CapacityPreflight.Reservation reservation =
+                    capacityPreflight.tryReserve(getRequestedCores(template), getSubnetKey(template));
+            if (reservation == null) {
+                LOGGER.log(Level.INFO, "ACI Container template {0} has no Azure capacity left: {1}",
+                        new Object[] {template.getName(), capacityPreflight.getSummary()});
+                candidates.remove(template);
+                continue;
+            }
             LOGGER.log(Level.INFO, "Using ACI Container template: {0}", template.getName());
-            for (int i = 1; i <= excessWorkload; i++) {
-
-                AciAgent agent = new AciAgent(AciCloud.this, template);
-
-                r.add(new TrackedPlannedNode(agent.getId(), 1, Computer.threadPoolForRemoting.submit(
-                        () -> {
-                            try {
-                                LOGGER.log(Level.INFO, "Add ACI node: {0}", agent.getNodeName());
-                                Jenkins.get().addNode(agent);
-
-                                //start a timeWatcher
-                                StopWatch stopWatch = new StopWatch();
-                                stopWatch.start();
-
-                                //Deploy ACI and wait
-                                template.provisionAgents(AciCloud.this, agent, stopWatch);
-
-                                if (template.getLaunchMethodType().equals(Constants.LAUNCH_METHOD_JNLP)) {
-                                    //wait JNLP to online
-                                    waitToOnline(agent, template.getTimeout(), stopWatch);
-                                } else {
-                                    addHost(agent);
-                                    Computer computer = agent.toComputer();
-                                    if (computer == null) {
-                                        throw new IllegalStateException("Agent node has been deleted");
-                                    }
-                                    computer.connect(false).get();
-                                }
 
-                                addIpEnv(agent);
+            AciAgent agent = new AciAgent(AciCloud.this, template);
+            plannedAgents.put(agent.getNodeName(), template.getName());
+            provisionStatistics.provisionStarted(template.getName());
+            remainingWorkload -= template.getNumExecutors();
+
+            r.add(new TrackedPlannedNode(agent.getId(), template.getNumExecutors(),
+                    Computer.threadPoolForRemoting.submit(
+                    () -> {
+                        try {
+                            LOGGER.log(Level.INFO, "Add ACI node: {0}", agent.getNodeName());
+                            Jenkins.get().addNode(agent);
+
+                            //start a timeWatcher
+                            StopWatch stopWatch = new StopWatch();
+                            stopWatch.start();
+
+                            //Deploy ACI and wait
+                            AciProvisioningResult result = template.provisionAgents(AciCloud.this, agent, stopWatch);
+                            setIpAddress(agent, result);
+                            if (template.getReadinessProbe() != null) {
+                                waitToBeReady(agent, template.getReadinessProbe(), template.getTimeout(), stopWatch);
+                            }
 
-                                provisionRetryStrategy.success(template.getName());
+                            if (template.getLaunchMethodType().equals(Constants.LAUNCH_METHOD_JNLP)) {
+                                //wait JNLP to online
+                                waitToOnline(agent, template.getTimeout(), stopWatch);
+                            } else {
+                                Computer computer = agent.toComputer();
+                                if (computer == null) {
+                                    throw new IllegalStateException("Agent node has been deleted");
+                                }
+                                computer.connect(false).get();
+                            }
 
-                                return agent;
-                            } catch (Exception e) {
-                                LOGGER.log(Level.WARNING, "AciCloud: Provision agent {0} failed: {1}",
-                                        new Object[] {agent.getNodeName(), e});
+                            provisionRetryStrategy.success(template.getName());
+                            provisionStatistics.provisionSucceeded(template.getName(), stopWatch.getTime());
 
-                                agent.terminate();
+                            return agent;
+                        } catch (Exception e) {
+                            LOGGER.log(Level.WARNING, "AciCloud: Provision agent {0} failed: {1}",
+                                    new Object[] {agent.getNodeName(), e});
 
-                                provisionRetryStrategy.failure(template.getName());
+                            agent.terminate();
 
-                                throw e;
+                            // ARM throttling says nothing about the template, don't back it off
+                            if (ArmRequestScheduler.isThrottled(e)) {
+                                provisionStatistics.provisionFailed(template.getName());
+                            } else {
+                                provisionStatistics.provisionFailed(template.getName(),
+                                        TimeUnit.MINUTES.toMillis(template.getTimeout()));
                             }
+                            if (e instanceof ContainerStartException startException
+                                    && startException.isConfigurationError()) {
+                                provisionRetryStrategy.configurationFailure(template.getName());
+                            } else if (!ArmRequestScheduler.isThrottled(e)) {
+                                provisionRetryStrategy.failure(template.getName());
+                            }
+
+                            throw e;
+                        } finally {
+                            plannedAgents.remove(agent.getNodeName());
+                            reservation.release();
                         }
-                )));
+                    }
+            )));
+            if (isAtCapacity(template)) {
+                LOGGER.log(Level.INFO, "ACI Container template {0} reached its limit of {1} agents",
+                        new Object[] {template.getName(), template.getMaxInstances()});
+                candidates.remove(template);
             }
-
-            return r;
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, e.getMessage(), e);
         }
-        return Collections.emptyList();
+        return r;
     }
 
     @Override
     public boolean canProvision(CloudState cloudState) {
-        AciContainerTemplate template = getFirstTemplate(cloudState.getLabel());
-        if (template == null) {
+        if (getFirstTemplate(cloudState.getLabel()) == null) {
+            return false;
+        }
+
+        if (getAvailableTemplates(cloudState.getLabel()).isEmpty()) {
+            LOGGER.log(Level.WARNING, "Cannot provision: templates for label {0} are not available now, "
+                    + "because they failed to provision last time. ", cloudState.getLabel());
             return false;
         }
 
-        if (!provisionRetryStrategy.isEnabled(template.getName())) {
-            LOGGER.log(Level.WARNING, "Cannot provision: template for label {0} is not available now, "
-                    + "because it failed to provision last time. ", cloudState.getLabel());
+        if (getAvailableTemplates(cloudState.getLabel()).stream().allMatch(this::isAtCapacity)) {
+            LOGGER.log(Level.INFO, "Cannot provision: templates for label {0} reached their agent limit",
+                    cloudState.getLabel());
+            return false;
+        }
+
+        if (getAvailableTemplates(cloudState.getLabel()).stream().noneMatch(this::hasCapacity)) {
+            LOGGER.log(Level.INFO, "Cannot provision: no ACI quota or subnet addresses left for label {0}: {1}",
+                    new Object[] {cloudState.getLabel(), capacityPreflight.getSummary()});
             return false;
         }
         return true;
     }
 
+    private boolean hasCapacity(AciContainerTemplate template) {
+        return capacityPreflight.getHeadroom(getRequestedCores(template), getSubnetKey(template)) > 0;
+    }
+
+    /**
+     * @return the CPU cores of the agent and sidecar containers of a template.
+     */
+    private static double getRequestedCores(AciContainerTemplate template) {
+        double cores = NumberUtils.toDouble(template.getCpu(), 0);
+        for (AciSidecarContainer sidecar : template.getSidecars()) {
+            cores += NumberUtils.toDouble(sidecar.getCpu(), 0);
+        }
+        return cores;
+    }
+
+    /**
+     * @return the resource group, virtual network and subnet the agents of a template get their address from, or
+     * null for public addresses.
+     */
+    private String getSubnetKey(AciContainerTemplate template) {
+        AciPrivateIpAddress privateIpAddress = template.getPrivateIpAddress();
+        if (privateIpAddress == null) {
+            return null;
+        }
+        return String.join("/", getVnetResourceGroup(privateIpAddress), privateIpAddress.getVnet(),
+                privateIpAddress.getSubnet()).toLowerCase(Locale.ROOT);
+    }
+
+    private String getVnetResourceGroup(AciPrivateIpAddress privateIpAddress) {
+        return StringUtils.defaultIfEmpty(privateIpAddress.getResourceGroup(), resourceGroup);
+    }
+
+    /**
+     * Reads the free ACI quota of the region of the resource group, and the free addresses of the subnets of the
+     * templates. This is background polling, so it yields to the requests of provisioning.
+     */
+    private CapacityPreflight.Capacity loadCapacity() throws Exception {
+        AzureResourceManager azureResourceManager = getAzureClient();
+        ArmRequestScheduler scheduler = ArmRequestScheduler.forClient(azureResourceManager);
+        String region = scheduler.call(READ, CLEANUP,
+                () -> azureResourceManager.resourceGroups().getByName(resourceGroup).regionName());
+        List<UsageInner> usages = scheduler.call(READ, CLEANUP,
+                () -> azureResourceManager.containerGroups().manager().serviceClient().getLocations()
+                        .listUsage(region).stream().toList());
+        double cores = Double.MAX_VALUE;
+        int containerGroups = Integer.MAX_VALUE;
+        for (UsageInner usage : usages) {
+            if (usage.name() == null || usage.limit() == null || usage.currentValue() == null) {
+                continue;
+            }
+            if (Constants.ACI_QUOTA_CORES.equalsIgnoreCase(usage.name().value())) {
+                cores = usage.limit() - usage.currentValue();
+            } else if (Constants.ACI_QUOTA_CONTAINER_GROUPS.equalsIgnoreCase(usage.name().value())) {
+                containerGroups = usage.limit() - usage.currentValue();
+            }
+        }
+
+        Map<String, Integer> addresses = new HashMap<>();
+        for (AciContainerTemplate template : getTemplates()) {
+            String subnetKey = getSubnetKey(template);
+            if (subnetKey == null || addresses.containsKey(subnetKey)) {
+                continue;
+            }
+            AciPrivateIpAddress privateIpAddress = template.getPrivateIpAddress();
+            List<VirtualNetworkUsageInner> subnetUsages = scheduler.call(READ, CLEANUP,
+                    () -> azureResourceManager.networks().manager().serviceClient().getVirtualNetworks()
+                            .listUsage(getVnetResourceGroup(privateIpAddress), privateIpAddress.getVnet())
+                            .stream().toList());
+            String suffix = ("/subnets/" + privateIpAddress.getSubnet()).toLowerCase(Locale.ROOT);
+            for (VirtualNetworkUsageInner usage : subnetUsages) {
+                if (usage.id() != null && usage.id().toLowerCase(Locale.ROOT).endsWith(suffix)
+                        && usage.limit() != null && usage.currentValue() != null) {
+                    addresses.put(subnetKey, (int) (usage.limit() - usage.currentValue()));
+                }
+            }
+        }
+        return new CapacityPreflight.Capacity(cores, containerGroups, addresses);
+    }
+
+    /**
+     * Starts agents ahead of the arrivals forecast for a label this cloud serves.
+     * <p>
+     * As many executors are kept ready as queue items are forecast to arrive while a new agent starts, at the
+     * forecast lead time from now. Ready executors are the idle ones of online agents and the ones of agents being
+     * provisioned. The agent limits of the templates apply.
+     *
+     * @param model the arrival model.
+     * @param label the label.
+     * @return the agents started, to be recorded as pending launches of the label.
+     */
+    public Collection<NodeProvisioner.PlannedNode> preProvision(WeeklyArrivalModel model, Label label) {
+        List<AciContainerTemplate> candidates = getAvailableTemplates(label);
+        if (candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        long startupMillis = candidates.stream()
+                .mapToLong(template -> provisionStatistics.getExpectedStartupMillis(template.getName()))
+                .max().orElseThrow();
+        double perMinute = model.getForecastPerMinute(label.getExpression(), getForecastTime(startupMillis));
+        int deficit = DemandForecast.getJustifiedExecutors(perMinute, startupMillis) - getReadyExecutors(label);
+        if (deficit <= 0) {
+            return Collections.emptyList();
+        }
+        LOGGER.log(Level.INFO, "Pre-provisioning {0} executors for label {1}, {2} arrivals per minute forecast",
+                new Object[] {deficit, label, perMinute});
+        try {
+            return provisionAgents(label, deficit);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, String.format("Failed to pre-provision agents for %s", label), e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * When the arrivals are forecast for, both to start agents ahead of them and to keep idle agents for them.
+     *
+     * @param startupMillis the startup time of a new agent.
+     * @return the forecast lead time from now, at least the startup time.
+     */
+    public long getForecastTime(long startupMillis) {
+        return System.currentTimeMillis()
+                + Math.max(TimeUnit.MINUTES.toMillis(getForecastLeadMinutes()), startupMillis);
+    }
+
+    private int getReadyExecutors(Label label) {
+        int ready = 0;
+        for (Computer computer : Jenkins.get().getComputers()) {
+            Node node = computer.getNode();
+            if (node != null && computer.isOnline() && computer.isAcceptingTasks() && label.matches(node)) {
+                ready += computer.countIdle();
+            }
+        }
+        for (String templateName : plannedAgents.values()) {
+            AciContainerTemplate template = getTemplate(templateName);
+            if (template != null && label.matches(template.getLabelSet())) {
+                ready += template.getNumExecutors();
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Agents of a template, including the ones still being provisioned.
+     *
+     * @param template the template.
+     * @return the number of agents.
+     */
+    public int getAgentCount(AciContainerTemplate template) {
+        Set<String> agents = new HashSet<>();
+        plannedAgents.forEach((nodeName, templateName) -> {
+            if (templateName.equals(template.getName())) {
+                agents.add(nodeName);
+            }
+        });
+        for (Node node : Jenkins.get().getNodes()) {
+            if (node instanceof AciAgent agent && name.equals(agent.getCloudName())
+                    && template.getName().equals(agent.getId().getTemplateName())) {
+                agents.add(agent.getNodeName());
+            }
+        }
+        return agents.size();
+    }
+
+    private boolean isAtCapacity(AciContainerTemplate template) {
+        return template.getMaxInstances() > 0 && getAgentCount(template) >= template.getMaxInstances();
+    }
+
     public AciContainerTemplate getFirstTemplate(Label label) {
         for (AciContainerTemplate template : templates) {
             if (label == null || label.matches(template.getLabelSet())) {
@@ -175,33 +459,104 @@ public class AciCloud extends Cloud {
         return null;
     }
 
-    public void addIpEnv(AciAgent agent) throws Exception {
-        AzureResourceManager azureResourceManager = getAzureClient();
+    public AciContainerTemplate getTemplate(String templateName) {
+        for (AciContainerTemplate template : templates) {
+            if (template.getName().equals(templateName)) {
+                return template;
+            }
+        }
+        return null;
+    }
+
+    public List<AciContainerTemplate> getMatchingTemplates(Label label) {
+        List<AciContainerTemplate> result = new ArrayList<>();
+        for (AciContainerTemplate template : templates) {
+            if (label == null || label.matches(template.getLabelSet())) {
+                result.add(template);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Templates matching the label which are not backed off by the {@link ProvisionRetryStrategy}.
+     *
+     * @param label the requested label.
+     * @return the healthy templates in configuration order.
+     */
+    public List<AciContainerTemplate> getAvailableTemplates(Label label) {
+        List<AciContainerTemplate> result = new ArrayList<>();
+        for (AciContainerTemplate template : getMatchingTemplates(label)) {
+            if (provisionRetryStrategy.isEnabled(template.getName())) {
+                result.add(template);
+            }
+        }
+        return result;
+    }
 
-        String ip = azureResourceManager.containerGroups()
-                .getByResourceGroup(resourceGroup, agent.getNodeName()).ipAddress();
-        EnvironmentVariablesNodeProperty ipEnv = new EnvironmentVariablesNodeProperty(
-                new EnvironmentVariablesNodeProperty.Entry("IP", ip)
-        );
+    /**
+     * Sets the SSH host and the {@code IP} environment variable of the agent, and saves it once.
+     * <p>
+     * The IP address comes from the deployment outputs. The container group is only read for deployments without
+     * the output, e.g. those started before the upgrade.
+     */
+    private void setIpAddress(AciAgent agent, AciProvisioningResult result) throws Exception {
+        String ip = result.getIpAddress();
+        if (ip == null) {
+            AzureResourceManager azureResourceManager = getAzureClient();
+            ip = ArmRequestScheduler.forClient(azureResourceManager).call(READ, PROVISION,
+                    () -> azureResourceManager.containerGroups()
+                            .getByResourceGroup(resourceGroup, agent.getNodeName()).ipAddress());
+        }
 
-        agent.getNodeProperties().add(ipEnv);
+        agent.setHost(ip);
+        agent.getNodeProperties().add(new EnvironmentVariablesNodeProperty(
+                new EnvironmentVariablesNodeProperty.Entry("IP", ip)));
         agent.save();
     }
 
-    public void addHost(AciAgent agent) throws Exception {
+    /**
+     * Waits until the readiness probe of the agent container stopped failing.
+     * <p>
+     * The deployment succeeds once the container started, so the first check waits for the initial delay of the
+     * probe. Checks are a probe period apart, so a probe still failing shows up in the events in between.
+     */
+    private void waitToBeReady(AciAgent agent, AciProbe probe, int startupTimeout, StopWatch stopWatch)
+            throws Exception {
+        LOGGER.log(Level.INFO, "Waiting agent {0} to be ready", agent.getNodeName());
         AzureResourceManager azureResourceManager = getAzureClient();
+        ArmRequestScheduler scheduler = ArmRequestScheduler.forClient(azureResourceManager);
+        ContainerReadiness readiness = new ContainerReadiness();
+        final long checkInterval = Math.max(MIN_READINESS_CHECK_INTERVAL_MILLIS,
+                (long) probe.getPeriodSeconds() * Constants.MILLIS_IN_SECOND);
 
-        String ip = azureResourceManager.containerGroups()
-                .getByResourceGroup(resourceGroup, agent.getNodeName()).ipAddress();
+        Thread.sleep((long) probe.getInitialDelaySeconds() * Constants.MILLIS_IN_SECOND);
+        while (true) {
+            if (AzureContainerUtils.isTimeout(startupTimeout, stopWatch.getTime())) {
+                throw new TimeoutException(String.format(
+                        "ACI container not ready after %d minutes, see the readiness probe events in the Azure "
+                                + "portal / CLI", startupTimeout));
+            }
 
-        agent.setHost(ip);
-        agent.save();
+            ContainerGroup containerGroup = scheduler.call(READ, PROVISION,
+                    () -> azureResourceManager.containerGroups()
+                            .getByResourceGroup(resourceGroup, agent.getNodeName()));
+            AciService.checkContainerStart(containerGroup, agent.getNodeName());
+            Container container = containerGroup == null ? null
+                    : containerGroup.containers().get(agent.getNodeName());
+            if (readiness.observe(container == null ? null : container.instanceView())) {
+                LOGGER.log(Level.INFO, "Agent {0} is ready", agent.getNodeName());
+                return;
+            }
+            Thread.sleep(checkInterval);
+        }
     }
 
     private void waitToOnline(AciAgent agent, int startupTimeout, StopWatch stopWatch)
             throws Exception {
         LOGGER.log(Level.INFO, "Waiting agent {0} to online", agent.getNodeName());
         AzureResourceManager azureResourceManager = getAzureClient();
+        ArmRequestScheduler scheduler = ArmRequestScheduler.forClient(azureResourceManager);
 
         while (true) {
             if (AzureContainerUtils.isTimeout(startupTimeout, stopWatch.getTime())) {
@@ -215,25 +570,17 @@ public class AciCloud extends Cloud {
             if (computer == null) {
                 throw new IllegalStateException("Agent node has been deleted");
             }
-
-            ContainerGroup containerGroup =
-                    azureResourceManager.containerGroups().getByResourceGroup(resourceGroup, agent.getNodeName());
-
-            if (containerGroup.containers().containsKey(agent.getNodeName())
-                    && containerGroup.containers().get(agent.getNodeName()).instanceView().currentState().state()
-                    .equals("Terminated")) {
-
-                // there doesn't seem to be anyway to get debug information with the current API version in the SDK
-                // logs and events just return nothing
-                // while debugging with the CLI the best way I could find was 'attaching' to the container
-                // see https://github.com/Azure/azure-libraries-for-java/issues/1379
-                throw new IllegalStateException("ACI container terminated, see the Azure portal / "
-                        + "CLI for more information");
-            }
-
+            // Agents often connect while the deployment is polled, then the container group isn't read at all
             if (computer.isOnline()) {
                 break;
             }
+
+            ContainerGroup containerGroup = scheduler.call(READ, PROVISION,
+                    () -> azureResourceManager.containerGroups()
+                            .getByResourceGroup(resourceGroup, agent.getNodeName()));
+
+            AciService.checkContainerStart(containerGroup, agent.getNodeName());
+
             final int retryInterval = 5 * 1000;
             Thread.sleep(retryInterval);
         }
@@ -259,6 +606,47 @@ public class AciCloud extends Cloud {
         return templates;
     }
 
+    public TemplateSelectionPolicy getTemplateSelectionPolicy() {
+        return templateSelectionPolicy == null ? TemplateSelectionPolicy.FIRST_MATCH : templateSelectionPolicy;
+    }
+
+    public ProvisionStatistics getProvisionStatistics() {
+        return provisionStatistics;
+    }
+
+    public boolean isDemandForecasting() {
+        return demandForecasting;
+    }
+
+    /**
+     * @return how far ahead agents are started for forecast arrivals, at least the startup time of the template.
+     */
+    public int getForecastLeadMinutes() {
+        return Math.max(0, forecastLeadMinutes);
+    }
+
+    public boolean isTeardownOnShutdown() {
+        return teardownOnShutdown;
+    }
+
+    /**
+     * Forecast versus actual arrivals of the labels this cloud serves.
+     *
+     * @return the summary by label expression.
+     */
+    public Map<String, String> getDemandForecastSummaries() {
+        final WeeklyArrivalModel model = WeeklyArrivalModel.get();
+        final Jenkins jenkins = Jenkins.get();
+        Map<String, String> summaries = new TreeMap<>();
+        for (String expression : model.getLabels()) {
+            Label label = jenkins.getLabel(expression);
+            if (label != null && !getMatchingTemplates(label).isEmpty()) {
+                summaries.put(expression, model.getSummary(expression));
+            }
+        }
+        return summaries;
+    }
+
     public static synchronized ExecutorService getThreadPool() {
         if (AciCloud.threadPool == null) {
             AciCloud.threadPool = Executors.newCachedThreadPool();
@@ -268,6 +656,9 @@ public class AciCloud extends Cloud {
 
     private Object readResolve() {
         this.provisionRetryStrategy = new ProvisionRetryStrategy();
+        this.provisionStatistics = new ProvisionStatistics();
+        this.plannedAgents = new ConcurrentHashMap<>();
+        this.capacityPreflight = createCapacityPreflight();
         return this;
     }
 
@@ -7,6 +7,12 @@ import com.microsoft.jenkins.containeragents.PodEnvVar;
 import com.microsoft.jenkins.containeragents.remote.LaunchMethodTypeContent;
 import com.microsoft.jenkins.containeragents.strategy.ContainerIdleRetentionStrategy;
 import com.microsoft.jenkins.containeragents.strategy.ContainerOnceRetentionStrategy;
+import com.microsoft.jenkins.containeragents.strategy.ContainerPredictiveRetentionStrategy;
+import com.microsoft.jenkins.containeragents.strategy.ContainerReuseRetentionStrategy;
+import com.microsoft.jenkins.containeragents.aci.usage.ContainerUsageRecorder;
+import com.microsoft.jenkins.containeragents.aci.usage.JarCacheRecorder;
+import com.microsoft.jenkins.containeragents.aci.usage.JarCacheStatistics;
+import com.microsoft.jenkins.containeragents.aci.usage.UsageStatistics;
 import com.microsoft.jenkins.containeragents.aci.volumes.AzureFileVolume;
 import com.microsoft.jenkins.containeragents.util.Constants;
 import edu.umd.cs.findbugs.annotations.NonNull;
@@ -31,6 +37,7 @@ import org.kohsuke.stapler.QueryParameter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -76,6 +83,34 @@ public class AciContainerTemplate extends AbstractDescribableImpl<AciContainerTe
 
     private String sshPort;
 
+    private int weight = 1;
+
+    private int numExecutors = 1;
+
+    private int maxInstances;
+
+    private List<AciSidecarContainer> sidecars = new ArrayList<>();
+
+    private List<AciInitContainer> initContainers = new ArrayList<>();
+
+    private String initVolumeMountPath;
+
+    private List<AciBootstrapFile> bootstrapFiles = new ArrayList<>();
+
+    private String jvmOptions;
+
+    private boolean appCds;
+
+    private AzureFileVolume jarCacheVolume;
+
+    private AciProbe readinessProbe;
+
+    private AciProbe livenessProbe;
+
+    private boolean usageSampling;
+
+    private boolean attachUsageToBuilds;
+
     private boolean isAvailable = true;
 
     @DataBoundConstructor
@@ -110,8 +145,9 @@ public class AciContainerTemplate extends AbstractDescribableImpl<AciContainerTe
         setAvailable(true);
     }
 
-    public void provisionAgents(AciCloud cloud, AciAgent agent, StopWatch stopWatch) throws Exception {
-        AciService.createDeployment(cloud, this, agent, stopWatch);
+    public AciProvisioningResult provisionAgents(AciCloud cloud, AciAgent agent, StopWatch stopWatch)
+            throws Exception {
+        return AciService.createDeployment(cloud, this, agent, stopWatch);
     }
 
     public boolean isJnlp() {
@@ -178,6 +214,80 @@ public class AciContainerTemplate extends AbstractDescribableImpl<AciContainerTe
         return volumes;
     }
 
+    public List<AciSidecarContainer> getSidecars() {
+        return sidecars == null ? new ArrayList<>() : sidecars;
+    }
+
+    @DataBoundSetter
+    public void setSidecars(List<AciSidecarContainer> sidecars) {
+        this.sidecars = Objects.requireNonNullElseGet(sidecars, ArrayList::new);
+    }
+
+    public List<AciInitContainer> getInitContainers() {
+        return initContainers == null ? new ArrayList<>() : initContainers;
+    }
+
+    @DataBoundSetter
+    public void setInitContainers(List<AciInitContainer> initContainers) {
+        this.initContainers = Objects.requireNonNullElseGet(initContainers, ArrayList::new);
+    }
+
+    public String getInitVolumeMountPath() {
+        return StringUtils.defaultString(initVolumeMountPath);
+    }
+
+    @DataBoundSetter
+    public void setInitVolumeMountPath(String initVolumeMountPath) {
+        this.initVolumeMountPath = StringUtils.trim(initVolumeMountPath);
+    }
+
+    public List<AciBootstrapFile> getBootstrapFiles() {
+        return bootstrapFiles == null ? new ArrayList<>() : bootstrapFiles;
+    }
+
+    @DataBoundSetter
+    public void setBootstrapFiles(List<AciBootstrapFile> bootstrapFiles) {
+        this.bootstrapFiles = Objects.requireNonNullElseGet(bootstrapFiles, ArrayList::new);
+    }
+
+    public String getJvmOptions() {
+        return StringUtils.defaultString(jvmOptions);
+    }
+
+    @DataBoundSetter
+    public void setJvmOptions(String jvmOptions) {
+        this.jvmOptions = StringUtils.trim(jvmOptions);
+    }
+
+    public boolean isAppCds() {
+        return appCds;
+    }
+
+    @DataBoundSetter
+    public void setAppCds(boolean appCds) {
+        this.appCds = appCds;
+    }
+
+    public AzureFileVolume getJarCacheVolume() {
+        return jarCacheVolume;
+    }
+
+    @DataBoundSetter
+    public void setJarCacheVolume(AzureFileVolume jarCacheVolume) {
+        this.jarCacheVolume = jarCacheVolume;
+    }
+
+    /**
+     * @return the mount path of the jar cache volume, or null if the template has none.
+     */
+    public String getJarCachePath() {
+        return jarCacheVolume == null ? null : StringUtils.trimToNull(jarCacheVolume.getMountPath());
+    }
+
+    public JarCacheStatistics getJarCacheStatistics() {
+        return JarCacheRecorder.get().getStatistics(name);
+    }
+
     public void setAvailable(boolean available) {
         this.isAvailable = available;
     }
@@ -224,6 +334,86 @@ public class AciContainerTemplate extends AbstractDescribableImpl<AciContainerTe
         this.privateIpAddress = privateIpAddress;
     }
 
+    /**
+     * @return the probe telling when the agent container is ready for builds, or null if it's ready once running.
+     */
+    public AciProbe getReadinessProbe() {
+        return readinessProbe != null && readinessProbe.isConfigured() ? readinessProbe : null;
+    }
+
+    @DataBoundSetter
+    public void setReadinessProbe(AciProbe readinessProbe) {
+        this.readinessProbe = readinessProbe;
+    }
+
+    /**
+     * @return the probe telling whether a provisioned agent container still works, or null to not check it.
+     */
+    public AciProbe getLivenessProbe() {
+        return livenessProbe != null && livenessProbe.isConfigured() ? livenessProbe : null;
+    }
+
+    @DataBoundSetter
+    public void setLivenessProbe(AciProbe livenessProbe) {
+        this.livenessProbe = livenessProbe;
+    }
+
+    public int getWeight() {
+        return Math.max(1, weight);
+    }
+
+    @DataBoundSetter
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    public int getNumExecutors() {
+        return Math.max(1, numExecutors);
+    }
+
+    @DataBoundSetter
+    public void setNumExecutors(int numExecutors) {
+        this.numExecutors = numExecutors;
+    }
+
+    /**
+     * @return the maximum number of agents of this template at the same time, 0 for no limit.
+     */
+    public int getMaxInstances() {
+        return Math.max(0, maxInstances);
+    }
+
+    @DataBoundSetter
+    public void setMaxInstances(int maxInstances) {
+        this.maxInstances = maxInstances;
+    }
+
+    public boolean isUsageSampling() {
+        return usageSampling;
+    }
+
+    @DataBoundSetter
+    public void setUsageSampling(boolean usageSampling) {
+        this.usageSampling = usageSampling;
+    }
+
+    public boolean isAttachUsageToBuilds() {
+        return attachUsageToBuilds;
+    }
+
+    @DataBoundSetter
+    public void setAttachUsageToBuilds(boolean attachUsageToBuilds) {
+        this.attachUsageToBuilds = attachUsageToBuilds;
+    }
+
+    public UsageStatistics getUsageStatistics() {
+        return ContainerUsageRecorder.get().getStatistics(name);
+    }
+
+    public Map<String, UsageStatistics> getJobUsageStatistics() {
+        return ContainerUsageRecorder.get().getJobStatistics(name);
+    }
+
     @Extension
     public static class DescriptorImpl extends Descriptor<AciContainerTemplate> {
 
@@ -237,6 +427,8 @@ public class AciContainerTemplate extends AbstractDescribableImpl<AciContainerTe
             List<Descriptor<RetentionStrategy<?>>> list = new ArrayList<>();
             list.add(ContainerOnceRetentionStrategy.DESCRIPTOR);
             list.add(ContainerIdleRetentionStrategy.DESCRIPTOR);
+            list.add(ContainerPredictiveRetentionStrategy.DESCRIPTOR);
+            list.add(ContainerReuseRetentionStrategy.DESCRIPTOR);
             return list;
         }
 
@@ -0,0 +1,85 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import com.microsoft.jenkins.containeragents.Messages;
+import com.microsoft.jenkins.containeragents.PodEnvVar;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Container run to completion before the agent container starts, e.g. to restore dependency caches into the
+ * shared init volume. Init containers run one after the other in the order they are declared.
+ */
+public class AciInitContainer extends AbstractDescribableImpl<AciInitContainer> implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 5113472093319067714L;
+
+    private final String name;
+
+    private final String image;
+
+    private String command;
+
+    private List<PodEnvVar> envVars = new ArrayList<>();
+
+    @DataBoundConstructor
+    public AciInitContainer(String name, String image) {
+        this.name = StringUtils.trim(name);
+        this.image = StringUtils.trim(image);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getImage() {
+        return image;
+    }
+
+    public String getCommand() {
+        return StringUtils.defaultString(command);
+    }
+
+    @DataBoundSetter
+    public void setCommand(String command) {
+        this.command = command;
+    }
+
+    public List<PodEnvVar> getEnvVars() {
+        return envVars == null ? new ArrayList<>() : envVars;
+    }
+
+    @DataBoundSetter
+    public void setEnvVars(List<PodEnvVar> envVars) {
+        this.envVars = Objects.requireNonNullElseGet(envVars, ArrayList::new);
+    }
+
+    @Extension
+    public static class DescriptorImpl extends Descriptor<AciInitContainer> {
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Aci Init Container";
+        }
+
+        public FormValidation doCheckName(@QueryParameter String value) {
+            if (StringUtils.isBlank(value) || value.trim().matches("[a-z0-9]([-a-z0-9]*[a-z0-9])?")) {
+                return FormValidation.ok();
+            }
+            return FormValidation.error(Messages.Container_Name_Error());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.AdministrativeMonitor;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lists the clouds which were removed or moved to another resource group while their container groups may still be
+ * running, and tears them down once an administrator confirms it. A mistaken save of the configuration thus doesn't
+ * abort running builds.
+ */
+@Extension
+public class AciOrphanedCloudMonitor extends AdministrativeMonitor {
+    // By cloud name and resource group
+    private final Map<String, Orphan> orphans = new ConcurrentHashMap<>();
+
+    public static AciOrphanedCloudMonitor get() {
+        return ExtensionList.lookupSingleton(AciOrphanedCloudMonitor.class);
+    }
+
+    void add(String cloudName, String credentialsId, String resourceGroup) {
+        Orphan orphan = new Orphan(cloudName, credentialsId, resourceGroup);
+        orphans.put(orphan.getKey(), orphan);
+    }
+
+    public Collection<Orphan> getOrphans() {
+        return new ArrayList<>(orphans.values());
+    }
+
+    @Override
+    public boolean isActivated() {
+        return !orphans.isEmpty();
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Removed Azure Container Instance Clouds";
+    }
+
+    @RequirePOST
+    public HttpResponse doTeardown(@QueryParameter String key) {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        Orphan orphan = orphans.remove(key);
+        if (orphan != null) {
+            AciBulkTeardown.start(orphan.getCloudName(), orphan.credentialsId, orphan.getResourceGroup());
+        }
+        return HttpResponses.forwardToPreviousPage();
+    }
+
+    @RequirePOST
+    public HttpResponse doKeep(@QueryParameter String key) {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        orphans.remove(key);
+        return HttpResponses.forwardToPreviousPage();
+    }
+
+    public static final class Orphan {
+        private final String cloudName;
+
+        private final String credentialsId;
+
+        private final String resourceGroup;
+
+        Orphan(String cloudName, String credentialsId, String resourceGroup) {
+            this.cloudName = cloudName;
+            this.credentialsId = credentialsId;
+            this.resourceGroup = resourceGroup;
+        }
+
+        public String getKey() {
+            return cloudName + "/" + resourceGroup;
+        }
+
+        public String getCloudName() {
+            return cloudName;
+        }
+
+        public String getResourceGroup() {
+            return resourceGroup;
+        }
+    }
+}
@@ -1,12 +1,28 @@
 package com.microsoft.jenkins.containeragents.aci;
 
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
+import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
+import com.microsoft.jenkins.containeragents.Messages;
 import com.microsoft.jenkins.containeragents.aci.dns.AciDnsConfig;
+import com.microsoft.jenkins.containeragents.util.Constants;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.model.AbstractDescribableImpl;
 import hudson.model.Descriptor;
+import hudson.model.Item;
+import hudson.security.ACL;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.util.Collections;
 
 public class AciPrivateIpAddress extends AbstractDescribableImpl<AciPrivateIpAddress>  {
     private String vnet;
@@ -17,6 +33,12 @@ public class AciPrivateIpAddress extends AbstractDescribableImpl<AciPrivateIpAdd
 
     private AciDnsConfig dnsConfig;
 
+    private String jumpHost;
+
+    private String jumpPort;
+
+    private String jumpCredentialsId;
+
     @DataBoundConstructor
     public AciPrivateIpAddress(String vnet, String subnet) {
         this.vnet = vnet;
@@ -49,6 +71,49 @@ public class AciPrivateIpAddress extends AbstractDescribableImpl<AciPrivateIpAdd
         this.dnsConfig = dnsConfig;
     }
 
+    /**
+     * @return the SSH jump host through which SSH agents are launched, or null to connect to them directly.
+     */
+    public String getJumpHost() {
+        return StringUtils.trimToNull(jumpHost);
+    }
+
+    @DataBoundSetter
+    public void setJumpHost(String jumpHost) {
+        this.jumpHost = jumpHost;
+    }
+
+    public String getJumpPort() {
+        return StringUtils.defaultIfBlank(jumpPort, String.valueOf(Constants.DEFAULT_SSH_PORT));
+    }
+
+    /**
+     * @param port the port as configured.
+     * @return the port, or {@link Constants#DEFAULT_SSH_PORT} if it isn't a valid port number, e.g. when set through
+     * configuration as code.
+     */
+    static int parsePort(String port) {
+        return isValidPort(port) ? Integer.parseInt(port.trim()) : Constants.DEFAULT_SSH_PORT;
+    }
+
+    static boolean isValidPort(String port) {
+        int value = NumberUtils.toInt(StringUtils.trim(port), -1);
+        return value > Constants.SSH_PORT_MIN && value <= Constants.SSH_PORT_MAX;
+    }
+
+    @DataBoundSetter
+    public void setJumpPort(String jumpPort) {
+        this.jumpPort = StringUtils.trim(jumpPort);
+    }
+
+    public String getJumpCredentialsId() {
+        return jumpCredentialsId;
+    }
+
+    @DataBoundSetter
+    public void setJumpCredentialsId(String jumpCredentialsId) {
+        this.jumpCredentialsId = jumpCredentialsId;
+    }
 
     @Extension
     public static class DescriptorImpl extends Descriptor<AciPrivateIpAddress> {
@@ -58,5 +123,33 @@ public class AciPrivateIpAddress extends AbstractDescribableImpl<AciPrivateIpAdd
         public String getDisplayName() {
             return "Aci Private IP Address";
         }
+
+        public ListBoxModel doFillJumpCredentialsIdItems(@AncestorInPath Item owner) {
+            StandardListBoxModel listBoxModel = new StandardListBoxModel();
+            listBoxModel.add("--- Select Jump Host Credentials ---", "");
+            if (owner == null) {
+                if (!Jenkins.get().hasPermission(Jenkins.ADMINISTER)) {
+                    return listBoxModel;
+                }
+            } else {
+                if (!owner.hasPermission(Item.EXTENDED_READ)
+                        && !owner.hasPermission(CredentialsProvider.USE_ITEM)) {
+                    return listBoxModel;
+                }
+            }
+            listBoxModel.includeAs(
+                    ACL.SYSTEM2,
+                    owner,
+                    StandardUsernameCredentials.class,
+                    Collections.emptyList());
+            return listBoxModel;
+        }
+
+        public FormValidation doCheckJumpPort(@QueryParameter String value) {
+            if (StringUtils.isBlank(value) || isValidPort(value)) {
+                return FormValidation.ok();
+            }
+            return FormValidation.error(Messages.Not_Number_Error());
+        }
     }
 }
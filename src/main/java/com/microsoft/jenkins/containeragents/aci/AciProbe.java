@@ -0,0 +1,151 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import com.microsoft.jenkins.containeragents.Messages;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Readiness or liveness probe of the agent container, either a command run in the container or an HTTP GET.
+ */
+public class AciProbe extends AbstractDescribableImpl<AciProbe> implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 4471862011259320873L;
+
+    private static final Logger LOGGER = Logger.getLogger(AciProbe.class.getName());
+
+    static final int DEFAULT_PERIOD_SECONDS = 10;
+
+    static final int DEFAULT_FAILURE_THRESHOLD = 3;
+
+    static final int DEFAULT_HTTP_PORT = 80;
+
+    private String command;
+
+    private String httpPath;
+
+    private String httpPort;
+
+    private int initialDelaySeconds;
+
+    private int periodSeconds = DEFAULT_PERIOD_SECONDS;
+
+    private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+
+    @DataBoundConstructor
+    public AciProbe() {
+    }
+
+    /**
+     * @return the command run in the container, exit code 0 is healthy. Ignored if there is an HTTP path.
+     */
+    public String getCommand() {
+        return StringUtils.defaultString(command);
+    }
+
+    @DataBoundSetter
+    public void setCommand(String command) {
+        this.command = command;
+    }
+
+    /**
+     * @return the path of the HTTP GET, a status from 200 to 399 is healthy.
+     */
+    public String getHttpPath() {
+        return StringUtils.trimToNull(httpPath);
+    }
+
+    @DataBoundSetter
+    public void setHttpPath(String httpPath) {
+        this.httpPath = httpPath;
+    }
+
+    public String getHttpPort() {
+        return StringUtils.defaultIfBlank(httpPort, String.valueOf(DEFAULT_HTTP_PORT));
+    }
+
+    /**
+     * @return the port of the HTTP GET, or {@link #DEFAULT_HTTP_PORT} if the configured one isn't a valid port.
+     */
+    public int getHttpPortNumber() {
+        return AciPrivateIpAddress.isValidPort(httpPort) ? Integer.parseInt(httpPort.trim()) : DEFAULT_HTTP_PORT;
+    }
+
+    @DataBoundSetter
+    public void setHttpPort(String httpPort) {
+        if (StringUtils.isNotBlank(httpPort) && !AciPrivateIpAddress.isValidPort(httpPort)) {
+            // Configuration as code bypasses the form validation
+            LOGGER.log(Level.WARNING, "Invalid probe port {0}, using {1}",
+                    new Object[]{httpPort, DEFAULT_HTTP_PORT});
+            this.httpPort = null;
+            return;
+        }
+        this.httpPort = StringUtils.trimToNull(httpPort);
+    }
+
+    public boolean isHttp() {
+        return getHttpPath() != null;
+    }
+
+    public int getInitialDelaySeconds() {
+        return Math.max(0, initialDelaySeconds);
+    }
+
+    @DataBoundSetter
+    public void setInitialDelaySeconds(int initialDelaySeconds) {
+        this.initialDelaySeconds = initialDelaySeconds;
+    }
+
+    public int getPeriodSeconds() {
+        return periodSeconds > 0 ? periodSeconds : DEFAULT_PERIOD_SECONDS;
+    }
+
+    @DataBoundSetter
+    public void setPeriodSeconds(int periodSeconds) {
+        this.periodSeconds = periodSeconds;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold > 0 ? failureThreshold : DEFAULT_FAILURE_THRESHOLD;
+    }
+
+    @DataBoundSetter
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * @return whether the probe has something to check.
+     */
+    public boolean isConfigured() {
+        return isHttp() || StringUtils.isNotBlank(command);
+    }
+
+    @Extension
+    public static class DescriptorImpl extends Descriptor<AciProbe> {
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Aci Probe";
+        }
+
+        public FormValidation doCheckHttpPort(@QueryParameter String value) {
+            if (StringUtils.isBlank(value) || AciPrivateIpAddress.isValidPort(value)) {
+                return FormValidation.ok();
+            }
+            return FormValidation.error(Messages.Not_Number_Error());
+        }
+    }
+}
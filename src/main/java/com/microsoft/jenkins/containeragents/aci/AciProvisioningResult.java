@@ -0,0 +1,65 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What the final poll of a succeeded deployment reported, so the agent is set up without reading the container group
+ * again.
+ */
+public final class AciProvisioningResult {
+    static final String IP_ADDRESS_OUTPUT = "containerIPv4Address";
+
+    private final String deploymentName;
+
+    private final String provisioningState;
+
+    private final Map<String, Object> outputs;
+
+    /**
+     * @param outputs the deployment outputs as returned by ARM, each an object with a type and a value.
+     */
+    AciProvisioningResult(String deploymentName, String provisioningState, Object outputs) {
+        this.deploymentName = deploymentName;
+        this.provisioningState = provisioningState;
+        this.outputs = parseOutputs(outputs);
+    }
+
+    private static Map<String, Object> parseOutputs(Object outputs) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (outputs instanceof Map<?, ?> map) {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                Object value = entry.getValue();
+                if (value instanceof Map<?, ?> output && output.containsKey("value")) {
+                    value = output.get("value");
+                }
+                result.put(String.valueOf(entry.getKey()), value);
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    public String getDeploymentName() {
+        return deploymentName;
+    }
+
+    public String getProvisioningState() {
+        return provisioningState;
+    }
+
+    /**
+     * @return the output values by name.
+     */
+    public Map<String, Object> getOutputs() {
+        return outputs;
+    }
+
+    /**
+     * @return the public or private IP address of the container group, or null if the deployment didn't output it.
+     */
+    public String getIpAddress() {
+        Object ip = outputs.get(IP_ADDRESS_OUTPUT);
+        return ip == null || ip.toString().isEmpty() ? null : ip.toString();
+    }
+}
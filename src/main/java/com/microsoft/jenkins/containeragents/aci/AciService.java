@@ -1,31 +1,59 @@
 package com.microsoft.jenkins.containeragents.aci;
 
+import com.azure.core.util.Context;
 import com.azure.resourcemanager.AzureResourceManager;
+import com.azure.resourcemanager.containerinstance.fluent.ContainersClient;
+import com.azure.resourcemanager.containerinstance.fluent.models.LogsInner;
+import com.azure.resourcemanager.containerinstance.models.Container;
 import com.azure.resourcemanager.containerinstance.models.ContainerGroup;
+import com.azure.resourcemanager.containerinstance.models.ContainerState;
+import com.azure.resourcemanager.containerinstance.models.InitContainerDefinition;
 import com.azure.resourcemanager.resources.models.Deployment;
 import com.azure.resourcemanager.resources.models.DeploymentMode;
 import com.azure.resourcemanager.resources.models.Deployments;
 import com.microsoft.jenkins.containeragents.builders.AciDeploymentTemplateBuilder;
 import com.microsoft.jenkins.containeragents.builders.AciDeploymentTemplateBuilder.AciDeploymentTemplate;
+import com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler;
 import com.microsoft.jenkins.containeragents.util.AzureContainerUtils;
 import com.microsoft.jenkins.containeragents.util.Constants;
+import hudson.model.Computer;
+import hudson.slaves.SlaveComputer;
 import org.apache.commons.lang3.time.StopWatch;
+import org.jenkinsci.plugins.cloudstats.CloudStatistics;
+import org.jenkinsci.plugins.cloudstats.PhaseExecutionAttachment;
+import org.jenkinsci.plugins.cloudstats.ProvisioningActivity;
 
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Budget.DELETE;
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Budget.READ;
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Budget.WRITE;
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Priority.CLEANUP;
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Priority.PROVISION;
+
 public final class AciService {
     private static final Logger LOGGER = Logger.getLogger(AciService.class.getName());
 
+    private static final long START_CHECK_INTERVAL_MILLIS = 20 * 1000;
+
     private AciService() {
         //
     }
 
-    public static void createDeployment(final AciCloud cloud,
-                                        final AciContainerTemplate template,
-                                        final AciAgent agent,
-                                        final StopWatch stopWatch) throws Exception {
+    /**
+     * Deploys the container group of the agent and waits for the deployment to succeed.
+     *
+     * @return the state and outputs of the succeeded deployment.
+     */
+    public static AciProvisioningResult createDeployment(final AciCloud cloud,
+                                                         final AciContainerTemplate template,
+                                                         final AciAgent agent,
+                                                         final StopWatch stopWatch) throws Exception {
         String deployName = getDeploymentName(template);
         AciDeploymentTemplate deploymentTemplate =
                 new AciDeploymentTemplateBuilder().buildDeploymentTemplate(cloud, template, agent);
@@ -39,13 +67,14 @@ public final class AciService {
         String armTemplateParameterForDeployment = deploymentTemplate.templateParameterAsString();
         LOGGER.log(Level.FINE, "Deployment ARM Template Parameter: {0}", armTemplateParameterForDeployment);
         final AzureResourceManager azureClient = cloud.getAzureClient();
-        azureClient.deployments()
+        final ArmRequestScheduler scheduler = ArmRequestScheduler.forClient(azureClient);
+        scheduler.call(WRITE, PROVISION, () -> azureClient.deployments()
                 .define(deployName)
                 .withExistingResourceGroup(cloud.getResourceGroup())
                 .withTemplate(armTemplateForDeployment)
                 .withParameters(armTemplateParameterForDeployment)
                 .withMode(DeploymentMode.INCREMENTAL)
-                .beginCreate();
+                .beginCreate());
 
         //register deployName
         agent.setDeployName(deployName);
@@ -55,35 +84,187 @@ public final class AciService {
         final int retryInterval = 10 * 1000;
 
         LOGGER.log(Level.INFO, "Waiting for deployment {0}", deployName);
-        while (true) {
-            if (AzureContainerUtils.isTimeout(template.getTimeout(), stopWatch.getTime())) {
-                throw new TimeoutException("Deployment timeout");
-            }
-            Deployment deployment
-                    = azureClient.deployments().getByResourceGroup(cloud.getResourceGroup(), deployName);
-
-            if (deployment.provisioningState().equalsIgnoreCase("succeeded")) {
-                LOGGER.log(Level.INFO, "Deployment {0} succeed", deployName);
-                break;
-            } else if (deployment.provisioningState().equalsIgnoreCase("Failed")) {
-                throw new Exception(String.format("Deployment %s status: Failed", deployName));
-            } else {
-                // If half of time passed, we need to inspect what happened from logs
-                if (AzureContainerUtils.isHalfTimePassed(template.getTimeout(), stopWatch.getTime())) {
-                    ContainerGroup containerGroup
-                            = azureClient.containerGroups()
-                            .getByResourceGroup(cloud.getResourceGroup(), agent.getNodeName());
-                    if (containerGroup != null) {
-                        LOGGER.log(Level.INFO, "Logs from container {0}: {1}",
-                                new Object[]{agent.getNodeName(),
-                                        containerGroup.getLogContent(agent.getNodeName())});
+        final ContainerLogTail logTail = new ContainerLogTail();
+        long nextStartCheck = START_CHECK_INTERVAL_MILLIS;
+        ProvisioningActivity.Status outcome = ProvisioningActivity.Status.FAIL;
+        try {
+            while (true) {
+                if (AzureContainerUtils.isTimeout(template.getTimeout(), stopWatch.getTime())) {
+                    throw new TimeoutException("Deployment timeout");
+                }
+                Deployment deployment = scheduler.call(READ, PROVISION,
+                        () -> azureClient.deployments().getByResourceGroup(cloud.getResourceGroup(), deployName));
+
+                if (deployment.provisioningState().equalsIgnoreCase("succeeded")) {
+                    LOGGER.log(Level.INFO, "Deployment {0} succeed", deployName);
+                    if (!template.getInitContainers().isEmpty()) {
+                        logInitContainers(cloud, agent);
                     }
+                    outcome = ProvisioningActivity.Status.OK;
+                    return new AciProvisioningResult(deployName, deployment.provisioningState(),
+                            deployment.outputs());
+                } else if (deployment.provisioningState().equalsIgnoreCase("Failed")) {
+                    throw new Exception(String.format("Deployment %s status: Failed", deployName));
+                } else {
+                    // If half of time passed, we need to inspect what happened from logs
+                    if (AzureContainerUtils.isHalfTimePassed(template.getTimeout(), stopWatch.getTime())
+                            && logTail.isDue()) {
+                        tailLog(cloud, agent, logTail);
+                    }
+                    // The deployment keeps running while the image can't be pulled or the container crashes
+                    if (stopWatch.getTime() >= nextStartCheck) {
+                        nextStartCheck = stopWatch.getTime() + START_CHECK_INTERVAL_MILLIS;
+                        checkContainerStart(cloud, agent.getNodeName());
+                    }
+                    Thread.sleep(retryInterval);
                 }
-                Thread.sleep(retryInterval);
             }
+        } finally {
+            attachLogTail(agent, logTail, outcome);
         }
     }
 
+    /**
+     * Fails fast if a container of the group can't start, otherwise does nothing.
+     *
+     * @throws ContainerStartException if the instance view of a container reports a start failure.
+     */
+    static void checkContainerStart(AciCloud cloud, String containerGroupName)
+            throws ContainerStartException, InterruptedException {
+        final AzureResourceManager azureClient = cloud.getAzureClient();
+        final ContainerGroup containerGroup;
+        try {
+            containerGroup = ArmRequestScheduler.forClient(azureClient).call(READ, PROVISION,
+                    () -> azureClient.containerGroups().getByResourceGroup(cloud.getResourceGroup(),
+                            containerGroupName));
+        } catch (RuntimeException e) {
+            // The container group isn't created yet
+            LOGGER.log(Level.FINE, String.format("Failed to get container group %s", containerGroupName), e);
+            return;
+        }
+        checkContainerStart(containerGroup, containerGroupName);
+    }
+
+    /**
+     * The agent container fails on any start failure. Sidecars may exit or restart on their own, so they only fail
+     * the group if their image can't be pulled.
+     */
+    static void checkContainerStart(ContainerGroup containerGroup, String agentName)
+            throws ContainerStartException {
+        if (containerGroup == null) {
+            return;
+        }
+        for (Container container : containerGroup.containers().values()) {
+            ContainerStartException failure = ContainerStartException.detect(container.name(),
+                    container.instanceView());
+            if (failure != null && (container.name().equals(agentName) || failure.isConfigurationError())) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Forwards the container log lines written since the last fetch to the launch log of the agent.
+     */
+    private static void tailLog(AciCloud cloud, AciAgent agent, ContainerLogTail logTail)
+            throws InterruptedException {
+        final String name = agent.getNodeName();
+        final AzureResourceManager azureClient = cloud.getAzureClient();
+        final ContainersClient containers = azureClient.containerGroups().manager().serviceClient().getContainers();
+        List<String> lines;
+        try {
+            LogsInner logs = ArmRequestScheduler.forClient(azureClient).call(READ, PROVISION,
+                    () -> containers.listLogsWithResponse(cloud.getResourceGroup(), name, name,
+                            ContainerLogTail.TAIL_LINES, true, Context.NONE).getValue());
+            lines = logTail.update(logs == null ? null : logs.content());
+        } catch (RuntimeException e) {
+            // The container group isn't created yet
+            LOGGER.log(Level.FINE, String.format("Failed to fetch the log of container %s", name), e);
+            logTail.update(null);
+            return;
+        }
+        final Computer computer = agent.toComputer();
+        final PrintStream launchLog = computer instanceof SlaveComputer slaveComputer
+                ? slaveComputer.getListener().getLogger() : null;
+        for (String line : lines) {
+            LOGGER.log(Level.FINE, "Log of container {0}: {1}", new Object[]{name, line});
+            if (launchLog != null) {
+                launchLog.println(line);
+            }
+        }
+    }
+
+    /**
+     * Keeps the last container log lines of a slow start with the provisioning activity in the cloud statistics.
+     *
+     * @param outcome whether the deployment succeeded, so a failed one isn't reported as a success.
+     */
+    private static void attachLogTail(AciAgent agent, ContainerLogTail logTail, ProvisioningActivity.Status outcome) {
+        List<String> lines = logTail.getRecentLines();
+        if (lines.isEmpty()) {
+            return;
+        }
+        CloudStatistics statistics = CloudStatistics.get();
+        ProvisioningActivity activity = statistics.getActivityFor(agent);
+        if (activity != null) {
+            statistics.attach(activity, ProvisioningActivity.Phase.PROVISIONING, new PhaseExecutionAttachment(
+                    outcome, "Container log: " + String.join(System.lineSeparator(), lines)));
+        }
+    }
+
+    /**
+     * Logs in which order and how long the init containers of the agent ran before the agent container started.
+     */
+    private static void logInitContainers(AciCloud cloud, AciAgent agent) {
+        try {
+            final AzureResourceManager azureClient = cloud.getAzureClient();
+            ContainerGroup containerGroup = ArmRequestScheduler.forClient(azureClient).call(READ, PROVISION,
+                    () -> azureClient.containerGroups()
+                            .getByResourceGroup(cloud.getResourceGroup(), agent.getNodeName()));
+            if (containerGroup == null || containerGroup.innerModel().initContainers() == null) {
+                return;
+            }
+            StringBuilder report = new StringBuilder();
+            for (InitContainerDefinition initContainer : containerGroup.innerModel().initContainers()) {
+                ContainerState state = initContainer.instanceView() == null
+                        ? null : initContainer.instanceView().currentState();
+                report.append(System.lineSeparator()).append(initContainer.name()).append(": ")
+                        .append(describe(state));
+            }
+            Container container = containerGroup.containers().get(agent.getNodeName());
+            ContainerState agentState = container == null || container.instanceView() == null
+                    ? null : container.instanceView().currentState();
+            report.append(System.lineSeparator()).append(agent.getNodeName()).append(" (agent): ")
+                    .append(describe(agentState));
+            LOGGER.log(Level.INFO, "Init containers of {0}:{1}", new Object[]{agent.getNodeName(), report});
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, String.format("Failed to report init containers of %s", agent.getNodeName()), e);
+        }
+    }
+
+    private static String describe(ContainerState state) {
+        if (state == null) {
+            return "no state reported";
+        }
+        StringBuilder description = new StringBuilder(String.valueOf(state.state()));
+        if (state.startTime() != null) {
+            description.append(", started ").append(state.startTime());
+        }
+        if (state.finishTime() != null) {
+            description.append(", finished ").append(state.finishTime());
+            if (state.startTime() != null) {
+                description.append(" after ")
+                        .append(Duration.between(state.startTime(), state.finishTime()).toMillis()).append(" ms");
+            }
+        }
+        if (state.exitCode() != null) {
+            description.append(", exit code ").append(state.exitCode());
+        }
+        return description.toString();
+    }
+
     private static String getDeploymentName(AciContainerTemplate template) {
         return AzureContainerUtils.generateName(template.getName(), Constants.ACI_DEPLOYMENT_RANDOM_NAME_LENGTH);
     }
@@ -93,12 +274,19 @@ public final class AciService {
                                                String containerGroupName,
                                                String deployName) {
         AzureResourceManager azureClient;
+        ArmRequestScheduler scheduler;
 
         try {
             azureClient = AzureContainerUtils.getAzureClient(credentialsId);
-            azureClient.containerGroups().deleteByResourceGroup(resourceGroup, containerGroupName);
+            scheduler = ArmRequestScheduler.forClient(azureClient);
+            scheduler.run(DELETE, CLEANUP,
+                    () -> azureClient.containerGroups().deleteByResourceGroup(resourceGroup, containerGroupName));
             LOGGER.log(Level.INFO, "Delete ACI Container Group: {0} successfully", containerGroupName);
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.log(Level.WARNING, "Delete ACI Container Group: {0} interrupted", containerGroupName);
+            return;
         } catch (Exception e) {
             LOGGER.log(Level.WARNING, String.format("Delete ACI Container Group: %s failed", containerGroupName), e);
             return;
@@ -109,20 +297,25 @@ public final class AciService {
             if (deployName != null) {
                 // Only to delete succeeded deployments for future debugging.
                 Deployments deployments = azureClient.deployments();
-                Deployment deployment = deployments.getByResourceGroup(resourceGroup, deployName);
+                Deployment deployment = scheduler.call(READ, CLEANUP,
+                        () -> deployments.getByResourceGroup(resourceGroup, deployName));
                 if (deployment != null) {
                     String provisioningState = deployment.provisioningState();
                     LOGGER.fine(() -> String.format("Checking deployment: %s, provisioning state: %s",
                             deployName, provisioningState));
                     if (provisioningState
                             .equalsIgnoreCase("succeeded")) {
-                        deployments.deleteByResourceGroup(resourceGroup, deployName);
+                        scheduler.run(DELETE, CLEANUP,
+                                () -> deployments.deleteByResourceGroup(resourceGroup, deployName));
                         LOGGER.log(Level.INFO, "Delete ACI deployment: {0} successfully", deployName);
                     }
                 } else {
                     LOGGER.fine(() -> String.format("Skipped deployment: %s as we couldn't find it", deployName));
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.log(Level.WARNING, "Delete ACI deployment: {0} interrupted", deployName);
         } catch (Exception e) {
             LOGGER.log(Level.WARNING, String.format("Delete ACI deployment: %s failed", deployName), e);
         }
@@ -0,0 +1,110 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import com.microsoft.jenkins.containeragents.Messages;
+import com.microsoft.jenkins.containeragents.PodEnvVar;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Additional container started in the agent container group, e.g. a dependency cache proxy or a database used by
+ * the builds. It shares the network and the volumes of the agent container.
+ */
+public class AciSidecarContainer extends AbstractDescribableImpl<AciSidecarContainer> implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 3926601871443350188L;
+
+    private final String name;
+
+    private final String image;
+
+    private final String cpu;
+
+    private final String memory;
+
+    private String command;
+
+    private List<PodEnvVar> envVars = new ArrayList<>();
+
+    private List<AciPort> ports = new ArrayList<>();
+
+    @DataBoundConstructor
+    public AciSidecarContainer(String name, String image, String cpu, String memory) {
+        this.name = StringUtils.trim(name);
+        this.image = StringUtils.trim(image);
+        this.cpu = cpu;
+        this.memory = memory;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getImage() {
+        return image;
+    }
+
+    public String getCpu() {
+        return cpu;
+    }
+
+    public String getMemory() {
+        return memory;
+    }
+
+    public String getCommand() {
+        return StringUtils.defaultString(command);
+    }
+
+    @DataBoundSetter
+    public void setCommand(String command) {
+        this.command = command;
+    }
+
+    public List<PodEnvVar> getEnvVars() {
+        return envVars == null ? new ArrayList<>() : envVars;
+    }
+
+    @DataBoundSetter
+    public void setEnvVars(List<PodEnvVar> envVars) {
+        this.envVars = Objects.requireNonNullElseGet(envVars, ArrayList::new);
+    }
+
+    public List<AciPort> getPorts() {
+        return ports == null ? new ArrayList<>() : ports;
+    }
+
+    @DataBoundSetter
+    public void setPorts(List<AciPort> ports) {
+        this.ports = Objects.requireNonNullElseGet(ports, ArrayList::new);
+    }
+
+    @Extension
+    public static class DescriptorImpl extends Descriptor<AciSidecarContainer> {
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Aci Sidecar Container";
+        }
+
+        public FormValidation doCheckName(@QueryParameter String value) {
+            if (StringUtils.isBlank(value) || value.trim().matches("[a-z0-9]([-a-z0-9]*[a-z0-9])?")) {
+                return FormValidation.ok();
+            }
+            return FormValidation.error(Messages.Container_Name_Error());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Action;
+import jenkins.model.Jenkins;
+import jenkins.model.TransientActionFactory;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Deletes all container groups of a cloud from its page, and shows the progress.
+ */
+public class AciTeardownAction implements Action {
+    private final AciCloud cloud;
+
+    public AciTeardownAction(AciCloud cloud) {
+        this.cloud = cloud;
+    }
+
+    public AciCloud getCloud() {
+        return cloud;
+    }
+
+    public AciBulkTeardown getTeardown() {
+        return AciBulkTeardown.getLatest(cloud.getName());
+    }
+
+    @RequirePOST
+    public HttpResponse doStart() {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        AciBulkTeardown.start(cloud);
+        return HttpResponses.redirectToDot();
+    }
+
+    @Override
+    public String getIconFileName() {
+        return Jenkins.get().hasPermission(Jenkins.ADMINISTER) ? "symbol-trash" : null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Delete Container Groups";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "teardown";
+    }
+
+    @Extension
+    public static final class Factory extends TransientActionFactory<AciCloud> {
+        @Override
+        public Class<AciCloud> type() {
+            return AciCloud.class;
+        }
+
+        @NonNull
+        @Override
+        public Collection<? extends Action> createFor(@NonNull AciCloud target) {
+            return List.of(new AciTeardownAction(target));
+        }
+    }
+}
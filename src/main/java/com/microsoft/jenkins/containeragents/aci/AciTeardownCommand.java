@@ -0,0 +1,39 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import hudson.Extension;
+import hudson.cli.CLICommand;
+import hudson.slaves.Cloud;
+import jenkins.model.Jenkins;
+import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.Option;
+
+/**
+ * Deletes all container groups of a cloud and waits for the deletes to complete.
+ */
+@Extension
+public class AciTeardownCommand extends CLICommand {
+    @Argument(metaVar = "CLOUD", usage = "Name of the Azure Container Instance cloud", required = true)
+    private String cloud;
+
+    @Option(name = "-parallelism", usage = "How many container groups to delete at the same time")
+    private int parallelism = AciBulkTeardown.DEFAULT_PARALLELISM;
+
+    @Override
+    public String getShortDescription() {
+        return "Deletes all container groups of an Azure Container Instance cloud";
+    }
+
+    @Override
+    protected int run() {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        Cloud found = Jenkins.get().getCloud(cloud);
+        if (!(found instanceof AciCloud aciCloud)) {
+            throw new IllegalArgumentException("No Azure Container Instance cloud named " + cloud);
+        }
+        AciBulkTeardown teardown = AciBulkTeardown.create(aciCloud, parallelism);
+        if (teardown == null) {
+            throw new IllegalStateException("Cloud " + cloud + " is already being torn down");
+        }
+        return teardown.run(stdout, AciBulkTeardown.TIMEOUT_MILLIS) ? 0 : 1;
+    }
+}
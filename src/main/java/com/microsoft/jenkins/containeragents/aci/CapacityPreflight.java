@@ -0,0 +1,180 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import com.microsoft.jenkins.containeragents.util.Constants;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * How many more agents a cloud can start before its ACI quota or the free addresses of its subnets run out.
+ * <p>
+ * The capacity is loaded in the background at most every {@link #REFRESH_MILLIS}, so {@code canProvision} and
+ * {@code provision} never wait for ARM. The agents still starting are subtracted from it, as Azure only counts a
+ * container group once its deployment created it, so each reservation is kept until its planned node completes or
+ * fails. Until the first load, or if loading fails, the capacity is unlimited, so provisioning behaves as without
+ * the preflight.
+ */
+public final class CapacityPreflight {
+    private static final Logger LOGGER = Logger.getLogger(CapacityPreflight.class.getName());
+
+    static final long REFRESH_MILLIS = 10 * 1000;
+
+    private static final Capacity UNLIMITED = new Capacity(Double.MAX_VALUE, Integer.MAX_VALUE, Map.of());
+
+    private final Loader loader;
+
+    private final Executor executor;
+
+    private final LongSupplier clock;
+
+    private Capacity capacity = UNLIMITED;
+
+    private long loadedAt = Long.MIN_VALUE;
+
+    private boolean loading;
+
+    private double reservedCores;
+
+    private int reservedGroups;
+
+    private final Map<String, Integer> reservedAddresses = new HashMap<>();
+
+    CapacityPreflight(Loader loader, Executor executor, LongSupplier clock) {
+        this.loader = loader;
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    /**
+     * @param cores  the CPU cores requested by an agent.
+     * @param subnet the subnet the agent gets its address from, or null for a public address.
+     * @return how many more such agents can start.
+     */
+    public synchronized int getHeadroom(double cores, String subnet) {
+        refreshIfStale();
+        long headroom = capacity.groups - reservedGroups;
+        if (cores > 0) {
+            headroom = Math.min(headroom, (long) Math.floor((capacity.cores - reservedCores) / cores));
+        }
+        if (subnet != null && capacity.addresses.containsKey(subnet)) {
+            headroom = Math.min(headroom, capacity.addresses.get(subnet) - reservedAddresses.getOrDefault(subnet, 0));
+        }
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, headroom));
+    }
+
+    /**
+     * Reserves the capacity of an agent if there is any left.
+     *
+     * @return the reservation to release once the agent started or failed, or null if the agent can't start.
+     */
+    public synchronized Reservation tryReserve(double cores, String subnet) {
+        if (getHeadroom(cores, subnet) <= 0) {
+            return null;
+        }
+        Reservation reservation = new Reservation(Math.max(0, cores), subnet);
+        reservedCores += reservation.cores;
+        reservedGroups++;
+        if (subnet != null) {
+            reservedAddresses.merge(subnet, 1, Integer::sum);
+        }
+        return reservation;
+    }
+
+    public synchronized String getSummary() {
+        return String.format("%s cores, %s container groups free, %d reserved, loaded %d s ago",
+                format(capacity.cores), format(capacity.groups), reservedGroups,
+                loadedAt == Long.MIN_VALUE ? 0 : (clock.getAsLong() - loadedAt) / Constants.MILLIS_IN_SECOND);
+    }
+
+    private static String format(double value) {
+        return value >= Integer.MAX_VALUE ? "unlimited" : String.format("%.1f", value);
+    }
+
+    private void refreshIfStale() {
+        final long now = clock.getAsLong();
+        if (loading || (loadedAt != Long.MIN_VALUE && now - loadedAt < REFRESH_MILLIS)) {
+            return;
+        }
+        loading = true;
+        executor.execute(() -> {
+            Capacity loaded = UNLIMITED;
+            try {
+                loaded = loader.load();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "CapacityPreflight: failed to load the capacity", e);
+            }
+            synchronized (this) {
+                capacity = loaded;
+                loadedAt = clock.getAsLong();
+                loading = false;
+            }
+        });
+    }
+
+    /**
+     * The capacity of an agent which is starting.
+     */
+    public final class Reservation {
+        private final double cores;
+
+        private final String subnet;
+
+        private boolean released;
+
+        private Reservation(double cores, String subnet) {
+            this.cores = cores;
+            this.subnet = subnet;
+        }
+
+        /**
+         * Gives the capacity back, once the container group counts in the loaded capacity or failed. Does nothing
+         * if it was already released.
+         */
+        public void release() {
+            synchronized (CapacityPreflight.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                reservedCores = Math.max(0, reservedCores - cores);
+                reservedGroups--;
+                if (subnet != null) {
+                    reservedAddresses.computeIfPresent(subnet, (key, count) -> count > 1 ? count - 1 : null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Free capacity when it was loaded.
+     */
+    public static final class Capacity {
+        private final double cores;
+
+        private final int groups;
+
+        private final Map<String, Integer> addresses;
+
+        /**
+         * @param cores     the free ACI cores in the region, {@link Double#MAX_VALUE} if unknown.
+         * @param groups    the free ACI container groups in the region, {@link Integer#MAX_VALUE} if unknown.
+         * @param addresses the free addresses by subnet.
+         */
+        public Capacity(double cores, int groups, Map<String, Integer> addresses) {
+            this.cores = cores;
+            this.groups = groups;
+            this.addresses = Map.copyOf(addresses);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        Capacity load() throws Exception;
+    }
+}
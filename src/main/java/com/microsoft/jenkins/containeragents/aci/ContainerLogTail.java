@@ -0,0 +1,96 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Follows the log of a starting container without downloading the whole log on every poll.
+ * <p>
+ * ACI logs have no offset, so each fetch asks for the last {@link #TAIL_LINES} lines with timestamps, and the lines
+ * after the last line seen are new. Fetches are at least {@link #MIN_INTERVAL_MILLIS} apart and stop once
+ * {@link #MAX_BYTES} were forwarded.
+ */
+final class ContainerLogTail {
+    static final int TAIL_LINES = 100;
+
+    static final long MIN_INTERVAL_MILLIS = 30 * 1000;
+
+    static final int MAX_BYTES = 64 * 1024;
+
+    private static final int RECENT_LINES = 10;
+
+    private final LongSupplier clock;
+
+    private final Deque<String> recentLines = new ArrayDeque<>();
+
+    private long nextFetch;
+
+    private String lastLine;
+
+    private int bytes;
+
+    private boolean truncated;
+
+    ContainerLogTail() {
+        this(System::currentTimeMillis);
+    }
+
+    ContainerLogTail(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return whether the log should be fetched now.
+     */
+    boolean isDue() {
+        return !truncated && clock.getAsLong() >= nextFetch;
+    }
+
+    /**
+     * Takes the lines of a fetch which weren't seen before.
+     *
+     * @param content the last lines of the log, prefixed with timestamps so repeated messages are told apart.
+     * @return the new lines, with a marker where lines were missed or the log was truncated.
+     */
+    List<String> update(String content) {
+        nextFetch = clock.getAsLong() + MIN_INTERVAL_MILLIS;
+        List<String> lines = content == null ? List.of() : content.lines().filter(line -> !line.isEmpty()).toList();
+        if (lines.isEmpty()) {
+            return List.of();
+        }
+        int start = 0;
+        List<String> result = new ArrayList<>();
+        if (lastLine != null) {
+            start = lines.lastIndexOf(lastLine) + 1;
+            if (start == 0) {
+                // More lines were written since the last fetch than the tail holds
+                result.add("...");
+            }
+        }
+        lastLine = lines.get(lines.size() - 1);
+        for (String line : lines.subList(start, lines.size())) {
+            bytes += line.length() + 1;
+            if (bytes > MAX_BYTES) {
+                truncated = true;
+                result.add(String.format("... log truncated after %d bytes", MAX_BYTES));
+                break;
+            }
+            result.add(line);
+            recentLines.addLast(line);
+            if (recentLines.size() > RECENT_LINES) {
+                recentLines.removeFirst();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the last lines forwarded, oldest first.
+     */
+    List<String> getRecentLines() {
+        return new ArrayList<>(recentLines);
+    }
+}
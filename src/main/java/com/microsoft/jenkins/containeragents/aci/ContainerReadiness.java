@@ -0,0 +1,53 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import com.azure.resourcemanager.containerinstance.models.ContainerPropertiesInstanceView;
+import com.azure.resourcemanager.containerinstance.models.Event;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Infers from the instance view whether the probes of a container pass.
+ * <p>
+ * ACI reports no readiness flag, only {@code Unhealthy} events counting the failed probes. A running container is
+ * ready once the count of failed readiness probes stops growing between two observations a probe period apart.
+ */
+final class ContainerReadiness {
+    static final String READINESS = "Readiness";
+
+    static final String LIVENESS = "Liveness";
+
+    private Integer lastFailures;
+
+    /**
+     * @param view the instance view of the container, observed at least a probe period after the last one.
+     * @return whether the container is ready.
+     */
+    boolean observe(ContainerPropertiesInstanceView view) {
+        if (view == null || view.currentState() == null
+                || !"Running".equalsIgnoreCase(view.currentState().state())) {
+            lastFailures = null;
+            return false;
+        }
+        int failures = countProbeFailures(view, READINESS);
+        boolean ready = lastFailures != null && failures == lastFailures;
+        lastFailures = failures;
+        return ready;
+    }
+
+    /**
+     * @param probe {@link #READINESS} or {@link #LIVENESS}.
+     * @return how often the probe failed since the container was created.
+     */
+    static int countProbeFailures(ContainerPropertiesInstanceView view, String probe) {
+        if (view == null || view.events() == null) {
+            return 0;
+        }
+        int failures = 0;
+        for (Event event : view.events()) {
+            if ("Unhealthy".equalsIgnoreCase(event.name())
+                    && StringUtils.startsWithIgnoreCase(event.message(), probe)) {
+                failures += event.count() == null ? 1 : event.count();
+            }
+        }
+        return failures;
+    }
+}
@@ -0,0 +1,111 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import com.azure.resourcemanager.containerinstance.models.ContainerPropertiesInstanceView;
+import com.azure.resourcemanager.containerinstance.models.ContainerState;
+import com.azure.resourcemanager.containerinstance.models.Event;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Locale;
+
+/**
+ * A container of an agent failed to start for a reason that waiting for the timeout won't fix.
+ * <p>
+ * Found from the events, state and restart count in the instance view of the container, so the planned node fails
+ * as soon as ACI reports an image pull error, a registry authentication failure or a crash loop.
+ */
+public class ContainerStartException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    // A few restarts may be a flaky entrypoint, more are a crash loop
+    static final int MAX_RESTARTS = 2;
+
+    private static final String[] AUTHENTICATION_ERRORS = {"unauthorized", "authentication required",
+        "access denied"};
+
+    private static final String[] MISSING_IMAGE_ERRORS = {"manifest unknown", "not found", "repository does not exist",
+        "name unknown"};
+
+    private final boolean configurationError;
+
+    ContainerStartException(String message, boolean configurationError) {
+        super(message);
+        this.configurationError = configurationError;
+    }
+
+    /**
+     * @return whether the template is wrong, e.g. a missing image or bad registry credentials, so retrying it soon
+     * fails again.
+     */
+    public boolean isConfigurationError() {
+        return configurationError;
+    }
+
+    /**
+     * Looks for a start failure in the instance view of a container.
+     *
+     * @param containerName the container name.
+     * @param view          the instance view, may be null before the container is scheduled.
+     * @return the failure, or null if the container may still start.
+     */
+    static ContainerStartException detect(String containerName, ContainerPropertiesInstanceView view) {
+        if (view == null) {
+            return null;
+        }
+        final int restarts = view.restartCount() == null ? 0 : view.restartCount();
+        if (view.events() != null) {
+            for (Event event : view.events()) {
+                String message = StringUtils.defaultString(event.message());
+                String lowerCase = message.toLowerCase(Locale.ROOT);
+                boolean failed = "Failed".equalsIgnoreCase(event.name());
+                boolean backOff = "BackOff".equalsIgnoreCase(event.name());
+                if (!failed && !backOff) {
+                    continue;
+                }
+                if (!lowerCase.contains("pull")) {
+                    // E.g. a failed probe may report "access denied" of the workload, only a restart loop is a failure
+                    if (backOff && restarts > MAX_RESTARTS) {
+                        return failure(containerName, "backing off restarting", message, false);
+                    }
+                    continue;
+                }
+                if (StringUtils.containsAny(lowerCase, AUTHENTICATION_ERRORS)) {
+                    return failure(containerName, "registry authentication failed", message, true);
+                }
+                // Other pull errors may be registry rate limits or timeouts, which a retry soon may get past
+                boolean missingImage = StringUtils.containsAny(lowerCase, MISSING_IMAGE_ERRORS);
+                return failed
+                        ? failure(containerName, "failed to pull the image", message, missingImage)
+                        : failure(containerName, "backing off pulling the image", message, missingImage);
+            }
+        }
+
+        final ContainerState state = view.currentState();
+        final String detail = state == null ? "" : StringUtils.defaultString(state.detailStatus());
+        if (detail.contains("ErrImagePull") || detail.contains("ImagePullBackOff")) {
+            return failure(containerName, "failed to pull the image", detail, false);
+        }
+        if (detail.contains("CrashLoopBackOff")) {
+            return failure(containerName, "backing off restarting", detail, false);
+        }
+        if (restarts > MAX_RESTARTS) {
+            ContainerState previous = view.previousState();
+            return failure(containerName, String.format("restarted %d times", restarts),
+                    previous == null ? "" : "last exit code " + previous.exitCode(), false);
+        }
+        if (state != null && "Terminated".equalsIgnoreCase(state.state())) {
+            return failure(containerName, "terminated", "exit code " + state.exitCode(), false);
+        }
+        return null;
+    }
+
+    private static ContainerStartException failure(String containerName,
+                                                   String reason,
+                                                   String detail,
+                                                   boolean configurationError) {
+        String message = String.format("ACI container %s %s", containerName, reason);
+        if (StringUtils.isNotBlank(detail)) {
+            message += ": " + detail;
+        }
+        return new ContainerStartException(message, configurationError);
+    }
+}
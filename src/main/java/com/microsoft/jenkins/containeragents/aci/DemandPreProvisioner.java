@@ -0,0 +1,87 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import com.microsoft.jenkins.containeragents.strategy.WeeklyArrivalModel;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Label;
+import hudson.model.Queue;
+import hudson.model.queue.QueueListener;
+import hudson.slaves.CloudProvisioningListener;
+import hudson.slaves.NodeProvisioner;
+import jenkins.model.Jenkins;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Starts agents ahead of the daily and weekly peaks forecast by the {@link WeeklyArrivalModel}, for the clouds with
+ * demand forecasting enabled.
+ * <p>
+ * Runs as the first provisioning strategy of each label, so the agents started are pending launches of the
+ * {@link NodeProvisioner} of the label. The strategies after it count them instead of planning agents for the same
+ * demand again, and the provisioning listeners, e.g. cloud statistics, see them. Each label of a cloud is forecast at
+ * most once a minute.
+ */
+@Extension(ordinal = DemandPreProvisioner.ORDINAL)
+public class DemandPreProvisioner extends NodeProvisioner.Strategy {
+    private static final Logger LOGGER = Logger.getLogger(DemandPreProvisioner.class.getName());
+
+    // Before the strategies of Jenkins and other plugins, which then count the agents started here
+    static final int ORDINAL = 100;
+
+    private static final long RECURRENCE_PERIOD_IN_MILLIS = 60 * 1000;
+
+    // Last forecast by cloud and label expression
+    private final Map<String, Long> lastRuns = new ConcurrentHashMap<>();
+
+    @NonNull
+    @Override
+    public NodeProvisioner.StrategyDecision apply(@NonNull NodeProvisioner.StrategyState state) {
+        final Label label = state.getLabel();
+        final Jenkins instance = Jenkins.getInstanceOrNull();
+        if (label == null || instance == null
+                || !WeeklyArrivalModel.get().getLabels().contains(label.getExpression())) {
+            return NodeProvisioner.StrategyDecision.CONSULT_REMAINING_STRATEGIES;
+        }
+        final long now = System.currentTimeMillis();
+        for (AciCloud cloud : instance.clouds.getAll(AciCloud.class)) {
+            if (!cloud.isDemandForecasting()) {
+                continue;
+            }
+            Long lastRun = lastRuns.get(cloud.getName() + "/" + label.getExpression());
+            if (lastRun != null && now - lastRun < RECURRENCE_PERIOD_IN_MILLIS) {
+                continue;
+            }
+            lastRuns.put(cloud.getName() + "/" + label.getExpression(), now);
+
+            Collection<NodeProvisioner.PlannedNode> planned = cloud.preProvision(WeeklyArrivalModel.get(), label);
+            if (planned.isEmpty()) {
+                continue;
+            }
+            LOGGER.log(Level.INFO, "Started {0} agents of {1} for {2} ahead of the forecast demand",
+                    new Object[]{planned.size(), cloud.getName(), label});
+            for (CloudProvisioningListener listener : CloudProvisioningListener.all()) {
+                listener.onStarted(cloud, label, planned);
+            }
+            state.recordPendingLaunches(planned);
+        }
+        return NodeProvisioner.StrategyDecision.CONSULT_REMAINING_STRATEGIES;
+    }
+
+    /**
+     * Teaches the arrival model the queue items waiting for an agent.
+     */
+    @Extension
+    public static final class ArrivalListener extends QueueListener {
+        @Override
+        public void onEnterWaiting(Queue.WaitingItem wi) {
+            Label label = wi.getAssignedLabel();
+            if (label != null) {
+                WeeklyArrivalModel.get().recordArrival(label.getExpression());
+            }
+        }
+    }
+}
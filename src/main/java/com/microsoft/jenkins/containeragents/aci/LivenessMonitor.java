@@ -0,0 +1,188 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import com.azure.resourcemanager.AzureResourceManager;
+import com.azure.resourcemanager.containerinstance.models.Container;
+import com.azure.resourcemanager.containerinstance.models.ContainerGroup;
+import com.azure.resourcemanager.containerinstance.models.ContainerPropertiesInstanceView;
+import com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler;
+import com.microsoft.jenkins.containeragents.util.Constants;
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.slaves.Cloud;
+import hudson.slaves.OfflineCause;
+import jenkins.model.Jenkins;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Budget.READ;
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Priority.CLEANUP;
+
+/**
+ * Retires online agents whose liveness probe fails.
+ * <p>
+ * Only agents of templates with a liveness probe are checked. ACI restarts a container whose liveness probe failed
+ * as often as the failure threshold, which resets the agent. An agent whose container restarted, stopped or keeps
+ * failing the probe is taken offline and deleted, and the queue provisions a replacement.
+ * <p>
+ * Each agent is checked once per period of its probe times the failure threshold, as ACI can't detect a failure
+ * faster. The first check of an agent is offset by its name, so the reads of many agents spread over that interval.
+ */
+@Extension
+public class LivenessMonitor extends AsyncPeriodicWork {
+    private static final Logger LOGGER = Logger.getLogger(LivenessMonitor.class.getName());
+
+    private static final long RECURRENCE_PERIOD_IN_MILLIS = 15 * 1000;
+
+    // The restart count and failed probes of each agent when it was first checked
+    private final Map<String, Baseline> baselines = new ConcurrentHashMap<>();
+
+    // When each agent is checked next
+    private final Map<String, Long> nextChecks = new ConcurrentHashMap<>();
+
+    public LivenessMonitor() {
+        super("ACI Liveness Monitor");
+    }
+
+    @Override
+    protected void execute(TaskListener listener) {
+        Jenkins instance = Jenkins.getInstanceOrNull();
+        if (instance == null) {
+            return;
+        }
+        Set<String> checked = new HashSet<>();
+        for (Computer computer : instance.getComputers()) {
+            if (!(computer instanceof AciComputer aciComputer) || !computer.isOnline()) {
+                continue;
+            }
+            AciAgent agent = aciComputer.getNode();
+            if (agent == null) {
+                continue;
+            }
+            Cloud cloud = instance.getCloud(agent.getCloudName());
+            if (!(cloud instanceof AciCloud aciCloud)) {
+                continue;
+            }
+            AciContainerTemplate template = aciCloud.getTemplate(agent.getId().getTemplateName());
+            if (template == null || template.getLivenessProbe() == null) {
+                continue;
+            }
+            checked.add(computer.getName());
+            if (!isDue(computer.getName(), getCheckInterval(template.getLivenessProbe()),
+                    System.currentTimeMillis())) {
+                continue;
+            }
+            try {
+                String failure = check(aciCloud, agent, template.getLivenessProbe());
+                if (failure != null) {
+                    retire(aciComputer, agent, failure);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, String.format("Failed to check liveness of %s", computer.getName()), e);
+            }
+        }
+        baselines.keySet().retainAll(checked);
+        nextChecks.keySet().retainAll(checked);
+    }
+
+    static long getCheckInterval(AciProbe probe) {
+        return Math.max(RECURRENCE_PERIOD_IN_MILLIS,
+                (long) probe.getPeriodSeconds() * probe.getFailureThreshold() * Constants.MILLIS_IN_SECOND);
+    }
+
+    private boolean isDue(String name, long interval, long now) {
+        long next = nextChecks.computeIfAbsent(name, key -> now + Math.floorMod(key.hashCode(), interval));
+        if (now < next) {
+            return false;
+        }
+        nextChecks.put(name, now + interval);
+        return true;
+    }
+
+    private String check(AciCloud cloud, AciAgent agent, AciProbe probe) throws InterruptedException {
+        final AzureResourceManager azureClient = cloud.getAzureClient();
+        final String name = agent.getNodeName();
+        ContainerGroup containerGroup = ArmRequestScheduler.forClient(azureClient).call(READ, CLEANUP,
+                () -> azureClient.containerGroups().getByResourceGroup(cloud.getResourceGroup(), name));
+        Container container = containerGroup == null ? null : containerGroup.containers().get(name);
+        if (container == null) {
+            return "container group not found";
+        }
+        return check(name, container.instanceView(), probe);
+    }
+
+    /**
+     * @return why the container isn't live any more, or null if it is.
+     */
+    String check(String name, ContainerPropertiesInstanceView view, AciProbe probe) {
+        if (view == null || view.currentState() == null) {
+            return null;
+        }
+        if (!"Running".equalsIgnoreCase(view.currentState().state())) {
+            return "container " + view.currentState().state();
+        }
+        int restarts = view.restartCount() == null ? 0 : view.restartCount();
+        int failures = ContainerReadiness.countProbeFailures(view, ContainerReadiness.LIVENESS);
+        Baseline baseline = baselines.computeIfAbsent(name, key -> new Baseline(restarts, failures));
+        if (restarts > baseline.restarts) {
+            return String.format("container restarted after failing the liveness probe (%d restarts)", restarts);
+        }
+        if (failures - baseline.failures >= probe.getFailureThreshold()) {
+            return String.format("liveness probe failed %d times", failures - baseline.failures);
+        }
+        return null;
+    }
+
+    private void retire(AciComputer computer, AciAgent agent, String failure) {
+        LOGGER.log(Level.WARNING, "ACI agent {0} is not live: {1}, replacing it",
+                new Object[]{agent.getNodeName(), failure});
+        baselines.remove(agent.getNodeName());
+        nextChecks.remove(agent.getNodeName());
+        computer.setTemporarilyOffline(true, new LivenessFailure(failure));
+        Computer.threadPoolForRemoting.submit(() -> {
+            agent.terminate();
+            return null;
+        });
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return RECURRENCE_PERIOD_IN_MILLIS;
+    }
+
+    private static final class Baseline {
+        private final int restarts;
+
+        private final int failures;
+
+        Baseline(int restarts, int failures) {
+            this.restarts = restarts;
+            this.failures = failures;
+        }
+    }
+
+    /**
+     * Why an agent was taken offline, shown on the agent page until it is deleted.
+     */
+    public static final class LivenessFailure extends OfflineCause {
+        private final String message;
+
+        LivenessFailure(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return "Liveness probe: " + message;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.microsoft.jenkins.containeragents.aci.usage;
+
+import hudson.model.Action;
+
+/**
+ * CPU and memory usage of the ACI container a build ran on, shown on the build page.
+ */
+public class ContainerUsageAction implements Action {
+    private final String templateName;
+
+    private final String cpu;
+
+    private final String memory;
+
+    private int samples;
+
+    private double cpuTotal;
+
+    private double cpuMax;
+
+    private double memoryMax;
+
+    public ContainerUsageAction(String templateName, String cpu, String memory) {
+        this.templateName = templateName;
+        this.cpu = cpu;
+        this.memory = memory;
+    }
+
+    synchronized void addSample(double cpuCores, double memoryGib) {
+        samples++;
+        cpuTotal += cpuCores;
+        cpuMax = Math.max(cpuMax, cpuCores);
+        memoryMax = Math.max(memoryMax, memoryGib);
+    }
+
+    public String getTemplateName() {
+        return templateName;
+    }
+
+    public String getCpu() {
+        return cpu;
+    }
+
+    public String getMemory() {
+        return memory;
+    }
+
+    public synchronized int getSamples() {
+        return samples;
+    }
+
+    public synchronized double getCpuAverage() {
+        return samples == 0 ? 0 : cpuTotal / samples;
+    }
+
+    public synchronized double getCpuMax() {
+        return cpuMax;
+    }
+
+    public synchronized double getMemoryMax() {
+        return memoryMax;
+    }
+
+    public synchronized String getSummary() {
+        return String.format("requested %s cores / %s GiB, average %.2f cores, peak %.2f cores / %.2f GiB (%d samples)",
+                cpu, memory, getCpuAverage(), cpuMax, memoryMax, samples);
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "ACI Container Usage";
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+}
@@ -0,0 +1,58 @@
+package com.microsoft.jenkins.containeragents.aci.usage;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Aggregates the container usage samples per template and per job running on that template.
+ */
+public final class ContainerUsageRecorder {
+    private static final ContainerUsageRecorder RECORDER = new ContainerUsageRecorder();
+
+    private final Map<String, UsageStatistics> templates = new ConcurrentHashMap<>();
+
+    private final Map<String, Map<String, UsageStatistics>> jobs = new ConcurrentHashMap<>();
+
+    private ContainerUsageRecorder() {
+    }
+
+    public static ContainerUsageRecorder get() {
+        return RECORDER;
+    }
+
+    public void recordCpu(String templateName, String jobName, double cores) {
+        getTemplateStatistics(templateName).addCpu(cores);
+        getJobStatistics(templateName, jobName).addCpu(cores);
+    }
+
+    public void recordMemory(String templateName, String jobName, double gib) {
+        getTemplateStatistics(templateName).addMemory(gib);
+        getJobStatistics(templateName, jobName).addMemory(gib);
+    }
+
+    /**
+     * Usage statistics of a template.
+     *
+     * @param templateName the template name.
+     * @return the statistics, or null if nothing was sampled for the template yet.
+     */
+    public UsageStatistics getStatistics(String templateName) {
+        return templates.get(templateName);
+    }
+
+    public Map<String, UsageStatistics> getJobStatistics(String templateName) {
+        Map<String, UsageStatistics> statistics = jobs.get(templateName);
+        return statistics == null ? Collections.emptyMap() : new TreeMap<>(statistics);
+    }
+
+    private UsageStatistics getTemplateStatistics(String templateName) {
+        return templates.computeIfAbsent(templateName, name -> new UsageStatistics());
+    }
+
+    private UsageStatistics getJobStatistics(String templateName, String jobName) {
+        return jobs.computeIfAbsent(templateName, name -> new ConcurrentHashMap<>())
+                .computeIfAbsent(jobName, name -> new UsageStatistics());
+    }
+}
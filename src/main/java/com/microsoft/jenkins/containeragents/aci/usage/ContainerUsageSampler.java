@@ -0,0 +1,217 @@
+package com.microsoft.jenkins.containeragents.aci.usage;
+
+import com.azure.resourcemanager.AzureResourceManager;
+import com.azure.resourcemanager.monitor.models.Metric;
+import com.azure.resourcemanager.monitor.models.MetricCollection;
+import com.azure.resourcemanager.monitor.models.MetricDefinition;
+import com.azure.resourcemanager.monitor.models.MetricValue;
+import com.azure.resourcemanager.monitor.models.TimeSeriesElement;
+import com.microsoft.jenkins.containeragents.aci.AciAgent;
+import com.microsoft.jenkins.containeragents.aci.AciCloud;
+import com.microsoft.jenkins.containeragents.aci.AciComputer;
+import com.microsoft.jenkins.containeragents.aci.AciContainerTemplate;
+import com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler;
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.Executor;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.slaves.Cloud;
+import jenkins.model.Jenkins;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Budget.READ;
+import static com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Priority.CLEANUP;
+
+/**
+ * Samples the CPU and memory usage of busy ACI agents from Azure Monitor.
+ * <p>
+ * Only agents of templates with usage sampling enabled are queried. Azure Monitor publishes the container group
+ * metrics with a delay of a few minutes, so every run asks for the window after the newest data point seen so far.
+ */
+@Extension
+public class ContainerUsageSampler extends AsyncPeriodicWork {
+    private static final Logger LOGGER = Logger.getLogger(ContainerUsageSampler.class.getName());
+
+    private static final long RECURRENCE_PERIOD_IN_MILLIS = 60 * 1000;
+    private static final int LOOKBACK_MINUTES = 5;
+
+    private static final String CPU_METRIC = "CpuUsage";
+    private static final String MEMORY_METRIC = "MemoryUsage";
+    private static final double MILLICORES_PER_CORE = 1000;
+    private static final double BYTES_PER_GIB = 1024 * 1024 * 1024;
+
+    private final Map<String, OffsetDateTime> nextSampleStart = new ConcurrentHashMap<>();
+
+    private final Map<String, List<MetricDefinition>> metricDefinitions = new ConcurrentHashMap<>();
+
+    public ContainerUsageSampler() {
+        super("ACI Container Usage Sampler");
+    }
+
+    @Override
+    protected void execute(TaskListener listener) {
+        Jenkins instance = Jenkins.getInstanceOrNull();
+        if (instance == null) {
+            return;
+        }
+        Set<String> sampled = new HashSet<>();
+        for (Computer computer : instance.getComputers()) {
+            if (!(computer instanceof AciComputer aciComputer) || computer.isIdle()) {
+                continue;
+            }
+            AciAgent agent = aciComputer.getNode();
+            if (agent == null) {
+                continue;
+            }
+            Cloud cloud = instance.getCloud(agent.getCloudName());
+            if (!(cloud instanceof AciCloud aciCloud)) {
+                continue;
+            }
+            AciContainerTemplate template = aciCloud.getTemplate(agent.getId().getTemplateName());
+            if (template == null || !template.isUsageSampling()) {
+                continue;
+            }
+            sampled.add(computer.getName());
+            try {
+                sample(aciCloud, template, aciComputer);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, String.format("Failed to sample usage of %s", computer.getName()), e);
+            }
+        }
+        nextSampleStart.keySet().retainAll(sampled);
+        metricDefinitions.keySet().retainAll(sampled);
+    }
+
+    private void sample(AciCloud cloud, AciContainerTemplate template, AciComputer computer) throws Exception {
+        final AzureResourceManager azureClient = cloud.getAzureClient();
+        final ArmRequestScheduler scheduler = ArmRequestScheduler.forClient(azureClient);
+        final String name = computer.getName();
+        final String resourceId = String.format(
+                "/subscriptions/%s/resourceGroups/%s/providers/Microsoft.ContainerInstance/containerGroups/%s",
+                azureClient.subscriptionId(), cloud.getResourceGroup(), name);
+
+        List<MetricDefinition> definitions = metricDefinitions.get(name);
+        if (definitions == null) {
+            definitions = scheduler.call(READ, CLEANUP,
+                    () -> azureClient.metricDefinitions().listByResource(resourceId));
+            metricDefinitions.put(name, definitions);
+        }
+
+        OffsetDateTime now = OffsetDateTime.now();
+        OffsetDateTime from = nextSampleStart.getOrDefault(name, now.minusMinutes(LOOKBACK_MINUTES));
+        Map<OffsetDateTime, Double> cpu = new TreeMap<>();
+        Map<OffsetDateTime, Double> memory = new TreeMap<>();
+        for (MetricDefinition definition : definitions) {
+            String metricName = definition.name().value();
+            if (CPU_METRIC.equalsIgnoreCase(metricName)) {
+                cpu = query(scheduler, definition, from, now);
+            } else if (MEMORY_METRIC.equalsIgnoreCase(metricName)) {
+                memory = query(scheduler, definition, from, now);
+            }
+        }
+
+        List<Run<?, ?>> runs = new ArrayList<>();
+        List<String> jobs = new ArrayList<>();
+        collectRunningJobs(computer, runs, jobs);
+
+        ContainerUsageRecorder recorder = ContainerUsageRecorder.get();
+        OffsetDateTime newest = null;
+        for (Map.Entry<OffsetDateTime, Double> entry : cpu.entrySet()) {
+            Double memoryBytes = memory.get(entry.getKey());
+            if (memoryBytes == null) {
+                continue;
+            }
+            double cores = entry.getValue() / MILLICORES_PER_CORE;
+            double gib = memoryBytes / BYTES_PER_GIB;
+            // Concurrent builds of one agent share the container, each of them is charged the full usage
+            for (String job : jobs) {
+                recorder.recordCpu(template.getName(), job, cores);
+                recorder.recordMemory(template.getName(), job, gib);
+            }
+            if (template.isAttachUsageToBuilds()) {
+                for (Run<?, ?> run : runs) {
+                    getOrAddAction(run, template).addSample(cores, gib);
+                }
+            }
+            newest = entry.getKey();
+        }
+        if (newest != null) {
+            nextSampleStart.put(name, newest.plusMinutes(1));
+        }
+    }
+
+    private static Map<OffsetDateTime, Double> query(ArmRequestScheduler scheduler,
+                                                     MetricDefinition definition,
+                                                     OffsetDateTime from,
+                                                     OffsetDateTime to) throws InterruptedException {
+        MetricCollection collection = scheduler.call(READ, CLEANUP, () -> definition.defineQuery()
+                .startingFrom(from)
+                .endsBefore(to)
+                .withAggregation("Average")
+                .withInterval(Duration.ofMinutes(1))
+                .execute());
+        Map<OffsetDateTime, Double> result = new TreeMap<>();
+        for (Metric metric : collection.metrics()) {
+            for (TimeSeriesElement element : metric.timeseries()) {
+                for (MetricValue value : element.data()) {
+                    if (value.average() != null) {
+                        result.put(value.timeStamp(), value.average());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void collectRunningJobs(AciComputer computer, List<Run<?, ?>> runs, List<String> jobs) {
+        for (Executor executor : computer.getAllExecutors()) {
+            Queue.Executable executable = executor.getCurrentExecutable();
+            if (executable == null) {
+                continue;
+            }
+            Run<?, ?> run = null;
+            if (executable instanceof Run<?, ?> r) {
+                run = r;
+            } else if (executable.getParentExecutable() instanceof Run<?, ?> r) {
+                run = r;
+            }
+            if (run != null) {
+                runs.add(run);
+                jobs.add(run.getParent().getFullName());
+            } else {
+                jobs.add(executable.getParent().getOwnerTask().getFullDisplayName());
+            }
+        }
+    }
+
+    private static synchronized ContainerUsageAction getOrAddAction(Run<?, ?> run, AciContainerTemplate template) {
+        ContainerUsageAction action = run.getAction(ContainerUsageAction.class);
+        if (action == null) {
+            action = new ContainerUsageAction(template.getName(), template.getCpu(), template.getMemory());
+            run.addAction(action);
+        }
+        return action;
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return RECURRENCE_PERIOD_IN_MILLIS;
+    }
+}
@@ -0,0 +1,117 @@
+package com.microsoft.jenkins.containeragents.aci.usage;
+
+import com.microsoft.jenkins.containeragents.aci.AciAgent;
+import com.microsoft.jenkins.containeragents.aci.AciComputer;
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.slaves.ComputerListener;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracks the shared jar cache of ACI agents per template.
+ * <p>
+ * A snapshot is taken on the agent when it comes online and another one when it is terminated, the difference in
+ * class loads is added to the statistics of its template. Only the snapshot at start walks the cache, which also
+ * samples the growth of the shared volume, so the one at termination doesn't delay the deletion of the container
+ * group.
+ */
+public final class JarCacheRecorder {
+    private static final Logger LOGGER = Logger.getLogger(JarCacheRecorder.class.getName());
+
+    private static final JarCacheRecorder RECORDER = new JarCacheRecorder();
+
+    private static final long SNAPSHOT_TIMEOUT_SECONDS = 10;
+
+    // Only the counters are read, but the node is removed right after
+    private static final long FINISH_TIMEOUT_SECONDS = 2;
+
+    private final Map<String, JarCacheStatistics> templates = new ConcurrentHashMap<>();
+
+    private final Map<String, JarCacheSnapshot> baselines = new ConcurrentHashMap<>();
+
+    private JarCacheRecorder() {
+    }
+
+    public static JarCacheRecorder get() {
+        return RECORDER;
+    }
+
+    /**
+     * Jar cache statistics of a template.
+     *
+     * @param templateName the template name.
+     * @return the statistics, or null if no agent of the template was recorded yet.
+     */
+    public JarCacheStatistics getStatistics(String templateName) {
+        return templates.get(templateName);
+    }
+
+    /**
+     * Records the activity of an agent which is about to be terminated.
+     *
+     * @param agent    the agent.
+     * @param computer the computer of the agent, still connected.
+     */
+    public void finish(AciAgent agent, Computer computer) {
+        final JarCacheSnapshot start = baselines.remove(agent.getNodeName());
+        if (start == null) {
+            return;
+        }
+        final JarCacheSnapshot end = snapshot(computer, null, FINISH_TIMEOUT_SECONDS);
+        if (end != null) {
+            getOrCreateStatistics(agent).add(start, end);
+        }
+    }
+
+    void start(AciAgent agent, Computer computer) {
+        final JarCacheSnapshot start = snapshot(computer, agent.getJarCachePath(), SNAPSHOT_TIMEOUT_SECONDS);
+        if (start != null) {
+            baselines.put(agent.getNodeName(), start);
+            getOrCreateStatistics(agent).addVolumeSample(start);
+        }
+    }
+
+    private JarCacheStatistics getOrCreateStatistics(AciAgent agent) {
+        return templates.computeIfAbsent(agent.getId().getTemplateName(), name -> new JarCacheStatistics());
+    }
+
+    private static JarCacheSnapshot snapshot(Computer computer, String jarCachePath, long timeoutSeconds) {
+        final VirtualChannel channel = computer.getChannel();
+        if (channel == null) {
+            return null;
+        }
+        try {
+            return channel.callAsync(new JarCacheSnapshot.Probe(jarCachePath))
+                    .get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, String.format("Failed to take jar cache snapshot of %s", computer.getName()), e);
+            return null;
+        }
+    }
+
+    @Extension
+    public static class Listener extends ComputerListener {
+        @Override
+        public void onOnline(Computer computer, TaskListener listener) {
+            if (!(computer instanceof AciComputer aciComputer)) {
+                return;
+            }
+            final AciAgent agent = aciComputer.getNode();
+            if (agent == null || StringUtils.isBlank(agent.getJarCachePath())) {
+                return;
+            }
+            Computer.threadPoolForRemoting.submit(() -> get().start(agent, computer));
+        }
+    }
+}
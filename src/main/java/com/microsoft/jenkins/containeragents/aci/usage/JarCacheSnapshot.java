@@ -0,0 +1,96 @@
+package com.microsoft.jenkins.containeragents.aci.usage;
+
+import hudson.remoting.Channel;
+import jenkins.security.MasterToSlaveCallable;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Remoting class loading counters and jar cache contents of an agent at one point in time.
+ */
+public final class JarCacheSnapshot implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 6024387791126412270L;
+
+    private final long classLoads;
+
+    private final long cacheHits;
+
+    private final long jars;
+
+    private final long bytes;
+
+    public JarCacheSnapshot(long classLoads, long cacheHits, long jars, long bytes) {
+        this.classLoads = classLoads;
+        this.cacheHits = cacheHits;
+        this.jars = jars;
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return the classes the agent loaded from the controller.
+     */
+    public long getClassLoads() {
+        return classLoads;
+    }
+
+    /**
+     * @return the class loads resolved from jars on the agent, without a round trip to the controller.
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getJars() {
+        return jars;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Takes the snapshot on the agent.
+     */
+    public static final class Probe extends MasterToSlaveCallable<JarCacheSnapshot, IOException> {
+        @Serial
+        private static final long serialVersionUID = 2400936186658203471L;
+
+        private final String jarCachePath;
+
+        /**
+         * @param jarCachePath the jar cache to walk, or null for the class loading counters only, which is cheap
+         *                     whatever the size of the cache.
+         */
+        public Probe(String jarCachePath) {
+            this.jarCachePath = jarCachePath;
+        }
+
+        @Override
+        public JarCacheSnapshot call() throws IOException {
+            final Channel channel = Channel.currentOrFail();
+            long jars = 0;
+            long bytes = 0;
+            final Path root = jarCachePath == null ? null : Paths.get(jarCachePath);
+            if (root != null && Files.isDirectory(root)) {
+                final List<Path> cached;
+                try (Stream<Path> files = Files.walk(root)) {
+                    cached = files.filter(file -> file.getFileName().toString().endsWith(".jar")).toList();
+                }
+                for (Path file : cached) {
+                    bytes += Files.size(file);
+                }
+                jars = cached.size();
+            }
+            return new JarCacheSnapshot(channel.classLoadingCount.get(),
+                    channel.classLoadingPrefetchCacheCount.get(), jars, bytes);
+        }
+    }
+}
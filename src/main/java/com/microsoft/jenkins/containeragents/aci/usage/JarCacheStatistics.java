@@ -0,0 +1,148 @@
+package com.microsoft.jenkins.containeragents.aci.usage;
+
+import hudson.Functions;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Shared jar cache effectiveness of one template.
+ * <p>
+ * The class loads are summed over its terminated agents. The downloads are the growth of the shared volume over the
+ * last {@link #WINDOW_MILLIS}, as seen by the agents of the template when they came online, so that concurrent
+ * agents don't count the same jars several times.
+ */
+public class JarCacheStatistics {
+    private static final int PERCENT = 100;
+
+    static final long WINDOW_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final LongSupplier clock;
+
+    // Contents of the shared volume, the oldest first
+    private final Deque<VolumeSample> volumeSamples = new ArrayDeque<>();
+
+    private long agents;
+
+    private long classLoads;
+
+    private long cacheHits;
+
+    private long bytesCached;
+
+    public JarCacheStatistics() {
+        this(System::currentTimeMillis);
+    }
+
+    JarCacheStatistics(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Adds the activity of one agent between the two snapshots.
+     *
+     * @param start the snapshot taken when the agent came online, with the contents of the cache.
+     * @param end   the snapshot taken when the agent was terminated, only its class loading counters are used.
+     */
+    public synchronized void add(JarCacheSnapshot start, JarCacheSnapshot end) {
+        agents++;
+        classLoads += Math.max(0, end.getClassLoads() - start.getClassLoads());
+        cacheHits += Math.max(0, end.getCacheHits() - start.getCacheHits());
+        bytesCached += start.getBytes();
+    }
+
+    /**
+     * Records the contents of the shared volume when an agent of the template came online.
+     *
+     * @param snapshot the snapshot with the contents of the cache.
+     */
+    public synchronized void addVolumeSample(JarCacheSnapshot snapshot) {
+        volumeSamples.addLast(new VolumeSample(clock.getAsLong(), snapshot.getJars(), snapshot.getBytes()));
+        pruneVolumeSamples();
+    }
+
+    public synchronized long getAgents() {
+        return agents;
+    }
+
+    public synchronized long getClassLoads() {
+        return classLoads;
+    }
+
+    public synchronized long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return the share of class loads served from the jar cache, between 0 and 1.
+     */
+    public synchronized double getHitRate() {
+        return classLoads == 0 ? 0 : (double) cacheHits / classLoads;
+    }
+
+    /**
+     * @return the size of the cache the agents found when they came online, i.e. the transfers they could skip.
+     */
+    public synchronized long getBytesCached() {
+        return bytesCached;
+    }
+
+    /**
+     * @return the jars added to the shared volume over the last {@link #WINDOW_MILLIS}.
+     */
+    public synchronized long getJarsDownloaded() {
+        return getVolumeGrowth(sample -> sample.jars);
+    }
+
+    /**
+     * @return the bytes added to the shared volume over the last {@link #WINDOW_MILLIS}.
+     */
+    public synchronized long getBytesDownloaded() {
+        return getVolumeGrowth(sample -> sample.bytes);
+    }
+
+    public synchronized String getSummary() {
+        return String.format("%d agents, %.0f%% of %d class loads from the cache, %s cached at start,"
+                        + " %d jars (%s) downloaded in the last 24 hours",
+                agents, getHitRate() * PERCENT, classLoads, Functions.humanReadableByteSize(bytesCached),
+                getJarsDownloaded(), Functions.humanReadableByteSize(getBytesDownloaded()));
+    }
+
+    private long getVolumeGrowth(ToLongFunction<VolumeSample> size) {
+        pruneVolumeSamples();
+        long growth = 0;
+        VolumeSample previous = null;
+        for (VolumeSample sample : volumeSamples) {
+            // The cache may have been cleaned in between, only growth counts
+            if (previous != null) {
+                growth += Math.max(0, size.applyAsLong(sample) - size.applyAsLong(previous));
+            }
+            previous = sample;
+        }
+        return growth;
+    }
+
+    private void pruneVolumeSamples() {
+        final long oldest = clock.getAsLong() - WINDOW_MILLIS;
+        while (!volumeSamples.isEmpty() && volumeSamples.peekFirst().time < oldest) {
+            volumeSamples.removeFirst();
+        }
+    }
+
+    private static final class VolumeSample {
+        private final long time;
+
+        private final long jars;
+
+        private final long bytes;
+
+        VolumeSample(long time, long jars, long bytes) {
+            this.time = time;
+            this.jars = jars;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.microsoft.jenkins.containeragents.aci.usage;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Bounded window of CPU and memory samples of one template or job, with a right-sizing recommendation.
+ */
+public class UsageStatistics {
+    private static final int MAX_SAMPLES = 2000;
+
+    // Recommended size = observed usage + headroom, rounded up to the ACI request granularity
+    private static final double HEADROOM = 1.2;
+    private static final double CPU_STEP = 0.5;
+    private static final double MEMORY_STEP_GIB = 0.5;
+
+    private static final int P50 = 50;
+    private static final int P95 = 95;
+    private static final int P100 = 100;
+
+    private final Deque<Double> cpuCores = new ArrayDeque<>();
+
+    private final Deque<Double> memoryGib = new ArrayDeque<>();
+
+    public synchronized void addCpu(double cores) {
+        add(cpuCores, cores);
+    }
+
+    public synchronized void addMemory(double gib) {
+        add(memoryGib, gib);
+    }
+
+    public synchronized int getSampleCount() {
+        return Math.min(cpuCores.size(), memoryGib.size());
+    }
+
+    public double getCpuP50() {
+        return percentile(cpuCores, P50);
+    }
+
+    public double getCpuP95() {
+        return percentile(cpuCores, P95);
+    }
+
+    public double getCpuMax() {
+        return percentile(cpuCores, P100);
+    }
+
+    public double getMemoryP50() {
+        return percentile(memoryGib, P50);
+    }
+
+    public double getMemoryP95() {
+        return percentile(memoryGib, P95);
+    }
+
+    public double getMemoryMax() {
+        return percentile(memoryGib, P100);
+    }
+
+    /**
+     * CPU request covering the 95th percentile of the observed usage.
+     *
+     * @return the recommended CPU cores.
+     */
+    public double getRecommendedCpu() {
+        return roundUp(getCpuP95() * HEADROOM, CPU_STEP);
+    }
+
+    /**
+     * Memory request covering the peak of the observed usage, as running out of memory kills the build.
+     *
+     * @return the recommended memory in GiB.
+     */
+    public double getRecommendedMemory() {
+        return roundUp(getMemoryMax() * HEADROOM, MEMORY_STEP_GIB);
+    }
+
+    public String getCpuSummary() {
+        return String.format("p50 %.2f, p95 %.2f, max %.2f cores, recommended %.1f",
+                getCpuP50(), getCpuP95(), getCpuMax(), getRecommendedCpu());
+    }
+
+    public String getMemorySummary() {
+        return String.format("p50 %.2f, p95 %.2f, max %.2f GiB, recommended %.1f",
+                getMemoryP50(), getMemoryP95(), getMemoryMax(), getRecommendedMemory());
+    }
+
+    private static void add(Deque<Double> samples, double value) {
+        samples.addLast(value);
+        if (samples.size() > MAX_SAMPLES) {
+            samples.removeFirst();
+        }
+    }
+
+    private synchronized double percentile(Deque<Double> samples, int percentile) {
+        if (samples.isEmpty()) {
+            return 0;
+        }
+        double[] sorted = samples.stream().mapToDouble(Double::doubleValue).toArray();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / (double) P100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    static double roundUp(double value, double step) {
+        return Math.max(step, Math.ceil(value / step) * step);
+    }
+}
@@ -3,6 +3,9 @@ package com.microsoft.jenkins.containeragents.builders;
 import com.microsoft.jenkins.containeragents.aci.AciContainerTemplate;
 import com.microsoft.jenkins.containeragents.remote.LaunchMethodTypeContent;
 import com.microsoft.jenkins.containeragents.strategy.ContainerIdleRetentionStrategy;
+import com.microsoft.jenkins.containeragents.strategy.ContainerOnceRetentionStrategy;
+import com.microsoft.jenkins.containeragents.strategy.ContainerPredictiveRetentionStrategy;
+import com.microsoft.jenkins.containeragents.strategy.ContainerReuseRetentionStrategy;
 import com.microsoft.jenkins.containeragents.util.Constants;
 
 public class AciContainerTemplateBuilder extends AciContainerTemplateFluent<AciContainerTemplateBuilder> {
@@ -28,6 +31,13 @@ public class AciContainerTemplateBuilder extends AciContainerTemplateFluent<AciC
         this.fluent.withMemory(template.getMemory());
         if (template.getRetentionStrategy() instanceof ContainerIdleRetentionStrategy strategy) {
             this.fluent.withIdleRetentionStrategy(strategy.getIdleMinutes());
+        } else if (template.getRetentionStrategy() instanceof ContainerPredictiveRetentionStrategy strategy) {
+            this.fluent.withPredictiveRetentionStrategy(strategy.getMaxIdleMinutes());
+        } else if (template.getRetentionStrategy() instanceof ContainerReuseRetentionStrategy strategy) {
+            this.fluent.withReuseRetentionStrategy(strategy.getMaxBuilds(), strategy.getMaxLifetimeMinutes(),
+                    strategy.isWipeWorkspace());
+        } else if (template.getRetentionStrategy() instanceof ContainerOnceRetentionStrategy strategy) {
+            this.fluent.withOnceRetentionStrategy(strategy.getGracePeriodSeconds());
         } else {
             this.fluent.withOnceRetentionStrategy();
         }
@@ -39,6 +49,15 @@ public class AciContainerTemplateBuilder extends AciContainerTemplateFluent<AciC
         } else {
             this.fluent.withSSHLaunchMethod(template.getSshCredentialsId(), template.getSshPort());
         }
+        this.fluent.withWeight(template.getWeight());
+        this.fluent.withNumExecutors(template.getNumExecutors());
+        this.fluent.withMaxInstances(template.getMaxInstances());
+        this.fluent.withSidecars(template.getSidecars());
+        this.fluent.withInitContainers(template.getInitContainers(), template.getInitVolumeMountPath());
+        this.fluent.withBootstrapFiles(template.getBootstrapFiles());
+        this.fluent.withJvmOptions(template.getJvmOptions(), template.isAppCds());
+        this.fluent.withJarCacheVolume(template.getJarCacheVolume());
+        this.fluent.withProbes(template.getReadinessProbe(), template.getLivenessProbe());
     }
 
     public AciContainerTemplateBuilder(AciContainerTemplateFluent<?> fluent) {
@@ -60,6 +79,13 @@ public class AciContainerTemplateBuilder extends AciContainerTemplateFluent<AciC
         this.fluent.withMemory(template.getMemory());
         if (template.getRetentionStrategy() instanceof ContainerIdleRetentionStrategy strategy) {
             this.fluent.withIdleRetentionStrategy(strategy.getIdleMinutes());
+        } else if (template.getRetentionStrategy() instanceof ContainerPredictiveRetentionStrategy strategy) {
+            this.fluent.withPredictiveRetentionStrategy(strategy.getMaxIdleMinutes());
+        } else if (template.getRetentionStrategy() instanceof ContainerReuseRetentionStrategy strategy) {
+            this.fluent.withReuseRetentionStrategy(strategy.getMaxBuilds(), strategy.getMaxLifetimeMinutes(),
+                    strategy.isWipeWorkspace());
+        } else if (template.getRetentionStrategy() instanceof ContainerOnceRetentionStrategy strategy) {
+            this.fluent.withOnceRetentionStrategy(strategy.getGracePeriodSeconds());
         } else {
             this.fluent.withOnceRetentionStrategy();
         }
@@ -71,6 +97,15 @@ public class AciContainerTemplateBuilder extends AciContainerTemplateFluent<AciC
         } else {
             this.fluent.withSSHLaunchMethod(template.getSshCredentialsId(), template.getSshPort());
         }
+        this.fluent.withWeight(template.getWeight());
+        this.fluent.withNumExecutors(template.getNumExecutors());
+        this.fluent.withMaxInstances(template.getMaxInstances());
+        this.fluent.withSidecars(template.getSidecars());
+        this.fluent.withInitContainers(template.getInitContainers(), template.getInitVolumeMountPath());
+        this.fluent.withBootstrapFiles(template.getBootstrapFiles());
+        this.fluent.withJvmOptions(template.getJvmOptions(), template.isAppCds());
+        this.fluent.withJarCacheVolume(template.getJarCacheVolume());
+        this.fluent.withProbes(template.getReadinessProbe(), template.getLivenessProbe());
     }
 
     public AciContainerTemplate build() {
@@ -92,6 +127,18 @@ public class AciContainerTemplateBuilder extends AciContainerTemplateFluent<AciC
         template.setLaunchMethodTypeContent(new LaunchMethodTypeContent(fluent.getSshCredentialsId(),
                 fluent.getSshPort()));
         template.setPrivateIpAddress(fluent.getPrivateIpAddress());
+        template.setWeight(fluent.getWeight());
+        template.setNumExecutors(fluent.getNumExecutors());
+        template.setMaxInstances(fluent.getMaxInstances());
+        template.setSidecars(fluent.getSidecars());
+        template.setInitContainers(fluent.getInitContainers());
+        template.setInitVolumeMountPath(fluent.getInitVolumeMountPath());
+        template.setBootstrapFiles(fluent.getBootstrapFiles());
+        template.setJvmOptions(fluent.getJvmOptions());
+        template.setAppCds(fluent.isAppCds());
+        template.setJarCacheVolume(fluent.getJarCacheVolume());
+        template.setReadinessProbe(fluent.getReadinessProbe());
+        template.setLivenessProbe(fluent.getLivenessProbe());
         return template;
     }
 }
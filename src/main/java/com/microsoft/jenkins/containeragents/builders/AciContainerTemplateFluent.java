@@ -1,11 +1,17 @@
 package com.microsoft.jenkins.containeragents.builders;
 
 import com.microsoft.jenkins.containeragents.PodEnvVar;
+import com.microsoft.jenkins.containeragents.aci.AciBootstrapFile;
+import com.microsoft.jenkins.containeragents.aci.AciInitContainer;
 import com.microsoft.jenkins.containeragents.aci.AciPort;
 import com.microsoft.jenkins.containeragents.aci.AciPrivateIpAddress;
+import com.microsoft.jenkins.containeragents.aci.AciProbe;
+import com.microsoft.jenkins.containeragents.aci.AciSidecarContainer;
 import com.microsoft.jenkins.containeragents.aci.volumes.AzureFileVolume;
 import com.microsoft.jenkins.containeragents.strategy.ContainerIdleRetentionStrategy;
 import com.microsoft.jenkins.containeragents.strategy.ContainerOnceRetentionStrategy;
+import com.microsoft.jenkins.containeragents.strategy.ContainerPredictiveRetentionStrategy;
+import com.microsoft.jenkins.containeragents.strategy.ContainerReuseRetentionStrategy;
 import com.microsoft.jenkins.containeragents.util.Constants;
 import hudson.slaves.RetentionStrategy;
 import org.jenkinsci.plugins.docker.commons.credentials.DockerRegistryEndpoint;
@@ -52,6 +58,30 @@ public class AciContainerTemplateFluent<T extends AciContainerTemplateFluent<T>>
 
     private String sshPort;
 
+    private int weight;
+
+    private int numExecutors;
+
+    private int maxInstances;
+
+    private List<AciSidecarContainer> sidecars = new ArrayList<>();
+
+    private List<AciInitContainer> initContainers = new ArrayList<>();
+
+    private String initVolumeMountPath;
+
+    private List<AciBootstrapFile> bootstrapFiles = new ArrayList<>();
+
+    private String jvmOptions;
+
+    private boolean appCds;
+
+    private AzureFileVolume jarCacheVolume;
+
+    private AciProbe readinessProbe;
+
+    private AciProbe livenessProbe;
+
     //CHECKSTYLE:OFF
     AciContainerTemplateFluent() {
         timeout = 10;
@@ -63,6 +93,8 @@ public class AciContainerTemplateFluent<T extends AciContainerTemplateFluent<T>>
         cpu = "1";
         memory = "1.5";
         launchMethodType = Constants.LAUNCH_METHOD_JNLP;
+        weight = 1;
+        numExecutors = 1;
     }
 
     public T withPrivateIpAddress(AciPrivateIpAddress privateIpAddress) {
@@ -136,11 +168,30 @@ public class AciContainerTemplateFluent<T extends AciContainerTemplateFluent<T>>
         return (T) this;
     }
 
+    public T withOnceRetentionStrategy(int gracePeriodSeconds) {
+        ContainerOnceRetentionStrategy strategy = new ContainerOnceRetentionStrategy();
+        strategy.setGracePeriodSeconds(gracePeriodSeconds);
+        this.retentionStrategy = strategy;
+        return (T) this;
+    }
+
     public T withIdleRetentionStrategy(int idle) {
         this.retentionStrategy = new ContainerIdleRetentionStrategy(idle);
         return (T) this;
     }
 
+    public T withPredictiveRetentionStrategy(int maxIdleMinutes) {
+        this.retentionStrategy = new ContainerPredictiveRetentionStrategy(maxIdleMinutes);
+        return (T) this;
+    }
+
+    public T withReuseRetentionStrategy(int maxBuilds, int maxLifetimeMinutes, boolean wipeWorkspace) {
+        ContainerReuseRetentionStrategy strategy = new ContainerReuseRetentionStrategy(maxBuilds, maxLifetimeMinutes);
+        strategy.setWipeWorkspace(wipeWorkspace);
+        this.retentionStrategy = strategy;
+        return (T) this;
+    }
+
     public T withEnvVars(List<PodEnvVar> envVars) {
         this.envVars.clear();
         this.envVars.addAll(envVars);
@@ -200,6 +251,67 @@ public class AciContainerTemplateFluent<T extends AciContainerTemplateFluent<T>>
         this.sshPort = sshPort;
         return (T) this;
     }
+
+    public T withWeight(int weight) {
+        this.weight = weight;
+        return (T) this;
+    }
+
+    public T withNumExecutors(int numExecutors) {
+        this.numExecutors = numExecutors;
+        return (T) this;
+    }
+
+    public T withMaxInstances(int maxInstances) {
+        this.maxInstances = maxInstances;
+        return (T) this;
+    }
+
+    public T withSidecars(List<AciSidecarContainer> sidecars) {
+        this.sidecars.clear();
+        this.sidecars.addAll(sidecars);
+        return (T) this;
+    }
+
+    public T addToSidecars(AciSidecarContainer... sidecars) {
+        this.sidecars.addAll(Arrays.asList(sidecars));
+        return (T) this;
+    }
+
+    public T withInitContainers(List<AciInitContainer> initContainers, String initVolumeMountPath) {
+        this.initContainers.clear();
+        this.initContainers.addAll(initContainers);
+        this.initVolumeMountPath = initVolumeMountPath;
+        return (T) this;
+    }
+
+    public T withBootstrapFiles(List<AciBootstrapFile> bootstrapFiles) {
+        this.bootstrapFiles.clear();
+        this.bootstrapFiles.addAll(bootstrapFiles);
+        return (T) this;
+    }
+
+    public T addToBootstrapFiles(AciBootstrapFile... bootstrapFiles) {
+        this.bootstrapFiles.addAll(Arrays.asList(bootstrapFiles));
+        return (T) this;
+    }
+
+    public T withJvmOptions(String jvmOptions, boolean appCds) {
+        this.jvmOptions = jvmOptions;
+        this.appCds = appCds;
+        return (T) this;
+    }
+
+    public T withJarCacheVolume(AzureFileVolume jarCacheVolume) {
+        this.jarCacheVolume = jarCacheVolume;
+        return (T) this;
+    }
+
+    public T withProbes(AciProbe readinessProbe, AciProbe livenessProbe) {
+        this.readinessProbe = readinessProbe;
+        this.livenessProbe = livenessProbe;
+        return (T) this;
+    }
     //CHECKSTYLE:ON
 
     public String getName() {
@@ -275,4 +387,52 @@ public class AciContainerTemplateFluent<T extends AciContainerTemplateFluent<T>>
     public AciPrivateIpAddress getPrivateIpAddress() {
         return privateIpAddress;
     }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public int getNumExecutors() {
+        return numExecutors;
+    }
+
+    public int getMaxInstances() {
+        return maxInstances;
+    }
+
+    public List<AciSidecarContainer> getSidecars() {
+        return sidecars;
+    }
+
+    public List<AciInitContainer> getInitContainers() {
+        return initContainers;
+    }
+
+    public String getInitVolumeMountPath() {
+        return initVolumeMountPath;
+    }
+
+    public List<AciBootstrapFile> getBootstrapFiles() {
+        return bootstrapFiles;
+    }
+
+    public String getJvmOptions() {
+        return jvmOptions;
+    }
+
+    public boolean isAppCds() {
+        return appCds;
+    }
+
+    public AzureFileVolume getJarCacheVolume() {
+        return jarCacheVolume;
+    }
+
+    public AciProbe getReadinessProbe() {
+        return readinessProbe;
+    }
+
+    public AciProbe getLivenessProbe() {
+        return livenessProbe;
+    }
 }
@@ -11,9 +11,12 @@ import com.microsoft.jenkins.containeragents.PodEnvVar;
 import com.microsoft.jenkins.containeragents.aci.AciAgent;
 import com.microsoft.jenkins.containeragents.aci.AciCloud;
 import com.microsoft.jenkins.containeragents.aci.AciContainerTemplate;
+import com.microsoft.jenkins.containeragents.aci.AciInitContainer;
 import com.microsoft.jenkins.containeragents.aci.AciPort;
 import com.microsoft.jenkins.containeragents.aci.AciPrivateIpAddress;
+import com.microsoft.jenkins.containeragents.aci.AciProbe;
 import com.microsoft.jenkins.containeragents.aci.AciService;
+import com.microsoft.jenkins.containeragents.aci.AciSidecarContainer;
 import com.microsoft.jenkins.containeragents.aci.dns.AciDnsServer;
 import com.microsoft.jenkins.containeragents.aci.volumes.AzureFileVolume;
 import com.microsoft.jenkins.containeragents.util.AzureContainerUtils;
@@ -41,6 +44,8 @@ public final class AciDeploymentTemplateBuilder {
     private static final String DEPLOY_TEMPLATE_FILENAME
             = "/com/microsoft/jenkins/containeragents/aci/deployTemplate.json";
 
+    private static final String INIT_VOLUME_NAME = "init-volume";
+
     private final JenkinsFacade jenkins;
 
     public AciDeploymentTemplateBuilder() {
@@ -76,6 +81,7 @@ public final class AciDeploymentTemplateBuilder {
             variables.put("cpu", template.getCpu());
             variables.put("memory", template.getMemory());
             variables.put("jenkinsInstance", jenkins.getLegacyInstanceId());
+            variables.put("jenkinsCloud", cloud.getName());
 
             addLogAnalytics(tmp, parameters, mapper, cloud);
             addCommandNode(tmp, template.getCommand(), agent);
@@ -90,6 +96,8 @@ public final class AciDeploymentTemplateBuilder {
             }
 
             addEnvNode(tmp, mapper, template.getEnvVars());
+            addProbeNode(tmp, mapper, "readinessProbe", template.getReadinessProbe());
+            addProbeNode(tmp, mapper, "livenessProbe", template.getLivenessProbe());
 
             for (DockerRegistryEndpoint registryEndpoint : template.getPrivateRegistryCredentials()) {
                 addImageRegistryCredentialNode(tmp, mapper, registryEndpoint);
@@ -103,6 +111,31 @@ public final class AciDeploymentTemplateBuilder {
                 }
             }
 
+            AzureFileVolume jarCacheVolume = template.getJarCacheVolume();
+            if (jarCacheVolume != null
+                    && StringUtils.isNotBlank(jarCacheVolume.getMountPath())
+                    && StringUtils.isNotBlank(jarCacheVolume.getShareName())
+                    && StringUtils.isNotBlank(jarCacheVolume.getCredentialsId())) {
+                addAzureFileVolumeNode(tmp, mapper, jarCacheVolume);
+            }
+
+            if (StringUtils.isNotBlank(template.getInitVolumeMountPath())) {
+                addInitVolumeNode(tmp, mapper, template.getInitVolumeMountPath());
+            }
+
+            // Added after the volumes so the other containers get the same volume mounts as the agent container
+            for (AciInitContainer initContainer : template.getInitContainers()) {
+                if (StringUtils.isNotBlank(initContainer.getName())
+                        && StringUtils.isNotBlank(initContainer.getImage())) {
+                    addInitContainerNode(tmp, mapper, initContainer);
+                }
+            }
+            for (AciSidecarContainer sidecar : template.getSidecars()) {
+                if (StringUtils.isNotBlank(sidecar.getName()) && StringUtils.isNotBlank(sidecar.getImage())) {
+                    addSidecarNode(tmp, mapper, sidecar);
+                }
+            }
+
             addSubnetIds(tmp, mapper, privateIpAddress);
             addDnsConfig(tmp, mapper, privateIpAddress);
 
@@ -153,8 +186,7 @@ public final class AciDeploymentTemplateBuilder {
 
     private void addPortNode(JsonNode tmp, ObjectMapper mapper, String port) {
         JsonNode propertiesNode = tmp.get("resources").get(0).get("properties");
-        ArrayNode containerPortsNodes = (ArrayNode) propertiesNode.get("containers")
-                .get(0).get("properties").get("ports");
+        ArrayNode containerPortsNodes = (ArrayNode) getAgentContainerNode(tmp).get("ports");
         ArrayNode ipPortsNodes = (ArrayNode) propertiesNode.get("ipAddress").get("ports");
 
         ObjectNode newContainerPortNode = mapper.createObjectNode();
@@ -168,9 +200,7 @@ public final class AciDeploymentTemplateBuilder {
     }
 
     private void addCommandNode(JsonNode tmp, String[] commands) {
-        ArrayNode commandNode = (ArrayNode) tmp.get("resources").get(0)
-                .get("properties").get("containers").get(0)
-                .get("properties").get("command");
+        ArrayNode commandNode = (ArrayNode) getAgentContainerNode(tmp).get("command");
 
         for (String command : commands) {
             commandNode.add(command);
@@ -185,6 +215,28 @@ public final class AciDeploymentTemplateBuilder {
         addCommandNode(tmp, StringUtils.split(replaceCommand, ' '));
     }
 
+    private void addProbeNode(JsonNode tmp, ObjectMapper mapper, String name, AciProbe probe) {
+        if (probe == null) {
+            return;
+        }
+        ObjectNode probeNode = mapper.createObjectNode();
+        if (probe.isHttp()) {
+            ObjectNode httpGetNode = probeNode.putObject("httpGet");
+            httpGetNode.put("path", probe.getHttpPath());
+            httpGetNode.put("port", probe.getHttpPortNumber());
+            httpGetNode.put("scheme", "http");
+        } else {
+            ArrayNode commandNode = probeNode.putObject("exec").putArray("command");
+            for (String command : StringUtils.split(probe.getCommand(), ' ')) {
+                commandNode.add(command);
+            }
+        }
+        probeNode.put("initialDelaySeconds", probe.getInitialDelaySeconds());
+        probeNode.put("periodSeconds", probe.getPeriodSeconds());
+        probeNode.put("failureThreshold", probe.getFailureThreshold());
+        getAgentContainerNode(tmp).set(name, probeNode);
+    }
+
     private void addLogAnalytics(JsonNode tmp, ObjectNode parameters,
                                         ObjectMapper mapper, AciCloud aciCloud) {
 
@@ -259,9 +311,10 @@ public final class AciDeploymentTemplateBuilder {
     }
 
     private void addEnvNode(JsonNode tmp, ObjectMapper mapper, List<PodEnvVar> envVars) {
-        ArrayNode envVarNode = (ArrayNode) tmp.get("resources").get(0)
-                .get("properties").get("containers").get(0).get("properties").get("environmentVariables");
+        addEnvNode((ArrayNode) getAgentContainerNode(tmp).get("environmentVariables"), mapper, envVars);
+    }
 
+    private void addEnvNode(ArrayNode envVarNode, ObjectMapper mapper, List<PodEnvVar> envVars) {
         for (PodEnvVar envVar : envVars) {
             if (StringUtils.isBlank(envVar.getKey())) {
                 continue;
@@ -274,8 +327,7 @@ public final class AciDeploymentTemplateBuilder {
     }
 
     private void addAzureFileVolumeNode(JsonNode tmp, ObjectMapper mapper, AzureFileVolume volume) {
-        ArrayNode volumeMountsNode = (ArrayNode) tmp.get("resources").get(0)
-                .get("properties").get("containers").get(0).get("properties").get("volumeMounts");
+        ArrayNode volumeMountsNode = (ArrayNode) getAgentContainerNode(tmp).get("volumeMounts");
         ArrayNode volumesNode = (ArrayNode) tmp.get("resources").get(0).get("properties").get("volumes");
 
         ObjectNode newVolumeMountsNode = mapper.createObjectNode();
@@ -297,6 +349,80 @@ public final class AciDeploymentTemplateBuilder {
         volumesNode.add(newVolumesNode);
     }
 
+    private void addInitVolumeNode(JsonNode tmp, ObjectMapper mapper, String mountPath) {
+        ObjectNode volumeMountNode = mapper.createObjectNode();
+        volumeMountNode.put("name", INIT_VOLUME_NAME);
+        volumeMountNode.put("mountPath", mountPath);
+        ((ArrayNode) getAgentContainerNode(tmp).get("volumeMounts")).add(volumeMountNode);
+
+        ObjectNode volumeNode = mapper.createObjectNode();
+        volumeNode.put("name", INIT_VOLUME_NAME);
+        volumeNode.putObject("emptyDir");
+        ((ArrayNode) tmp.get("resources").get(0).get("properties").get("volumes")).add(volumeNode);
+    }
+
+    private void addInitContainerNode(JsonNode tmp, ObjectMapper mapper, AciInitContainer initContainer) {
+        ObjectNode propertiesNode = mapper.createObjectNode();
+        propertiesNode.put("image", initContainer.getImage());
+
+        ArrayNode commandNode = propertiesNode.putArray("command");
+        for (String command : StringUtils.split(initContainer.getCommand(), ' ')) {
+            commandNode.add(command);
+        }
+
+        addEnvNode(propertiesNode.putArray("environmentVariables"), mapper, initContainer.getEnvVars());
+        propertiesNode.set("volumeMounts", getAgentContainerNode(tmp).get("volumeMounts").deepCopy());
+
+        ObjectNode containerNode = mapper.createObjectNode();
+        containerNode.put("name", initContainer.getName());
+        containerNode.set("properties", propertiesNode);
+
+        ObjectNode groupPropertiesNode = (ObjectNode) tmp.get("resources").get(0).get("properties");
+        ArrayNode initContainersNode = groupPropertiesNode.has("initContainers")
+                ? (ArrayNode) groupPropertiesNode.get("initContainers")
+                : groupPropertiesNode.putArray("initContainers");
+        initContainersNode.add(containerNode);
+    }
+
+    private void addSidecarNode(JsonNode tmp, ObjectMapper mapper, AciSidecarContainer sidecar) {
+        ObjectNode propertiesNode = mapper.createObjectNode();
+        propertiesNode.put("image", sidecar.getImage());
+
+        ArrayNode commandNode = propertiesNode.putArray("command");
+        for (String command : StringUtils.split(sidecar.getCommand(), ' ')) {
+            commandNode.add(command);
+        }
+
+        ObjectNode requestsNode = mapper.createObjectNode();
+        requestsNode.put("cpu", sidecar.getCpu());
+        requestsNode.put("memoryInGb", sidecar.getMemory());
+        propertiesNode.putObject("resources").set("requests", requestsNode);
+
+        ArrayNode portsNode = propertiesNode.putArray("ports");
+        for (AciPort port : sidecar.getPorts()) {
+            if (StringUtils.isNotBlank(port.getPort())) {
+                portsNode.addObject().put("port", port.getPort());
+            }
+        }
+
+        addEnvNode(propertiesNode.putArray("environmentVariables"), mapper, sidecar.getEnvVars());
+        propertiesNode.set("volumeMounts", getAgentContainerNode(tmp).get("volumeMounts").deepCopy());
+
+        ObjectNode containerNode = mapper.createObjectNode();
+        containerNode.put("name", sidecar.getName());
+        containerNode.set("properties", propertiesNode);
+
+        ((ArrayNode) tmp.get("resources").get(0).get("properties").get("containers")).add(containerNode);
+    }
+
+    /**
+     * Properties of the container running the agent, the first container of the group.
+     */
+    private static ObjectNode getAgentContainerNode(JsonNode tmp) {
+        return (ObjectNode) tmp.get("resources").get(0)
+                .get("properties").get("containers").get(0).get("properties");
+    }
+
     private String commandReplace(String command, AciAgent agent) {
         String serverUrl = jenkins.getAbsoluteUrl();
         String nodeName = agent.getNodeName();
@@ -308,12 +434,17 @@ public final class AciDeploymentTemplateBuilder {
 
         String secret = computer.getJnlpMac();
 
-        Map<String, String> argumentsToExpand = buildCommand(command, serverUrl, nodeName, secret);
+        Map<String, String> argumentsToExpand = buildCommand(command, serverUrl, nodeName, secret,
+                agent.getJarCachePath());
         EnvVars arguments = new EnvVars(argumentsToExpand);
         return arguments.expand(command);
     }
 
-    private Map<String, String> buildCommand(String command, String serverUrl, String nodeName, String secret) {
+    private Map<String, String> buildCommand(String command,
+                                             String serverUrl,
+                                             String nodeName,
+                                             String secret,
+                                             String jarCachePath) {
         Map<String, String> arguments = new HashMap<>();
 
         if (command.contains("${rootUrl}")) {
@@ -328,6 +459,10 @@ public final class AciDeploymentTemplateBuilder {
             arguments.put("secret", secret);
         }
 
+        if (command.contains("${jarCache}") && StringUtils.isNotBlank(jarCachePath)) {
+            arguments.put("jarCache", jarCachePath);
+        }
+
         if (command.contains("${instanceIdentity}")) {
             String instanceIdentity = Base64.getEncoder()
                     .encodeToString(InstanceIdentity.get().getPublic().getEncoded());
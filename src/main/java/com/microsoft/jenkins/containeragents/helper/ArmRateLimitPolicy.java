@@ -0,0 +1,73 @@
+package com.microsoft.jenkins.containeragents.helper;
+
+import com.azure.core.http.HttpHeaderName;
+import com.azure.core.http.HttpMethod;
+import com.azure.core.http.HttpPipelineCallContext;
+import com.azure.core.http.HttpPipelineNextPolicy;
+import com.azure.core.http.HttpResponse;
+import com.azure.core.http.policy.HttpPipelinePolicy;
+import com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Budget;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Charges every request to the {@link ArmRequestScheduler} of the subscription, and feeds the ARM rate limit
+ * response headers back into it.
+ */
+public class ArmRateLimitPolicy implements HttpPipelinePolicy {
+    private static final HttpHeaderName REMAINING_READS =
+            HttpHeaderName.fromString("x-ms-ratelimit-remaining-subscription-reads");
+    private static final HttpHeaderName REMAINING_WRITES =
+            HttpHeaderName.fromString("x-ms-ratelimit-remaining-subscription-writes");
+    private static final HttpHeaderName REMAINING_DELETES =
+            HttpHeaderName.fromString("x-ms-ratelimit-remaining-subscription-deletes");
+    private static final HttpHeaderName RETRY_AFTER = HttpHeaderName.fromString("Retry-After");
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final long DEFAULT_RETRY_AFTER_SECONDS = 10;
+
+    private final ArmRequestScheduler scheduler;
+
+    public ArmRateLimitPolicy(String subscriptionId) {
+        this.scheduler = ArmRequestScheduler.forSubscription(subscriptionId);
+    }
+
+    @Override
+    public Mono<HttpResponse> process(HttpPipelineCallContext context, HttpPipelineNextPolicy next) {
+        final Budget budget = getBudget(context.getHttpRequest().getHttpMethod());
+        scheduler.charge(budget);
+        return next.process().doOnNext(response -> observe(budget, response));
+    }
+
+    static Budget getBudget(HttpMethod method) {
+        if (method == HttpMethod.GET || method == HttpMethod.HEAD) {
+            return Budget.READ;
+        }
+        return method == HttpMethod.DELETE ? Budget.DELETE : Budget.WRITE;
+    }
+
+    private void observe(Budget budget, HttpResponse response) {
+        String reads = response.getHeaders().getValue(REMAINING_READS);
+        if (NumberUtils.isDigits(reads)) {
+            scheduler.updateRemaining(Budget.READ, Long.parseLong(reads));
+        }
+        String writes = response.getHeaders().getValue(REMAINING_WRITES);
+        if (NumberUtils.isDigits(writes)) {
+            scheduler.updateRemaining(Budget.WRITE, Long.parseLong(writes));
+        }
+        String deletes = response.getHeaders().getValue(REMAINING_DELETES);
+        if (NumberUtils.isDigits(deletes)) {
+            scheduler.updateRemaining(Budget.DELETE, Long.parseLong(deletes));
+        }
+        if (response.getStatusCode() == HTTP_TOO_MANY_REQUESTS) {
+            String retryAfter = response.getHeaders().getValue(RETRY_AFTER);
+            long seconds = StringUtils.isNotBlank(retryAfter) && NumberUtils.isDigits(retryAfter.trim())
+                    ? Long.parseLong(retryAfter.trim())
+                    : DEFAULT_RETRY_AFTER_SECONDS;
+            scheduler.throttled(budget, TimeUnit.SECONDS.toMillis(seconds));
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.microsoft.jenkins.containeragents.helper;
+
+import com.azure.core.exception.HttpResponseException;
+import com.azure.resourcemanager.AzureResourceManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Subscription scoped token bucket scheduler that all ARM requests of the plugin go through.
+ * <p>
+ * ARM throttles reads, writes and deletes per subscription and reports the remaining budget in the
+ * {@code x-ms-ratelimit-remaining-subscription-reads/writes/deletes} response headers, which
+ * {@link ArmRateLimitPolicy} feeds back into the buckets here. A call waits for a token of its budget, while
+ * {@link ArmRateLimitPolicy} charges every HTTP request the call makes, e.g. each page of a list or each poll of a
+ * long running operation, so the buckets follow the actual request volume. Cleanup requests never dip into the last
+ * part of a bucket and always give way to waiting provisioning requests, so a large cleanup sweep cannot starve
+ * agent provisioning.
+ */
+public final class ArmRequestScheduler {
+    private static final Logger LOGGER = Logger.getLogger(ArmRequestScheduler.class.getName());
+
+    public enum Budget {
+        READ,
+        WRITE,
+        DELETE
+    }
+
+    public enum Priority {
+        PROVISION,
+        CLEANUP
+    }
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    // ARM subscription token bucket sizes and refill rates (tokens per second)
+    private static final int READ_CAPACITY = 250;
+    private static final int READ_REFILL_PER_SECOND = 25;
+    private static final int WRITE_CAPACITY = 200;
+    private static final int WRITE_REFILL_PER_SECOND = 10;
+    private static final int DELETE_CAPACITY = 200;
+    private static final int DELETE_REFILL_PER_SECOND = 10;
+
+    // Part of every bucket cleanup requests are not allowed to use
+    private static final double CLEANUP_RESERVE = 0.2;
+
+    private static final long MAX_WAIT_MILLIS = 1000;
+
+    private static final Map<String, ArmRequestScheduler> SCHEDULERS = new ConcurrentHashMap<>();
+
+    private final Bucket reads;
+
+    private final Bucket writes;
+
+    private final Bucket deletes;
+
+    ArmRequestScheduler(LongSupplier clock) {
+        this.reads = new Bucket(READ_CAPACITY, READ_REFILL_PER_SECOND, clock);
+        this.writes = new Bucket(WRITE_CAPACITY, WRITE_REFILL_PER_SECOND, clock);
+        this.deletes = new Bucket(DELETE_CAPACITY, DELETE_REFILL_PER_SECOND, clock);
+    }
+
+    public static ArmRequestScheduler forSubscription(String subscriptionId) {
+        return SCHEDULERS.computeIfAbsent(subscriptionId, id -> new ArmRequestScheduler(System::currentTimeMillis));
+    }
+
+    public static ArmRequestScheduler forClient(AzureResourceManager azureClient) {
+        return forSubscription(azureClient.subscriptionId());
+    }
+
+    /**
+     * Wait for a token of the given budget and issue the request.
+     * <p>
+     * The token only admits the call. Its HTTP requests are charged by {@link ArmRateLimitPolicy}, so the token is
+     * given back once the call returned.
+     *
+     * @param budget   the ARM budget the request is charged to.
+     * @param priority the priority of the caller.
+     * @param request  the ARM request.
+     * @param <T>      the result type of the request.
+     * @return the result of the request.
+     * @throws InterruptedException if interrupted while waiting for a token.
+     */
+    public <T> T call(Budget budget, Priority priority, Supplier<T> request) throws InterruptedException {
+        final Bucket bucket = getBucket(budget);
+        bucket.acquire(priority);
+        try {
+            return request.get();
+        } finally {
+            bucket.release();
+        }
+    }
+
+    public void run(Budget budget, Priority priority, Runnable request) throws InterruptedException {
+        call(budget, priority, () -> {
+            request.run();
+            return null;
+        });
+    }
+
+    /**
+     * Charge an HTTP request to a budget without waiting, so the calls issued after it wait for the refill.
+     *
+     * @param budget the budget the request is charged to.
+     */
+    public void charge(Budget budget) {
+        getBucket(budget).charge();
+    }
+
+    /**
+     * Synchronize a bucket with the remaining budget reported by ARM.
+     *
+     * @param budget    the budget the response header refers to.
+     * @param remaining the remaining number of requests reported by ARM.
+     */
+    public void updateRemaining(Budget budget, long remaining) {
+        getBucket(budget).updateRemaining(remaining);
+    }
+
+    /**
+     * Stop issuing requests of a budget after ARM answered with 429.
+     *
+     * @param budget          the throttled budget.
+     * @param retryAfterMillis the delay requested by ARM.
+     */
+    public void throttled(Budget budget, long retryAfterMillis) {
+        LOGGER.log(Level.WARNING, "ARM {0} requests throttled, pausing for {1} ms",
+                new Object[]{budget, retryAfterMillis});
+        getBucket(budget).pause(retryAfterMillis);
+    }
+
+    public static boolean isThrottled(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpResponseException responseException
+                    && responseException.getResponse() != null
+                    && responseException.getResponse().getStatusCode() == HTTP_TOO_MANY_REQUESTS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    Bucket getBucket(Budget budget) {
+        switch (budget) {
+            case READ:
+                return reads;
+            case DELETE:
+                return deletes;
+            default:
+                return writes;
+        }
+    }
+
+    static final class Bucket {
+        private final long capacity;
+        private final double refillPerMilli;
+        private final LongSupplier clock;
+
+        private double tokens;
+        private long lastRefill;
+        private long pausedUntil;
+        private int waitingProvisioners;
+
+        Bucket(long capacity, long refillPerSecond, LongSupplier clock) {
+            this.capacity = capacity;
+            this.refillPerMilli = (double) refillPerSecond / TimeUnit.SECONDS.toMillis(1);
+            this.clock = clock;
+            this.tokens = capacity;
+            this.lastRefill = clock.getAsLong();
+        }
+
+        synchronized void acquire(Priority priority) throws InterruptedException {
+            if (priority == Priority.PROVISION) {
+                waitingProvisioners++;
+            }
+            try {
+                while (!tryAcquire(priority)) {
+                    wait(Math.max(1, Math.min(MAX_WAIT_MILLIS, millisUntilAvailable(priority))));
+                }
+            } finally {
+                if (priority == Priority.PROVISION) {
+                    waitingProvisioners--;
+                    notifyAll();
+                }
+            }
+        }
+
+        synchronized boolean tryAcquire(Priority priority) {
+            refill();
+            if (clock.getAsLong() < pausedUntil) {
+                return false;
+            }
+            if (priority == Priority.CLEANUP && waitingProvisioners > 0) {
+                return false;
+            }
+            if (tokens - 1 < floor(priority)) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+
+        synchronized void release() {
+            refill();
+            tokens = Math.min(capacity, tokens + 1);
+            notifyAll();
+        }
+
+        synchronized void charge() {
+            refill();
+            // Requests beyond the budget are ARM's to reject, the debt only delays the following calls
+            tokens = Math.max(-capacity, tokens - 1);
+        }
+
+        synchronized void updateRemaining(long remaining) {
+            refill();
+            tokens = Math.min(capacity, Math.max(0, remaining));
+            notifyAll();
+        }
+
+        synchronized void pause(long millis) {
+            pausedUntil = Math.max(pausedUntil, clock.getAsLong() + millis);
+            tokens = 0;
+        }
+
+        synchronized double getTokens() {
+            refill();
+            return tokens;
+        }
+
+        private double floor(Priority priority) {
+            return priority == Priority.CLEANUP ? capacity * CLEANUP_RESERVE : 0;
+        }
+
+        private long millisUntilAvailable(Priority priority) {
+            long now = clock.getAsLong();
+            if (now < pausedUntil) {
+                return pausedUntil - now;
+            }
+            double missing = floor(priority) + 1 - tokens;
+            return missing <= 0 ? 1 : (long) Math.ceil(missing / refillPerMilli);
+        }
+
+        private void refill() {
+            long now = clock.getAsLong();
+            if (now > lastRefill) {
+                tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerMilli);
+                lastRefill = now;
+            }
+        }
+    }
+}
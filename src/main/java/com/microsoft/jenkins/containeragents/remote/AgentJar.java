@@ -0,0 +1,187 @@
+package com.microsoft.jenkins.containeragents.remote;
+
+import com.jcraft.jsch.JSchException;
+import hudson.model.Slave;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The agent.jar of this Jenkins, transferred to SSH agents under a name derived from its content.
+ * <p>
+ * The SHA-256 digest of the jar is computed once per Jenkins version. Before uploading, the digest of the remote copy
+ * is checked so container groups which already have the jar, e.g. from a shared volume, skip the transfer. The
+ * upload is streamed from the jar file instead of being read into memory.
+ */
+public final class AgentJar {
+    private static final Logger LOGGER = Logger.getLogger(AgentJar.class.getName());
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int NAME_DIGEST_LENGTH = 16;
+
+    // AutoCreateSharedArchive needs JDK 19, older JDKs would run without any CDS archive given a missing one
+    static final int MIN_APP_CDS_JAVA_VERSION = 19;
+    private static final String APP_CDS_OPTIONS = "-XX:+AutoCreateSharedArchive -XX:SharedArchiveFile=";
+
+    private static final Pattern JAVA_VERSION = Pattern.compile("version \"(\\d+)(?:\\.(\\d+))?");
+
+    private static String digestVersion;
+
+    private static String digest;
+
+    private AgentJar() {
+    }
+
+    /**
+     * Makes sure the agent.jar of this Jenkins is present on the remote host.
+     *
+     * @param sshClient the connected SSH client.
+     * @return the path of the jar on the remote host, relative to the user home.
+     * @throws IOException   if the local jar cannot be read.
+     * @throws JSchException if the upload fails.
+     */
+    public static String ensureOnRemote(SSHClient sshClient) throws IOException, JSchException {
+        final String sha256 = getDigest();
+        final String remotePath = getRemotePath(sha256);
+        if (sha256.equals(getRemoteDigest(sshClient, remotePath))) {
+            LOGGER.log(Level.INFO, "AgentJar: {0} already present on {1}",
+                    new Object[]{remotePath, sshClient.getHost()});
+            return remotePath;
+        }
+        try (InputStream in = getUrl().openStream()) {
+            sshClient.copyTo(in, remotePath);
+        }
+        LOGGER.log(Level.INFO, "AgentJar: copied {0} to {1}", new Object[]{remotePath, sshClient.getHost()});
+        return remotePath;
+    }
+
+    /**
+     * SHA-256 digest of the agent.jar, computed once per Jenkins version.
+     *
+     * @return the lowercase hex encoded digest.
+     * @throws IOException if the jar cannot be read.
+     */
+    public static synchronized String getDigest() throws IOException {
+        final String version = Jenkins.VERSION;
+        if (digest == null || !StringUtils.equals(version, digestVersion)) {
+            try (InputStream in = getUrl().openStream()) {
+                digest = digest(in);
+            }
+            digestVersion = version;
+        }
+        return digest;
+    }
+
+    /**
+     * The command starting the agent from the jar on the remote host.
+     * <p>
+     * With AppCDS, the classes loaded by remoting are kept in a shared archive next to the jar. The JVM writes the
+     * archive when the agent exits and maps it on later launches. The archive records the JDK build, the JVM
+     * recreates it when the JDK changes. Only pass {@code appCds} if {@link #isAppCdsSupported(SSHClient)}.
+     *
+     * @param remotePath the path of the jar as returned by {@link #ensureOnRemote(SSHClient)}.
+     * @param jvmOptions additional JVM options, may be empty.
+     * @param appCds     whether to use an AppCDS archive.
+     * @param jarCache   the remoting jar cache directory, or null for the default.
+     * @return the command line.
+     */
+    public static String getLaunchCommand(String remotePath, String jvmOptions, boolean appCds, String jarCache) {
+        StringBuilder command = new StringBuilder("java");
+        if (appCds) {
+            command.append(' ').append(APP_CDS_OPTIONS)
+                    .append(StringUtils.removeEnd(remotePath, ".jar")).append(".jsa");
+        }
+        if (StringUtils.isNotBlank(jvmOptions)) {
+            command.append(' ').append(jvmOptions.trim());
+        }
+        command.append(" -jar ").append(remotePath);
+        if (StringUtils.isNotBlank(jarCache)) {
+            command.append(" -jarCache ").append(BootstrapUploader.quote(jarCache.trim()));
+        }
+        return command.toString();
+    }
+
+    /**
+     * Whether the JDK on the remote host creates the AppCDS archive by itself.
+     *
+     * @param sshClient the connected SSH client.
+     * @return whether {@code java} on the remote host is version {@value #MIN_APP_CDS_JAVA_VERSION} or later.
+     */
+    public static boolean isAppCdsSupported(SSHClient sshClient) {
+        try {
+            return parseJavaVersion(sshClient.execRemote("java -version 2>&1", false, true))
+                    >= MIN_APP_CDS_JAVA_VERSION;
+        } catch (SSHClient.ExitStatusException e) {
+            return false;
+        } catch (JSchException | IOException e) {
+            LOGGER.log(Level.FINE, "AgentJar: failed to check the remote Java version", e);
+            return false;
+        }
+    }
+
+    /**
+     * @param output the output of {@code java -version}.
+     * @return the feature version, e.g. 8 for {@code 1.8.0_402} and 21 for {@code 21.0.2}, or 0 if unknown.
+     */
+    static int parseJavaVersion(String output) {
+        Matcher matcher = JAVA_VERSION.matcher(StringUtils.defaultString(output));
+        if (!matcher.find()) {
+            return 0;
+        }
+        int version = Integer.parseInt(matcher.group(1));
+        if (version == 1 && matcher.group(2) != null) {
+            version = Integer.parseInt(matcher.group(2));
+        }
+        return version;
+    }
+
+    static String getRemotePath(String sha256) {
+        return "agent-" + sha256.substring(0, NAME_DIGEST_LENGTH) + ".jar";
+    }
+
+    private static String getRemoteDigest(SSHClient sshClient, String remotePath) {
+        try {
+            return parseSha256sum(sshClient.execRemote("sha256sum " + remotePath, false, true));
+        } catch (SSHClient.ExitStatusException e) {
+            // Missing file or no sha256sum on the remote host
+            return null;
+        } catch (JSchException | IOException e) {
+            LOGGER.log(Level.FINE, "AgentJar: failed to check the remote agent.jar", e);
+            return null;
+        }
+    }
+
+    static String parseSha256sum(String output) {
+        String sum = StringUtils.substringBefore(StringUtils.trimToEmpty(output), " ");
+        return StringUtils.isBlank(sum) ? null : sum.toLowerCase();
+    }
+
+    static String digest(InputStream in) throws IOException {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int len;
+            while ((len = in.read(buffer)) >= 0) {
+                messageDigest.update(buffer, 0, len);
+            }
+            return HexFormat.of().formatHex(messageDigest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    private static URL getUrl() throws IOException {
+        Slave.JnlpJar jar = Jenkins.get().getJnlpJars("agent.jar");
+        return jar.getURL();
+    }
+}
@@ -0,0 +1,17 @@
+package com.microsoft.jenkins.containeragents.remote;
+
+/**
+ * A file on the controller which is put on an SSH agent before the agent starts.
+ */
+public interface BootstrapFile {
+
+    /**
+     * @return the absolute path of the file on the controller.
+     */
+    String getSource();
+
+    /**
+     * @return the target path on the agent, either absolute or relative to the user home.
+     */
+    String getRemotePath();
+}
@@ -0,0 +1,255 @@
+package com.microsoft.jenkins.containeragents.remote;
+
+import com.jcraft.jsch.JSchException;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Uploads the bootstrap files of a template to an SSH agent.
+ * <p>
+ * The remote SHA-256 digests of all files are read with one command and files which are already up to date are
+ * skipped. The others are uploaded concurrently, each on its own channel of the session. Files which don't look
+ * compressed are gzipped on the fly and unpacked by the remote {@code gzip}, everything else goes through SFTP with
+ * deeply pipelined writes.
+ */
+public final class BootstrapUploader {
+    private static final Logger LOGGER = Logger.getLogger(BootstrapUploader.class.getName());
+
+    static final int MAX_PARALLEL_UPLOADS = 4;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String GZIP_MARKER = "bootstrap:gzip";
+
+    // Compressing these again only costs CPU
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "7z", "bz2", "gz", "hpi", "jar", "jpi", "tgz", "war", "xz", "zip", "zst");
+
+    private static final Map<String, LocalDigest> DIGESTS = new ConcurrentHashMap<>();
+
+    private BootstrapUploader() {
+    }
+
+    /**
+     * Makes sure every file is present and up to date on the remote host.
+     *
+     * @param sshClient the connected SSH client.
+     * @param files     the files to upload.
+     * @throws IOException   if a local file cannot be read or the remote host fails to write it.
+     * @throws JSchException if the underlying SSH session fails.
+     */
+    public static void upload(SSHClient sshClient, List<? extends BootstrapFile> files)
+            throws IOException, JSchException {
+        if (files.isEmpty()) {
+            return;
+        }
+        Map<String, String> localDigests = new HashMap<>();
+        for (BootstrapFile file : files) {
+            localDigests.put(file.getRemotePath(), getDigest(new File(file.getSource())));
+        }
+
+        RemoteState remote = inspect(sshClient, files);
+        List<BootstrapFile> changed = new ArrayList<>();
+        for (BootstrapFile file : files) {
+            if (!localDigests.get(file.getRemotePath()).equals(remote.digests.get(file.getRemotePath()))) {
+                changed.add(file);
+            }
+        }
+        LOGGER.log(Level.INFO, "BootstrapUploader: {0} of {1} files to upload to {2}",
+                new Object[]{changed.size(), files.size(), sshClient.getHost()});
+        if (changed.isEmpty()) {
+            return;
+        }
+        createParentDirectories(sshClient, changed);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(changed.size(), MAX_PARALLEL_UPLOADS),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "BootstrapUploader " + sshClient.getHost());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            List<Callable<Void>> uploads = new ArrayList<>();
+            for (BootstrapFile file : changed) {
+                uploads.add(() -> {
+                    uploadFile(sshClient, file, remote.gzip);
+                    return null;
+                });
+            }
+            for (Future<Void> upload : executor.invokeAll(uploads)) {
+                upload.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while uploading bootstrap files", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof JSchException jSchException) {
+                throw jSchException;
+            }
+            throw new IOException("Failed to upload bootstrap files", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void uploadFile(SSHClient sshClient, BootstrapFile file, boolean gzip)
+            throws IOException, JSchException {
+        final File source = new File(file.getSource());
+        if (gzip && isCompressible(source.getName())) {
+            SSHClient.ExitStatus status;
+            try {
+                status = sshClient.execRemoteAsync("gzip -dc > " + quote(file.getRemotePath()), stdin -> {
+                    try (InputStream in = Files.newInputStream(source.toPath());
+                         GZIPOutputStream out = new GZIPOutputStream(stdin, BUFFER_SIZE)) {
+                        in.transferTo(out);
+                    }
+                }, line -> LOGGER.log(Level.FINE, "BootstrapUploader: {0}", line), 0).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while uploading " + source, e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to upload " + source, e.getCause());
+            }
+            if (status.getCode() != 0) {
+                throw new IOException(String.format("Failed to unpack %s on %s, gzip exited with %d",
+                        file.getRemotePath(), sshClient.getHost(), status.getCode()));
+            }
+        } else {
+            sshClient.copyTo(Files.newInputStream(source.toPath()), file.getRemotePath());
+        }
+        LOGGER.log(Level.FINE, "BootstrapUploader: copied {0} to {1}:{2}",
+                new Object[]{source, sshClient.getHost(), file.getRemotePath()});
+    }
+
+    private static RemoteState inspect(SSHClient sshClient, List<? extends BootstrapFile> files)
+            throws IOException, JSchException {
+        StringBuilder command = new StringBuilder("sha256sum");
+        for (BootstrapFile file : files) {
+            command.append(' ').append(quote(file.getRemotePath()));
+        }
+        // sha256sum fails for missing files, the digests of the others are still printed
+        command.append(" 2>/dev/null; command -v gzip >/dev/null 2>&1 && echo ").append(GZIP_MARKER);
+
+        String output;
+        try {
+            output = sshClient.execRemoteAsync(command.toString(), line -> { }, Integer.MAX_VALUE).get().getOutput();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while checking bootstrap files", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to check bootstrap files", e.getCause());
+        }
+        return parse(output);
+    }
+
+    static RemoteState parse(String output) {
+        RemoteState state = new RemoteState();
+        for (String line : StringUtils.split(StringUtils.defaultString(output), '\n')) {
+            if (line.equals(GZIP_MARKER)) {
+                state.gzip = true;
+                continue;
+            }
+            // "<digest>  <path>", or "<digest> *<path>" in binary mode
+            String digest = StringUtils.substringBefore(line, " ");
+            String path = StringUtils.substringAfter(line, " ");
+            if (path.startsWith(" ") || path.startsWith("*")) {
+                state.digests.put(path.substring(1), digest.toLowerCase(Locale.ROOT));
+            }
+        }
+        return state;
+    }
+
+    private static void createParentDirectories(SSHClient sshClient, List<BootstrapFile> files)
+            throws IOException, JSchException {
+        Set<String> parents = new LinkedHashSet<>();
+        for (BootstrapFile file : files) {
+            String parent = StringUtils.substringBeforeLast(file.getRemotePath(), "/");
+            if (!parent.equals(file.getRemotePath()) && !parent.isEmpty()) {
+                parents.add(quote(parent));
+            }
+        }
+        if (parents.isEmpty()) {
+            return;
+        }
+        try {
+            sshClient.execRemote("mkdir -p " + String.join(" ", parents), false, false);
+        } catch (SSHClient.ExitStatusException e) {
+            throw new IOException("Failed to create the directories of the bootstrap files", e);
+        }
+    }
+
+    static boolean isCompressible(String name) {
+        String extension = StringUtils.substringAfterLast(name, ".").toLowerCase(Locale.ROOT);
+        return !COMPRESSED_EXTENSIONS.contains(extension);
+    }
+
+    static String quote(String path) {
+        return "'" + path.replace("'", "'\\''") + "'";
+    }
+
+    /**
+     * SHA-256 digest of the local file, cached until the file is modified.
+     */
+    static String getDigest(File file) throws IOException {
+        final long size = file.length();
+        final long lastModified = file.lastModified();
+        LocalDigest cached = DIGESTS.get(file.getAbsolutePath());
+        if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+            return cached.digest;
+        }
+        String digest;
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            digest = AgentJar.digest(in);
+        }
+        DIGESTS.put(file.getAbsolutePath(), new LocalDigest(size, lastModified, digest));
+        return digest;
+    }
+
+    static final class RemoteState {
+        private final Map<String, String> digests = new HashMap<>();
+        private boolean gzip;
+
+        Map<String, String> getDigests() {
+            return digests;
+        }
+
+        boolean hasGzip() {
+            return gzip;
+        }
+    }
+
+    private static final class LocalDigest {
+        private final long size;
+        private final long lastModified;
+        private final String digest;
+
+        LocalDigest(long size, long lastModified, String digest) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digest = digest;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.microsoft.jenkins.containeragents.remote;
 
 import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
 
+import java.util.List;
+
 public interface ISSHLaunchable {
 
     StandardUsernameCredentials getSshCredential();
@@ -11,4 +13,38 @@ public interface ISSHLaunchable {
     boolean isSshLaunchType();
 
     String getHost();
+
+    /**
+     * @return how long to wait for the SSH server to come up, in minutes.
+     */
+    int getTimeout();
+
+    /**
+     * @return the files to upload before the agent starts.
+     */
+    List<? extends BootstrapFile> getBootstrapFiles();
+
+    /**
+     * @return additional options of the agent JVM, may be empty.
+     */
+    String getJvmOptions();
+
+    /**
+     * @return whether the agent JVM uses an AppCDS archive.
+     */
+    boolean isAppCds();
+
+    /**
+     * @return the directory of the shared remoting jar cache, or null to use the default cache of the agent.
+     */
+    String getJarCachePath();
+
+    /**
+     * @return the SSH jump host the agent is reached through, or null if the controller connects directly.
+     */
+    String getJumpHost();
+
+    int getJumpPort();
+
+    StandardUsernameCredentials getJumpCredential();
 }
@@ -6,36 +6,77 @@
 package com.microsoft.jenkins.containeragents.remote;
 
 import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
+import com.jcraft.jsch.ChannelDirectTCPIP;
 import com.jcraft.jsch.ChannelExec;
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Proxy;
 import com.jcraft.jsch.Session;
 import com.jcraft.jsch.SftpException;
+import com.jcraft.jsch.SocketFactory;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.util.Secret;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
 import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.Deque;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 
 /**
  * An SSH client used to interact with a remote SSH server.
+ * <p>
+ * Exec and SFTP operations may run concurrently from several threads. They are multiplexed as channels of the one
+ * session, at most {@link #withMaxChannels(int) maxChannels} at a time so the server's {@code MaxSessions} is not
+ * exceeded. SFTP channels are kept open and reused across file operations.
  */
 public class SSHClient implements AutoCloseable {
-    private static final int READ_BUFFER_SIZE = 4096;
+    // Output kept by execRemote, further output is only logged
+    private static final int MAX_CAPTURE_SIZE = 1024 * 1024;
+
+    // OpenSSH's default MaxSessions
+    private static final int DEFAULT_MAX_CHANNELS = 10;
+
+    // SFTP writes in flight before waiting for an ack, JSch defaults to 16
+    private static final int SFTP_BULK_REQUESTS = 64;
+
+    private static final ExecutorService CHANNEL_STREAMS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "SSHClient channel stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final String host;
     private final int port;
     private final UsernameAuth credentials;
 
     private final JSch jsch;
-    private Session session;
+    private volatile Session session;
+
+    private int maxChannels = DEFAULT_MAX_CHANNELS;
+
+    private volatile Semaphore channels = new Semaphore(DEFAULT_MAX_CHANNELS);
+
+    private final Deque<ChannelSftp> idleSftpChannels = new ConcurrentLinkedDeque<>();
+
+    private SSHClient jumpHost;
 
     private PrintStream logger;
 
@@ -99,6 +140,34 @@ public class SSHClient implements AutoCloseable {
         return this;
     }
 
+    /**
+     * Reach the SSH server through a jump host, e.g. a bastion in the virtual network of private agents.
+     * <p>
+     * The connection is tunnelled through a {@code direct-tcpip} channel of the jump host session, so any number of
+     * clients can share one jump host session and pay only a channel open each instead of a handshake. The jump host
+     * must stay connected while this client is connected.
+     *
+     * @param jump the connected client of the jump host.
+     * @return the current SSH client with the jump host updated.
+     */
+    public SSHClient withJumpHost(SSHClient jump) {
+        this.jumpHost = jump;
+        return this;
+    }
+
+    /**
+     * Set how many channels may be open on the session at the same time, including idle SFTP channels. Must not
+     * exceed the {@code MaxSessions} of the server.
+     *
+     * @param limit the channel limit.
+     * @return the current SSH client with the limit updated.
+     */
+    public SSHClient withMaxChannels(int limit) {
+        this.maxChannels = Math.max(1, limit);
+        this.channels = new Semaphore(this.maxChannels);
+        return this;
+    }
+
     /**
      * Establish a connection with the SSH server.
      * <p>
@@ -127,7 +196,11 @@ public class SSHClient implements AutoCloseable {
         if (credentials instanceof UsernamePasswordAuth usernamePasswordAuth) {
             session.setPassword(usernamePasswordAuth.getPassword());
         }
+        if (jumpHost != null) {
+            session.setProxy(new TunnelProxy(jumpHost));
+        }
         session.connect();
+        channels = new Semaphore(maxChannels);
         return this;
     }
 
@@ -186,22 +259,94 @@ public class SSHClient implements AutoCloseable {
     }
 
     protected void withChannelSftp(ChannelSftpConsumer consumer) throws JSchException {
-        ChannelSftp channel = null;
-        try {
-            channel = (ChannelSftp) session.openChannel("sftp");
-            channel.connect();
+        // An idle channel still holds its permit
+        ChannelSftp channel = idleSftpChannels.pollFirst();
+        if (channel != null && !channel.isConnected()) {
+            channels.release();
+            channel = null;
+        }
+        if (channel == null) {
+            acquireChannel();
             try {
-                consumer.apply(channel);
-            } catch (SftpException e) {
-                throw new JSchException("sftp error", e);
+                channel = (ChannelSftp) session.openChannel("sftp");
+                channel.setBulkRequests(SFTP_BULK_REQUESTS);
+                channel.connect();
+            } catch (JSchException | RuntimeException e) {
+                channels.release();
+                throw e;
             }
+        }
+        boolean reusable = false;
+        try {
+            consumer.apply(channel);
+            reusable = true;
+        } catch (SftpException e) {
+            // The channel itself is still usable after a failed file operation, e.g. a missing file
+            reusable = channel.isConnected();
+            throw new JSchException("sftp error", e);
         } finally {
-            if (channel != null) {
+            if (reusable) {
+                idleSftpChannels.offerFirst(channel);
+            } else {
                 channel.disconnect();
+                channels.release();
+            }
+        }
+    }
+
+    /**
+     * Wait for a free channel slot, closing idle SFTP channels to make room.
+     */
+    private void acquireChannel() throws JSchException {
+        while (!channels.tryAcquire()) {
+            ChannelSftp idle = idleSftpChannels.pollLast();
+            if (idle == null) {
+                try {
+                    channels.acquire();
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new JSchException("Interrupted while waiting for a free channel", e);
+                }
             }
+            idle.disconnect();
+            channels.release();
         }
     }
 
+    /**
+     * Open and connect an exec channel running the command on the current session, e.g. to host a remoting channel.
+     * <p>
+     * The channel takes one of the channel slots until it is closed through {@link #closeExecChannel(ChannelExec)}.
+     *
+     * @param command the command to be executed.
+     * @return the connected exec channel.
+     * @throws JSchException if the underlying SSH session fails.
+     */
+    public ChannelExec openExecChannel(String command) throws JSchException {
+        acquireChannel();
+        try {
+            ChannelExec channel = (ChannelExec) session.openChannel("exec");
+            channel.setCommand(command);
+            log("===> exec: {0}", command);
+            channel.connect();
+            return channel;
+        } catch (JSchException | RuntimeException e) {
+            channels.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Disconnect a channel opened by {@link #openExecChannel(String)} and free its slot.
+     *
+     * @param channel the exec channel.
+     */
+    public void closeExecChannel(ChannelExec channel) {
+        channel.disconnect();
+        channels.release();
+    }
+
     /**
      * Execute a command on the remote server and return the command standard output.
      *
@@ -217,83 +362,129 @@ public class SSHClient implements AutoCloseable {
     public String execRemote(String command,
                              boolean showCommand,
                              boolean capture) throws JSchException, IOException, ExitStatusException {
-        ChannelExec channel = null;
+        if (showCommand) {
+            log("===> exec: {0}", command);
+        }
+        ExitStatus status;
         try {
+            status = execRemoteAsync(command, line -> log("<=== " + line), capture ? MAX_CAPTURE_SIZE : 0).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JSchException("Interrupted while executing " + command, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new JSchException("Failed to execute " + command, e.getCause());
+        }
+        log("<=== command exit status: " + status.getCode());
+        if (status.getCode() != 0) {
+            throw new ExitStatusException(status.getCode(), status.getOutput());
+        }
+        return status.getOutput();
+    }
 
+    /**
+     * Execute a command on the remote server without blocking the caller.
+     * <p>
+     * Standard output and standard error are passed line by line to the consumer while the command runs. Only the
+     * first {@code maxCapture} characters of the standard output are kept for the result. The future completes when
+     * the server closes the channel, i.e. once both output streams reached their end and the exit status is known.
+     *
+     * @param command      the command to be executed.
+     * @param lineConsumer receives each output line, called from a reader thread.
+     * @param maxCapture   how much of the standard output to keep, 0 to keep nothing.
+     * @return the future exit status and captured standard output of the command.
+     * @throws JSchException if the channel cannot be opened.
+     * @throws IOException   if the output streams of the channel cannot be opened.
+     */
+    public CompletableFuture<ExitStatus> execRemoteAsync(String command,
+                                                         Consumer<String> lineConsumer,
+                                                         int maxCapture) throws JSchException, IOException {
+        return execRemoteAsync(command, null, lineConsumer, maxCapture);
+    }
+
+    /**
+     * Execute a command on the remote server with the given standard input, without blocking the caller.
+     * <p>
+     * The writer is called from another thread once the command started. The standard input of the command is
+     * closed after the writer returns.
+     *
+     * @param command      the command to be executed.
+     * @param input        writes the standard input of the command, or null for none.
+     * @param lineConsumer receives each output line, called from a reader thread.
+     * @param maxCapture   how much of the standard output to keep, 0 to keep nothing.
+     * @return the future exit status and captured standard output of the command.
+     * @throws JSchException if the channel cannot be opened.
+     * @throws IOException   if the streams of the channel cannot be opened.
+     * @see #execRemoteAsync(String, Consumer, int)
+     */
+    public CompletableFuture<ExitStatus> execRemoteAsync(String command,
+                                                         InputWriter input,
+                                                         Consumer<String> lineConsumer,
+                                                         int maxCapture) throws JSchException, IOException {
+        acquireChannel();
+        final ChannelExec channel;
+        final InputStream stdout;
+        final InputStream stderr;
+        final OutputStream stdin;
+        try {
             channel = (ChannelExec) session.openChannel("exec");
             channel.setCommand(command);
+            // JSch ends stdout on EOF and stderr when the channel is closed, after the exit status
+            stdout = channel.getInputStream();
+            stderr = channel.getExtInputStream();
+            stdin = input == null ? null : channel.getOutputStream();
+            channel.connect();
+        } catch (JSchException | IOException | RuntimeException e) {
+            channels.release();
+            throw e;
+        }
 
-            if (showCommand) {
-                log("===> exec: {0}", command);
-            }
-            ByteArrayOutputStream output = new ByteArrayOutputStream();
-            byte[] buffer = new byte[READ_BUFFER_SIZE];
-
-            if (logger != null) {
-                channel.setErrStream(logger, true);
-                if (!capture) {
-                    channel.setOutputStream(logger, true);
-                }
+        CompletableFuture<Void> stdinDone = input == null ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.runAsync(() -> writeInput(input, stdin), CHANNEL_STREAMS);
+
+        final OutputCapture capture = new OutputCapture(maxCapture);
+        CompletableFuture<Void> stdoutDone = CompletableFuture.runAsync(
+                () -> readLines(stdout, line -> {
+                    capture.add(line);
+                    lineConsumer.accept(line);
+                }), CHANNEL_STREAMS);
+        CompletableFuture<Void> stderrDone = CompletableFuture.runAsync(
+                () -> readLines(stderr, lineConsumer), CHANNEL_STREAMS);
+
+        return CompletableFuture.allOf(stdinDone, stdoutDone, stderrDone).handle((ignored, failure) -> {
+            channel.disconnect();
+            channels.release();
+            if (failure != null) {
+                throw failure instanceof CompletionException completion
+                        ? completion : new CompletionException(failure);
             }
+            return new ExitStatus(channel.getExitStatus(), capture.toString(), capture.isTruncated());
+        });
+    }
 
-            channel.connect();
+    private static void writeInput(InputWriter input, OutputStream stdin) {
+        try (OutputStream out = stdin) {
+            input.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-            if (!capture) {
-                while (!channel.isClosed()) {
-                    try {
-                        final int waitPeriod = 200;
-                        Thread.sleep(waitPeriod);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new JSchException("", e);
-                    }
-                }
-                int exitCode = channel.getExitStatus();
-                log("<=== command exit status: {0}", exitCode);
-                if (exitCode != 0) {
-                    throw new ExitStatusException(exitCode, "");
-                }
-                return "";
-            } else {
-                InputStream in = channel.getInputStream();
-                while (true) {
-                    do {
-                        // blocks on IO
-                        int len = in.read(buffer, 0, buffer.length);
-                        if (len < 0) {
-                            break;
-                        }
-                        output.write(buffer, 0, len);
-                    } while (in.available() > 0);
-
-                    if (channel.isClosed()) {
-                        if (in.available() > 0) {
-                            continue;
-                        }
-                        break;
-                    }
-                }
-                int exitCode = channel.getExitStatus();
-                log("<=== command exit status: {0}", exitCode);
-                String serverOutput = output.toString(StandardCharsets.UTF_8);
-                log("<=== {0}", serverOutput);
-                if (exitCode != 0) {
-                    throw new ExitStatusException(exitCode, serverOutput);
-                }
-                return serverOutput;
-            }
-        } catch (UnsupportedEncodingException e) {
-            throw new IllegalArgumentException("Failed to execute command", e);
-        } finally {
-            if (channel != null) {
-                channel.disconnect();
+    private static void readLines(InputStream in, Consumer<String> lineConsumer) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineConsumer.accept(line);
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
     /**
-     * Forward another remote SSH port to local through the current client, and create a new client based on the local
-     * port.
+     * Create a client to another SSH server which is reachable from the SSH target of the current client.
      * <p>
      * This method assumes that the SSH server on A and B accepts the same authentication credentials.
      *
@@ -308,8 +499,7 @@ public class SSHClient implements AutoCloseable {
     }
 
     /**
-     * Forward another remote SSH port to local through the current client, and create a new client based on the local
-     * port.
+     * Create a client to another SSH server which is reachable from the SSH target of the current client.
      * <p>
      * Consider in the case with 2 or more remote severs, where:
      * <ul>
@@ -318,11 +508,11 @@ public class SSHClient implements AutoCloseable {
      * <li>A and B are in the same subnet so A can connect to B via SSH.</li>
      * </ul>
      * <p>
-     * We can first establish an SSH connection to host A, and then use the port forwarding to forward the connection
-     * to the local port through the SSH connection of host A to reach the SSH server on host B.
+     * We can first establish an SSH connection to host A, and then tunnel the connection to the SSH server on host B
+     * through a channel of the SSH connection of host A, see {@link #withJumpHost(SSHClient)}.
      * <pre><code>
-     *     SSHClient connectionToA = new SSHClient(host_A, port_A, credentials_A);
-     *     SSHClient tunnelConnectionToB = connectionToA.forwardSSH(host_B, port_B, credentials_B);
+     *     SSHClient connectionToA = new SSHClient(host_A, port_A, credentials_A).connect();
+     *     SSHClient tunnelConnectionToB = connectionToA.forwardSSH(host_B, port_B, credentials_B).connect();
      *     tunnelConnectionToB.execRemote("ls"); // ls executed on host B
      * </code></pre>
      *
@@ -334,8 +524,12 @@ public class SSHClient implements AutoCloseable {
      * @throws JSchException if error occurs during the SSH operations.
      */
     public SSHClient forwardSSH(String remoteHost, int remotePort, UsernameAuth sshCredentials) throws JSchException {
-        int localPort = session.setPortForwardingL(0, remoteHost, remotePort);
-        return new SSHClient("127.0.0.1", localPort, sshCredentials).withLogger(logger);
+        return new SSHClient(remoteHost, remotePort, sshCredentials).withLogger(logger).withJumpHost(this);
+    }
+
+    public boolean isConnected() {
+        Session current = session;
+        return current != null && current.isConnected();
     }
 
     public String getHost() {
@@ -356,6 +550,10 @@ public class SSHClient implements AutoCloseable {
 
     @Override
     public void close() {
+        for (ChannelSftp channel = idleSftpChannels.poll(); channel != null; channel = idleSftpChannels.poll()) {
+            channel.disconnect();
+            channels.release();
+        }
         if (this.session != null) {
             this.session.disconnect();
             this.session = null;
@@ -371,7 +569,89 @@ public class SSHClient implements AutoCloseable {
 
     private void log(String message, Object... args) {
         if (logger != null) {
-            logger.printf((message) + "%n", args);
+            logger.println(MessageFormat.format(message, args));
+        }
+    }
+
+    private static final class OutputCapture {
+        private final int limit;
+        private final StringBuilder output = new StringBuilder();
+        private boolean truncated;
+
+        OutputCapture(int limit) {
+            this.limit = limit;
+        }
+
+        synchronized void add(String line) {
+            int remaining = limit - output.length();
+            if (line.length() + 1 <= remaining) {
+                output.append(line).append('\n');
+            } else {
+                if (remaining > 0) {
+                    output.append(line, 0, Math.min(line.length(), remaining));
+                }
+                truncated = true;
+            }
+        }
+
+        synchronized boolean isTruncated() {
+            return truncated;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return output.toString();
+        }
+    }
+
+    /**
+     * Transport of a session over a {@code direct-tcpip} channel of the jump host session.
+     */
+    private static final class TunnelProxy implements Proxy {
+        private final SSHClient jumpHost;
+        private ChannelDirectTCPIP channel;
+        private InputStream in;
+        private OutputStream out;
+
+        TunnelProxy(SSHClient jumpHost) {
+            this.jumpHost = jumpHost;
+        }
+
+        @Override
+        public void connect(SocketFactory socketFactory, String host, int port, int timeout) throws Exception {
+            final Session jumpSession = jumpHost.session;
+            if (jumpSession == null || !jumpSession.isConnected()) {
+                throw new JSchException("Jump host " + jumpHost.getHost() + " is not connected");
+            }
+            channel = (ChannelDirectTCPIP) jumpSession.openChannel("direct-tcpip");
+            channel.setHost(host);
+            channel.setPort(port);
+            in = channel.getInputStream();
+            out = channel.getOutputStream();
+            channel.connect(timeout);
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return out;
+        }
+
+        @Override
+        public Socket getSocket() {
+            // No socket of our own, JSch skips the socket options
+            return null;
+        }
+
+        @Override
+        public void close() {
+            if (channel != null) {
+                channel.disconnect();
+            }
         }
     }
 
@@ -379,6 +659,43 @@ public class SSHClient implements AutoCloseable {
         void apply(ChannelSftp channel) throws SftpException;
     }
 
+    /**
+     * Writes the standard input of a remote command.
+     */
+    public interface InputWriter {
+        void write(OutputStream stdin) throws IOException;
+    }
+
+    /**
+     * Exit code and captured standard output of a remote command.
+     */
+    public static final class ExitStatus {
+        private final int code;
+        private final String output;
+        private final boolean truncated;
+
+        public ExitStatus(int code, String output, boolean truncated) {
+            this.code = code;
+            this.output = output;
+            this.truncated = truncated;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        /**
+         * @return whether the output was longer than the capture limit and got cut.
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+
     public static class ExitStatusException extends Exception {
         private final int exitStatus;
         private final String output;
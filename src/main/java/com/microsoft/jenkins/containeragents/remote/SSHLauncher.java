@@ -1,35 +1,26 @@
 package com.microsoft.jenkins.containeragents.remote;
 
-import com.cloudbees.jenkins.plugins.sshcredentials.SSHUserPrivateKey;
 import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
-import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import com.jcraft.jsch.ChannelExec;
-import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
-import com.jcraft.jsch.Session;
-import com.microsoft.jenkins.containeragents.helper.RetryTask;
 import hudson.model.Slave;
 import hudson.model.TaskListener;
 import hudson.remoting.Channel;
 import hudson.slaves.ComputerLauncher;
 import hudson.slaves.SlaveComputer;
-import hudson.util.Secret;
-import jenkins.model.Jenkins;
 import org.apache.commons.lang3.StringUtils;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.PrintStream;
-import java.nio.charset.StandardCharsets;
-import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class SSHLauncher extends ComputerLauncher {
     private static final Logger LOGGER = Logger.getLogger(SSHLauncher.class.getName());
-    private static final int RETRY_LIMIT = 3;
-    private static final int RETRY_INTERVAL = 10;
+
+    private static final long TUNNEL_INITIAL_BACKOFF_MILLIS = 500;
+    private static final long TUNNEL_MAX_BACKOFF_MILLIS = 10000;
 
     @Override
     public void launch(SlaveComputer computer, TaskListener listener) throws InterruptedException {
@@ -60,37 +51,35 @@ public class SSHLauncher extends ComputerLauncher {
 
         LOGGER.log(Level.INFO, "SSHLauncher: Start to connect node {0} : {1} via SSH",
                 new Object[]{node.getDisplayName(), host});
+        final ISSHLaunchable launchable = (ISSHLaunchable) node;
+        SSHSessionPool.Lease jumpLease = null;
+        SSHSessionPool.Lease lease = null;
         try {
-            SSHClient sshClient = new RetryTask<>(
-                    () -> new SSHClient(host, port, credentials).connect().withLogger(logger),
-                    new SSHRetryStrategy(RETRY_LIMIT, RETRY_INTERVAL)).call();
+            final long timeoutMillis = TimeUnit.MINUTES.toMillis(launchable.getTimeout());
+            if (launchable.getJumpHost() != null) {
+                // One jump host session is shared by all agents behind it, each agent costs a tunnel channel
+                jumpLease = SSHSessionPool.get().lease(launchable.getJumpHost(), launchable.getJumpPort(),
+                        launchable.getJumpCredential());
+                lease = leaseThroughJumpHost(jumpLease.getClient(), host, port, credentials, timeoutMillis);
+            } else {
+                // Wait for sshd with cheap probes, then pay for a single SSH handshake
+                SSHPortProbe.get().probe(host, port, timeoutMillis).get(timeoutMillis, TimeUnit.MILLISECONDS);
+                lease = SSHSessionPool.get().lease(host, port, credentials);
+            }
+            final SSHClient sshClient = lease.getClient().withLogger(logger);
 
-            InputStream inputStream = new ByteArrayInputStream(Jenkins.get().getJnlpJars("agent.jar")
-                    .readFully());
-            sshClient.copyTo(inputStream, "agent.jar");
+            final String agentJar = AgentJar.ensureOnRemote(sshClient);
             LOGGER.log(Level.INFO, "SSHLauncher: Copy agent.jar to remote host successfully");
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "SSHLauncher: Copy agent.jar to remote host failed");
-            computer.setAcceptingTasks(false);
-            throw new InterruptedException(e.toString());
-        }
-
-        // A lot of codes copied from commons-plugin as there is a classloader issue.
-        // JSch class in commons-plugin conflict with the same class in maven-plugin
-        // Will reuse commons-plugin whenever it moved to a jar package.
-        Session session = null;
-        try {
-            session = new RetryTask<>(() -> {
-                Session session1 = getSession(credentials, host, port);
+            BootstrapUploader.upload(sshClient, launchable.getBootstrapFiles());
 
-                session1.connect();
-                return session1;
-            }, new SSHRetryStrategy(RETRY_LIMIT, RETRY_INTERVAL)).call();
-
-            final ChannelExec channelExec = (ChannelExec) session.openChannel("exec");
-            final String execCommand = "java -jar agent.jar";
-            channelExec.setCommand(execCommand);
-            channelExec.connect();
+            // The exec channel for the remoting stream shares the session of the copy, one handshake per launch
+            final boolean appCds = launchable.isAppCds() && AgentJar.isAppCdsSupported(sshClient);
+            final SSHSessionPool.Lease session = lease;
+            final SSHSessionPool.Lease jumpSession = jumpLease;
+            final long execStart = System.nanoTime();
+            final ChannelExec channelExec = sshClient.openExecChannel(
+                    AgentJar.getLaunchCommand(agentJar, launchable.getJvmOptions(), appCds,
+                            launchable.getJarCachePath()));
 
             computer.setChannel(channelExec.getInputStream(),
                     channelExec.getOutputStream(),
@@ -98,49 +87,54 @@ public class SSHLauncher extends ComputerLauncher {
                     new Channel.Listener() {
                 @Override
                 public void onClosed(Channel channel, IOException cause) {
-                    channelExec.disconnect();
+                    sshClient.closeExecChannel(channelExec);
+                    session.close();
+                    if (jumpSession != null) {
+                        jumpSession.close();
+                    }
                 }
             });
-            LOGGER.log(Level.INFO, "SSHLauncher: launched agent successfully");
+            final long channelMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - execStart);
+            logger.println(String.format("Agent channel established %d ms after exec", channelMillis));
+            LOGGER.log(Level.INFO, "SSHLauncher: launched agent successfully, channel established {0} ms after exec",
+                    channelMillis);
         } catch (Exception e) {
-            LOGGER.log(Level.INFO, "SSHLauncher: launching agent failed");
-            if (session != null) {
-                session.disconnect();
+            LOGGER.log(Level.WARNING, "SSHLauncher: launching agent failed: {0}", e.toString());
+            if (lease != null) {
+                lease.close();
+            }
+            if (jumpLease != null) {
+                jumpLease.close();
             }
             computer.setAcceptingTasks(false);
             throw new InterruptedException(e.toString());
         }
-
     }
 
-    private Session getSession(StandardUsernameCredentials credentials, String host, int port) throws JSchException {
-        JSch jsch = new JSch();
-        if (credentials instanceof SSHUserPrivateKey sshUserPrivateKey) {
-            Secret passphraseSecret = sshUserPrivateKey.getPassphrase();
-            String passphrase = passphraseSecret == null
-                    ? null
-                    : passphraseSecret.getPlainText();
-            byte[] passphraseBytes = passphrase == null ? null : passphrase.getBytes(StandardCharsets.UTF_8);
-
-            int seq = 0;
-            for (String privateKey : sshUserPrivateKey.getPrivateKeys()) {
-                String name = sshUserPrivateKey.getUsername();
-                if (seq++ != 0) {
-                    name += "-" + seq;
+    /**
+     * The port of the agent can't be probed from here, so the tunnel is retried until sshd accepts it.
+     */
+    private static SSHSessionPool.Lease leaseThroughJumpHost(SSHClient jumpHost,
+                                                             String host,
+                                                             int port,
+                                                             StandardUsernameCredentials credentials,
+                                                             long timeoutMillis)
+            throws JSchException, InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        long backoff = TUNNEL_INITIAL_BACKOFF_MILLIS;
+        while (true) {
+            try {
+                return SSHSessionPool.get().lease(host, port, credentials, jumpHost);
+            } catch (JSchException e) {
+                if (System.currentTimeMillis() + backoff >= deadline || !jumpHost.isConnected()) {
+                    throw e;
                 }
-                jsch.addIdentity(name, privateKey.getBytes(StandardCharsets.UTF_8), null, passphraseBytes);
+                LOGGER.log(Level.FINE, "SSHLauncher: {0} not reachable through {1} yet: {2}",
+                        new Object[]{host, jumpHost.getHost(), e.getMessage()});
+                Thread.sleep(backoff);
+                backoff = Math.min(TUNNEL_MAX_BACKOFF_MILLIS, backoff * 2);
             }
         }
-
-        Session session = jsch.getSession(credentials.getUsername(), host, port);
-
-        Properties config = new Properties();
-        config.put("StrictHostKeyChecking", "no");
-        session.setConfig(config);
-        if (credentials instanceof StandardUsernamePasswordCredentials usernamePasswordCredentials) {
-            session.setPassword(usernamePasswordCredentials.getPassword().getPlainText());
-        }
-        return session;
     }
 
 }
@@ -0,0 +1,220 @@
+package com.microsoft.jenkins.containeragents.remote;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Waits for an SSH server to accept connections, before the launcher pays for a full SSH handshake.
+ * <p>
+ * A port is ready once it sends the {@code SSH-} protocol banner. Attempts start a few milliseconds apart and back
+ * off exponentially. All probes share one selector thread, so many concurrent launches don't each hold a sleeping
+ * thread.
+ */
+public final class SSHPortProbe {
+    private static final Logger LOGGER = Logger.getLogger(SSHPortProbe.class.getName());
+
+    private static final SSHPortProbe INSTANCE = new SSHPortProbe(System::currentTimeMillis);
+
+    static final long INITIAL_BACKOFF_MILLIS = 50;
+    static final long MAX_BACKOFF_MILLIS = 2000;
+    // An attempt which connected but got no banner, e.g. a half started container, is abandoned after this
+    static final long ATTEMPT_TIMEOUT_MILLIS = 5000;
+
+    private static final byte[] BANNER = "SSH-".getBytes(StandardCharsets.US_ASCII);
+
+    private final LongSupplier clock;
+
+    private final Queue<Probe> pending = new ConcurrentLinkedQueue<>();
+
+    private Selector selector;
+
+    private Thread thread;
+
+    SSHPortProbe(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public static SSHPortProbe get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Probes the SSH port until it sends the SSH banner or the timeout elapses.
+     *
+     * @param host          the SSH server name or IP address.
+     * @param port          the SSH port.
+     * @param timeoutMillis how long to keep probing.
+     * @return a future completing once the port is ready, or exceptionally with a {@link TimeoutException}.
+     */
+    public CompletableFuture<Void> probe(String host, int port, long timeoutMillis) {
+        Probe probe = new Probe(new InetSocketAddress(host, port), clock.getAsLong() + timeoutMillis);
+        try {
+            ensureStarted();
+        } catch (IOException e) {
+            probe.future.completeExceptionally(e);
+            return probe.future;
+        }
+        pending.add(probe);
+        selector.wakeup();
+        return probe.future;
+    }
+
+    private synchronized void ensureStarted() throws IOException {
+        if (thread != null && thread.isAlive()) {
+            return;
+        }
+        selector = Selector.open();
+        thread = new Thread(this::run, "SSHPortProbe");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        final PriorityQueue<Probe> scheduled = new PriorityQueue<>(Comparator.comparingLong(p -> p.nextAttempt));
+        while (true) {
+            try {
+                for (Probe probe = pending.poll(); probe != null; probe = pending.poll()) {
+                    scheduled.add(probe);
+                }
+                long now = clock.getAsLong();
+                while (!scheduled.isEmpty() && scheduled.peek().nextAttempt <= now) {
+                    connect(scheduled.poll(), scheduled);
+                }
+                for (SelectionKey key : selector.keys()) {
+                    Probe probe = (Probe) key.attachment();
+                    if (key.isValid() && now >= probe.attemptDeadline) {
+                        retry(probe, scheduled, null);
+                    }
+                }
+
+                long wait = scheduled.isEmpty() ? ATTEMPT_TIMEOUT_MILLIS
+                        : Math.max(1, scheduled.peek().nextAttempt - now);
+                selector.select(wait);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    handle(key, scheduled);
+                }
+                selector.selectedKeys().clear();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "SSHPortProbe: selector loop failed", e);
+            }
+        }
+    }
+
+    private void connect(Probe probe, PriorityQueue<Probe> scheduled) {
+        if (probe.future.isDone()) {
+            return;
+        }
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            probe.banner.clear();
+            probe.attemptDeadline = clock.getAsLong() + ATTEMPT_TIMEOUT_MILLIS;
+            probe.attempts++;
+            if (channel.connect(probe.address)) {
+                channel.register(selector, SelectionKey.OP_READ, probe);
+            } else {
+                channel.register(selector, SelectionKey.OP_CONNECT, probe);
+            }
+            probe.channel = channel;
+        } catch (IOException e) {
+            close(channel);
+            retry(probe, scheduled, e);
+        } catch (RuntimeException e) {
+            // e.g. an unresolved address, which another attempt won't fix
+            close(channel);
+            probe.future.completeExceptionally(e);
+        }
+    }
+
+    private void handle(SelectionKey key, PriorityQueue<Probe> scheduled) {
+        Probe probe = (Probe) key.attachment();
+        try {
+            SocketChannel channel = (SocketChannel) key.channel();
+            if (key.isConnectable()) {
+                channel.finishConnect();
+                key.interestOps(SelectionKey.OP_READ);
+            } else if (key.isReadable()) {
+                if (channel.read(probe.banner) < 0) {
+                    throw new IOException("Connection closed before the SSH banner");
+                }
+                if (!probe.banner.hasRemaining()) {
+                    if (probe.banner.flip().equals(ByteBuffer.wrap(BANNER))) {
+                        close(channel);
+                        LOGGER.log(Level.FINE, "SSHPortProbe: {0} ready after {1} attempts",
+                                new Object[]{probe.address, probe.attempts});
+                        probe.future.complete(null);
+                    } else {
+                        throw new IOException("Unexpected SSH banner");
+                    }
+                }
+            }
+        } catch (IOException | CancelledKeyException e) {
+            retry(probe, scheduled, e);
+        }
+    }
+
+    private void retry(Probe probe, PriorityQueue<Probe> scheduled, Exception cause) {
+        close(probe.channel);
+        probe.channel = null;
+        if (probe.future.isDone()) {
+            return;
+        }
+        long now = clock.getAsLong();
+        if (now >= probe.deadline) {
+            TimeoutException timeout = new TimeoutException(String.format(
+                    "SSH port %s not ready after %d attempts", probe.address, probe.attempts));
+            if (cause != null) {
+                timeout.initCause(cause);
+            }
+            probe.future.completeExceptionally(timeout);
+            return;
+        }
+        probe.nextAttempt = Math.min(probe.deadline, now + probe.backoff);
+        probe.backoff = Math.min(MAX_BACKOFF_MILLIS, probe.backoff * 2);
+        scheduled.add(probe);
+    }
+
+    private static void close(SocketChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "SSHPortProbe: failed to close channel", e);
+        }
+    }
+
+    private static final class Probe {
+        private final InetSocketAddress address;
+        private final long deadline;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final ByteBuffer banner = ByteBuffer.allocate(BANNER.length);
+        private SocketChannel channel;
+        private long nextAttempt;
+        private long attemptDeadline;
+        private long backoff = INITIAL_BACKOFF_MILLIS;
+        private int attempts;
+
+        Probe(InetSocketAddress address, long deadline) {
+            this.address = address;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.microsoft.jenkins.containeragents.remote;
+
+import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
+import com.jcraft.jsch.JSchException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Shares authenticated SSH sessions per host, port and credentials.
+ * <p>
+ * Everything leasing the same host multiplexes its exec and SFTP channels over one session instead of paying for a
+ * handshake each. The session is closed when the last lease is closed.
+ */
+public final class SSHSessionPool {
+    private static final SSHSessionPool INSTANCE = new SSHSessionPool();
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    SSHSessionPool() {
+    }
+
+    public static SSHSessionPool get() {
+        return INSTANCE;
+    }
+
+    public Lease lease(String host, int port, StandardUsernameCredentials credentials) throws JSchException {
+        return lease(host, port, UsernameAuth.fromCredentials(credentials), null);
+    }
+
+    public Lease lease(String host, int port, StandardUsernameCredentials credentials, SSHClient jumpHost)
+            throws JSchException {
+        return lease(host, port, UsernameAuth.fromCredentials(credentials), jumpHost);
+    }
+
+    /**
+     * Lease a connected client to the host, connecting a new session if there is none yet.
+     *
+     * @param host the SSH server name or IP address.
+     * @param port the SSH service port.
+     * @param auth the SSH authentication credentials.
+     * @param jumpHost the connected client of the jump host to tunnel through, or null to connect directly.
+     * @return the lease, to be closed when the client is no longer used.
+     * @throws JSchException if the connection fails.
+     */
+    public Lease lease(String host, int port, UsernameAuth auth, SSHClient jumpHost) throws JSchException {
+        String target = auth.getUsername() + "@" + host + ":" + port;
+        if (jumpHost != null) {
+            target += " via " + jumpHost.getUsername() + "@" + jumpHost.getHost() + ":" + jumpHost.getPort();
+        }
+        // Sessions authenticated with other or rotated credentials of the same user must not be shared
+        String key = target + " " + auth.getFingerprint();
+        if (jumpHost != null) {
+            key += " " + jumpHost.getCredentials().getFingerprint();
+        }
+        final Entry entry;
+        final boolean connect;
+        synchronized (this) {
+            Entry existing = entries.get(key);
+            if (existing == null || existing.isBroken()) {
+                entry = new Entry();
+                entries.put(key, entry);
+                connect = true;
+            } else {
+                entry = existing;
+                connect = false;
+            }
+            entry.leases++;
+        }
+
+        if (connect) {
+            // Handshake outside the lock so sessions to other hosts aren't held up
+            try {
+                entry.client.complete(new SSHClient(host, port, auth).withJumpHost(jumpHost).connect());
+            } catch (JSchException | RuntimeException e) {
+                entry.client.completeExceptionally(e);
+            }
+        }
+        try {
+            return new Lease(key, entry, entry.client.get());
+        } catch (InterruptedException e) {
+            release(key, entry);
+            Thread.currentThread().interrupt();
+            throw new JSchException("Interrupted while connecting to " + target, e);
+        } catch (ExecutionException e) {
+            release(key, entry);
+            if (e.getCause() instanceof JSchException jSchException) {
+                throw jSchException;
+            }
+            throw new JSchException("Failed to connect to " + target, e.getCause());
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void release(String key, Entry entry) {
+        SSHClient toClose = null;
+        synchronized (this) {
+            entry.leases--;
+            if (entry.leases == 0) {
+                entries.remove(key, entry);
+                toClose = entry.client.getNow(null);
+            }
+        }
+        if (toClose != null) {
+            toClose.close();
+        }
+    }
+
+    private static final class Entry {
+        private final CompletableFuture<SSHClient> client = new CompletableFuture<>();
+        private int leases;
+
+        boolean isBroken() {
+            if (!client.isDone()) {
+                return false;
+            }
+            SSHClient connected = client.getNow(null);
+            return connected == null || !connected.isConnected();
+        }
+    }
+
+    /**
+     * A client shared with other leases of the same host. Don't close the client itself, close the lease.
+     */
+    public final class Lease implements AutoCloseable {
+        private final String key;
+        private final Entry entry;
+        private final SSHClient client;
+        private boolean closed;
+
+        private Lease(String key, Entry entry, SSHClient client) {
+            this.key = key;
+            this.entry = entry;
+            this.client = client;
+        }
+
+        public SSHClient getClient() {
+            return client;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                release(key, entry);
+            }
+        }
+    }
+}
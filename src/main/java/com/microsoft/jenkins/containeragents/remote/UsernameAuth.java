@@ -10,12 +10,19 @@ import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import hudson.util.Secret;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
 /**
  * Abstract SSH authentication credentials with username.
  */
 abstract class UsernameAuth {
     private final String username;
 
+    private String credentialsId;
+
     UsernameAuth(String username) {
         this.username = username;
     }
@@ -24,7 +31,39 @@ abstract class UsernameAuth {
         return username;
     }
 
+    String getCredentialsId() {
+        return credentialsId;
+    }
+
+    /**
+     * @return a hash of the credentials ID, the username and the secrets, which tells apart credentials of the same
+     * user, and the same credentials before and after they were rotated.
+     */
+    String getFingerprint() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(credentialsId).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(username).getBytes(StandardCharsets.UTF_8));
+            for (String secret : getSecrets()) {
+                digest.update((byte) 0);
+                digest.update(String.valueOf(secret).getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    abstract Iterable<String> getSecrets();
+
     static UsernameAuth fromCredentials(StandardUsernameCredentials credentials) {
+        UsernameAuth auth = fromSecrets(credentials);
+        auth.credentialsId = credentials.getId();
+        return auth;
+    }
+
+    private static UsernameAuth fromSecrets(StandardUsernameCredentials credentials) {
         if (credentials instanceof StandardUsernamePasswordCredentials userPass) {
             return new UsernamePasswordAuth(userPass.getUsername(), userPass.getPassword().getPlainText());
         } else if (credentials instanceof SSHUserPrivateKey userKey) {
@@ -5,6 +5,8 @@
 
 package com.microsoft.jenkins.containeragents.remote;
 
+import java.util.Collections;
+
 /**
  * SSH authentication credentials with username and password.
  */
@@ -19,4 +21,9 @@ class UsernamePasswordAuth extends UsernameAuth {
     String getPassword() {
         return password;
     }
+
+    @Override
+    Iterable<String> getSecrets() {
+        return Collections.singletonList(password);
+    }
 }
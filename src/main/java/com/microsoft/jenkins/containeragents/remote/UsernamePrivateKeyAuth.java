@@ -43,4 +43,11 @@ class UsernamePrivateKeyAuth extends UsernameAuth {
     List<String> getPrivateKeys() {
         return privateKeys;
     }
+
+    @Override
+    Iterable<String> getSecrets() {
+        List<String> secrets = new ArrayList<>(privateKeys);
+        secrets.add(passPhrase);
+        return secrets;
+    }
 }
@@ -0,0 +1,26 @@
+package com.microsoft.jenkins.containeragents.strategy;
+
+import hudson.model.Executor;
+import hudson.slaves.AbstractCloudComputer;
+
+/**
+ * Executor checks shared by the retention strategies which terminate an agent once its builds are done.
+ */
+final class AgentExecutors {
+    private AgentExecutors() {
+    }
+
+    /**
+     * @param c        the computer of the agent.
+     * @param executor the executor whose build just completed.
+     * @return whether another build is still running on the agent.
+     */
+    static boolean hasOtherBusyExecutors(AbstractCloudComputer<?> c, Executor executor) {
+        for (Executor other : c.getAllExecutors()) {
+            if (other != executor && other.isBusy()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
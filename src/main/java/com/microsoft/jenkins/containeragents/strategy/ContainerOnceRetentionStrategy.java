@@ -14,7 +14,6 @@ import hudson.model.Executor;
 import hudson.model.ExecutorListener;
 import hudson.model.Queue;
 import hudson.slaves.AbstractCloudComputer;
-import hudson.slaves.AbstractCloudSlave;
 import hudson.slaves.CloudRetentionStrategy;
 import hudson.slaves.EphemeralNode;
 import hudson.slaves.RetentionStrategy;
@@ -22,8 +21,8 @@ import jenkins.model.Jenkins;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
-import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -31,9 +30,12 @@ import java.util.logging.Logger;
 public class ContainerOnceRetentionStrategy extends CloudRetentionStrategy implements ExecutorListener {
     private static final Logger LOGGER = Logger.getLogger(ContainerOnceRetentionStrategy.class.getName());
     private static final transient int IDLE_MINUTES = 10;
-    private static final transient int WAIT_TIME = 10 * 1000;
+    private static final transient int DEFAULT_GRACE_PERIOD_SECONDS = 10;
     private static final transient int LAPSE = 5;
 
+    // Null for strategies saved before the grace period was configurable
+    private Integer gracePeriodSeconds;
+
     @DataBoundConstructor
     public ContainerOnceRetentionStrategy() {
         super(IDLE_MINUTES);
@@ -43,8 +45,27 @@ public class ContainerOnceRetentionStrategy extends CloudRetentionStrategy imple
         return IDLE_MINUTES;
     }
 
+    /**
+     * @return how long the agent is kept after its build completed, e.g. for post build steps to release it.
+     */
+    public int getGracePeriodSeconds() {
+        return gracePeriodSeconds == null ? DEFAULT_GRACE_PERIOD_SECONDS : Math.max(0, gracePeriodSeconds);
+    }
+
+    @DataBoundSetter
+    public void setGracePeriodSeconds(int gracePeriodSeconds) {
+        this.gracePeriodSeconds = gracePeriodSeconds;
+    }
+
     @Override
     public long check(final AbstractCloudComputer c) {
+        // A build completed while others were still running on the agent, terminate once the last one is done
+        if (c.isIdle() && !c.isAcceptingTasks() && c.getNode() != null) {
+            LOGGER.log(Level.INFO, "Terminating {0} since all its builds are finished", c.getName());
+            done(c);
+            return 1;
+        }
+
         // When the slave is idle we should disable accepting tasks and check to see if it is already trying to
         // terminate. If it's not already trying to terminate then lets terminate manually.
         if (c.isIdle() && !disabled) {
@@ -96,34 +117,23 @@ public class ContainerOnceRetentionStrategy extends CloudRetentionStrategy imple
     }
 
     private void done(Executor executor) {
-        try {
-            Thread.sleep(WAIT_TIME);
-        } catch (Exception e) {
-            LOGGER.info(e.getMessage());
-        }
         final AbstractCloudComputer<?> c = (AbstractCloudComputer<?>) executor.getOwner();
-        Queue.Executable exec = executor.getCurrentExecutable();
+        // The container is not reused, so no new build may start on it once the first one has completed
+        c.setAcceptingTasks(false);
+        if (AgentExecutors.hasOtherBusyExecutors(c, executor)) {
+            LOGGER.log(Level.INFO, "Not terminating {0} yet since other builds are still running on it",
+                    c.getName());
+            return;
+        }
 
-        LOGGER.log(Level.INFO, "terminating {0} since {1} seems to be finished", new Object[] {c.getName(), exec});
-        done(c);
+        Queue.Executable exec = executor.getCurrentExecutable();
+        LOGGER.log(Level.INFO, "terminating {0} in {1} s since {2} seems to be finished",
+                new Object[] {c.getName(), getGracePeriodSeconds(), exec});
+        TerminationScheduler.terminate(c, TimeUnit.SECONDS.toMillis(getGracePeriodSeconds()));
     }
 
     private void done(final AbstractCloudComputer<?> c) {
-        c.setAcceptingTasks(false); // just in case
-        synchronized (this) {
-            Computer.threadPoolForRemoting.submit(() -> Queue.withLock(() -> {
-                try {
-                    AbstractCloudSlave node = c.getNode();
-                    if (node != null) {
-                        node.terminate();
-                    }
-                } catch (InterruptedException | IOException e) {
-                    LOGGER.log(Level.WARNING, "Failed to terminate {0}: {1}",
-                            new Object[]{c.getName(), e});
-                }
-            }));
-        }
-
+        TerminationScheduler.terminate(c, 0);
     }
 
     @Override
@@ -0,0 +1,221 @@
+package com.microsoft.jenkins.containeragents.strategy;
+
+import com.microsoft.jenkins.containeragents.aci.AciAgent;
+import com.microsoft.jenkins.containeragents.aci.AciCloud;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.Descriptor;
+import hudson.model.Label;
+import hudson.model.PeriodicWork;
+import hudson.model.Queue;
+import hudson.model.queue.QueueListener;
+import hudson.slaves.AbstractCloudComputer;
+import hudson.slaves.AbstractCloudSlave;
+import hudson.slaves.CloudRetentionStrategy;
+import hudson.slaves.RetentionStrategy;
+import jenkins.model.Jenkins;
+import net.jcip.annotations.GuardedBy;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps idle agents only while the forecast demand for their labels justifies the startup time of their template.
+ * <p>
+ * An idle agent is kept if more queue items matching it are expected while a new agent of its template starts than
+ * there are idle agents of the template which became idle after it. The forecast comes from {@link DemandForecast},
+ * the startup time from the {@link ProvisionStatistics} of the cloud. With demand forecasting enabled on the cloud,
+ * the {@link WeeklyArrivalModel} forecast counts too, so that agents started ahead of a peak are kept for it. Idle
+ * agents are checked every few seconds instead of once a minute, so agents without demand are terminated promptly.
+ * The idle agents are collected and ranked once per check outside the queue lock, which is only taken to terminate
+ * the agents found surplus.
+ */
+public class ContainerPredictiveRetentionStrategy extends CloudRetentionStrategy {
+    private static final Logger LOGGER = Logger.getLogger(ContainerPredictiveRetentionStrategy.class.getName());
+
+    private static final long CHECK_PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final int maxIdleMinutes;
+
+    @DataBoundConstructor
+    public ContainerPredictiveRetentionStrategy(int maxIdleMinutes) {
+        super(maxIdleMinutes);
+        this.maxIdleMinutes = maxIdleMinutes;
+    }
+
+    /**
+     * @return how long an agent is kept idle at most, whatever the forecast, 0 for no limit.
+     */
+    public int getMaxIdleMinutes() {
+        return maxIdleMinutes;
+    }
+
+    @Override
+    @GuardedBy("hudson.model.Queue.lock")
+    public long check(final AbstractCloudComputer c) {
+        final AbstractCloudSlave node = c.getNode();
+        if (disabled || node == null || !c.isOnline() || !c.isIdle()) {
+            return 1;
+        }
+        // The forecast is checked by the Checker, Jenkins only applies the idle limit
+        if (isIdleTooLong(c)) {
+            LOGGER.log(Level.INFO, "Terminating {0}, idle for more than {1} minutes",
+                    new Object[]{c.getName(), maxIdleMinutes});
+            TerminationScheduler.terminate(c, 0);
+        }
+        return 1;
+    }
+
+    private boolean isIdleTooLong(Computer c) {
+        final long idleMillis = System.currentTimeMillis() - c.getIdleStartMilliseconds();
+        return maxIdleMinutes > 0 && idleMillis > TimeUnit.MINUTES.toMillis(maxIdleMinutes);
+    }
+
+    /**
+     * Finds the idle agents of one template which the expected demand doesn't justify keeping.
+     *
+     * @param idle      the idle agents of the template, the most recently idle first.
+     * @param justified the executors justified by the expected demand, see
+     *                  {@link DemandForecast#getJustifiedExecutors(double, long)}.
+     * @param executors the number of executors of an agent.
+     * @param <T>       the agent type.
+     * @return the agents to terminate.
+     */
+    static <T> List<T> findSurplus(List<T> idle, int justified, ToIntFunction<T> executors) {
+        final List<T> surplus = new ArrayList<>();
+        // Agents which became idle most recently are kept first, as long as one of their executors is needed
+        int newerExecutors = 0;
+        for (T agent : idle) {
+            if (newerExecutors + 1 > justified) {
+                surplus.add(agent);
+            }
+            newerExecutors += executors.applyAsInt(agent);
+        }
+        return surplus;
+    }
+
+    private static int getJustifiedExecutors(AciAgent node) {
+        final Jenkins jenkins = Jenkins.get();
+        final Predicate<String> matching = expression -> {
+            Label label = jenkins.getLabel(expression);
+            return label != null && label.matches(node);
+        };
+        final AciCloud cloud = getCloud(node);
+        final long startupMillis = cloud == null ? ProvisionStatistics.DEFAULT_STARTUP_MILLIS
+                : cloud.getProvisionStatistics().getExpectedStartupMillis(node.getId().getTemplateName());
+        double arrivalsPerMinute = DemandForecast.get().getArrivalsPerMinute(matching);
+        if (cloud != null && cloud.isDemandForecasting()) {
+            // The same forecast the cloud pre-provisions for, so the agents it started are kept
+            arrivalsPerMinute = Math.max(arrivalsPerMinute, WeeklyArrivalModel.get()
+                    .getForecastPerMinute(matching, cloud.getForecastTime(startupMillis)));
+        }
+        return DemandForecast.getJustifiedExecutors(arrivalsPerMinute, startupMillis);
+    }
+
+    private static AciCloud getCloud(AciAgent agent) {
+        if (Jenkins.get().getCloud(agent.getCloudName()) instanceof AciCloud cloud) {
+            return cloud;
+        }
+        return null;
+    }
+
+    @Override
+    public DescriptorImpl getDescriptor() {
+        return DESCRIPTOR;
+    }
+
+    @Restricted(NoExternalUse.class)
+    @Extension
+    public static final DescriptorImpl DESCRIPTOR = new DescriptorImpl();
+
+    public static final class DescriptorImpl extends Descriptor<RetentionStrategy<?>> {
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Container Predictive Retention Strategy";
+        }
+    }
+
+    /**
+     * Feeds the demand forecast with the queue items waiting for an agent.
+     */
+    @Extension
+    public static final class ArrivalListener extends QueueListener {
+        @Override
+        public void onEnterWaiting(Queue.WaitingItem wi) {
+            Label label = wi.getAssignedLabel();
+            if (label != null) {
+                DemandForecast.get().recordArrival(label.getExpression());
+            }
+        }
+    }
+
+    /**
+     * Checks the agents using this strategy more often than the once a minute of Jenkins.
+     */
+    @Extension
+    public static final class Checker extends PeriodicWork {
+        @Override
+        public long getRecurrencePeriod() {
+            return CHECK_PERIOD_MILLIS;
+        }
+
+        @Override
+        protected void doRun() {
+            if (disabled) {
+                return;
+            }
+            // One snapshot of the idle agents, by cloud and template
+            final Map<String, List<AbstractCloudComputer<?>>> idleByTemplate = new HashMap<>();
+            final Map<AbstractCloudComputer<?>, String> reasons = new LinkedHashMap<>();
+            for (Computer computer : Jenkins.get().getComputers()) {
+                if (computer instanceof AbstractCloudComputer<?> cloudComputer
+                        && cloudComputer.getNode() instanceof AciAgent agent
+                        && agent.getRetentionStrategy() instanceof ContainerPredictiveRetentionStrategy strategy
+                        && cloudComputer.isOnline() && cloudComputer.isIdle()) {
+                    if (strategy.isIdleTooLong(cloudComputer)) {
+                        reasons.put(cloudComputer, String.format("idle for more than %d minutes",
+                                strategy.getMaxIdleMinutes()));
+                    } else {
+                        idleByTemplate.computeIfAbsent(agent.getCloudName() + "/" + agent.getId().getTemplateName(),
+                                key -> new ArrayList<>()).add(cloudComputer);
+                    }
+                }
+            }
+
+            for (List<AbstractCloudComputer<?>> idle : idleByTemplate.values()) {
+                idle.sort(Comparator.comparingLong(Computer::getIdleStartMilliseconds).reversed());
+                final int justified = getJustifiedExecutors((AciAgent) idle.get(0).getNode());
+                LOGGER.log(Level.FINE, "{0}: {1} executors justified by the expected demand, {2} agents idle",
+                        new Object[]{idle.get(0).getName(), justified, idle.size()});
+                for (AbstractCloudComputer<?> surplus : findSurplus(idle, justified, Computer::getNumExecutors)) {
+                    reasons.put(surplus, "the expected demand doesn't justify keeping it idle");
+                }
+            }
+            if (reasons.isEmpty()) {
+                return;
+            }
+
+            // Agents may have taken a task since the snapshot
+            Queue.withLock(() -> reasons.forEach((computer, reason) -> {
+                if (computer.getNode() != null && computer.isOnline() && computer.isIdle()) {
+                    LOGGER.log(Level.INFO, "Terminating {0}, {1}", new Object[]{computer.getName(), reason});
+                    TerminationScheduler.terminate(computer, 0);
+                }
+            }));
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.microsoft.jenkins.containeragents.strategy;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.Descriptor;
+import hudson.model.Executor;
+import hudson.model.ExecutorListener;
+import hudson.model.Queue;
+import hudson.slaves.AbstractCloudComputer;
+import hudson.slaves.AbstractCloudSlave;
+import hudson.slaves.CloudRetentionStrategy;
+import hudson.slaves.EphemeralNode;
+import hudson.slaves.RetentionStrategy;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reuses an agent for up to a number of builds or minutes, then terminates it.
+ * <p>
+ * This spreads the startup time of a container over several short builds while bounding how much state they leave
+ * behind. The workspace can be wiped between builds, no build starts on the agent meanwhile.
+ */
+public class ContainerReuseRetentionStrategy extends CloudRetentionStrategy implements ExecutorListener {
+    private static final Logger LOGGER = Logger.getLogger(ContainerReuseRetentionStrategy.class.getName());
+    private static final transient int IDLE_MINUTES = 10;
+    private static final transient int DEFAULT_GRACE_PERIOD_SECONDS = 10;
+
+    // Completed builds by agent name, counted from the start of Jenkins
+    private static final Map<String, AtomicInteger> COMPLETED_BUILDS = new ConcurrentHashMap<>();
+
+    // Agents whose workspace is being wiped
+    private static final Set<String> WIPING = ConcurrentHashMap.newKeySet();
+
+    private final int maxBuilds;
+
+    private final int maxLifetimeMinutes;
+
+    private boolean wipeWorkspace;
+
+    // Null for strategies saved before the grace period was configurable
+    private Integer gracePeriodSeconds;
+
+    @DataBoundConstructor
+    public ContainerReuseRetentionStrategy(int maxBuilds, int maxLifetimeMinutes) {
+        super(IDLE_MINUTES);
+        this.maxBuilds = maxBuilds;
+        this.maxLifetimeMinutes = maxLifetimeMinutes;
+    }
+
+    public int getIdleMinutes() {
+        return IDLE_MINUTES;
+    }
+
+    /**
+     * @return the number of builds after which the agent is terminated.
+     */
+    public int getMaxBuilds() {
+        return Math.max(1, maxBuilds);
+    }
+
+    /**
+     * @return the minutes after which the agent is terminated once its running builds are done, 0 for no limit.
+     */
+    public int getMaxLifetimeMinutes() {
+        return Math.max(0, maxLifetimeMinutes);
+    }
+
+    public boolean isWipeWorkspace() {
+        return wipeWorkspace;
+    }
+
+    @DataBoundSetter
+    public void setWipeWorkspace(boolean wipeWorkspace) {
+        this.wipeWorkspace = wipeWorkspace;
+    }
+
+    /**
+     * @return how long the agent is kept after its last build completed, e.g. for post build steps to release it.
+     */
+    public int getGracePeriodSeconds() {
+        return gracePeriodSeconds == null ? DEFAULT_GRACE_PERIOD_SECONDS : Math.max(0, gracePeriodSeconds);
+    }
+
+    @DataBoundSetter
+    public void setGracePeriodSeconds(int gracePeriodSeconds) {
+        this.gracePeriodSeconds = gracePeriodSeconds;
+    }
+
+    boolean isUsedUp(int completedBuilds, long lifetimeMillis) {
+        return completedBuilds >= getMaxBuilds()
+                || getMaxLifetimeMinutes() > 0 && lifetimeMillis >= TimeUnit.MINUTES.toMillis(getMaxLifetimeMinutes());
+    }
+
+    @Override
+    public long check(final AbstractCloudComputer c) {
+        if (c.getNode() == null) {
+            COMPLETED_BUILDS.remove(c.getName());
+            return 1;
+        }
+        if (WIPING.contains(c.getName())) {
+            return 1;
+        }
+
+        // Used up while other builds were still running on the agent, terminate once the last one is done
+        if (c.isIdle() && !c.isAcceptingTasks()) {
+            LOGGER.log(Level.INFO, "Terminating {0} since all its builds are finished", c.getName());
+            terminate(c, 0);
+            return 1;
+        }
+        if (!c.isOnline()) {
+            return 1;
+        }
+
+        if (isUsedUp(getCompletedBuilds(c), getLifetimeMillis(c))) {
+            // Running builds may finish, the agent is terminated after the last one
+            c.setAcceptingTasks(false);
+            if (c.isIdle()) {
+                LOGGER.log(Level.INFO, "Terminating {0} since it reached its lifetime", c.getName());
+                terminate(c, 0);
+            }
+        } else if (c.isIdle() && !disabled
+                && System.currentTimeMillis() - c.getIdleStartMilliseconds()
+                > TimeUnit.MINUTES.toMillis(IDLE_MINUTES)) {
+            LOGGER.log(Level.INFO, "Disconnecting {0}", c.getName());
+            terminate(c, 0);
+        }
+        return 1;
+    }
+
+    @Override
+    public void start(AbstractCloudComputer c) {
+        if (c.getNode() instanceof EphemeralNode) {
+            throw new IllegalStateException("May not use ReuseRetentionStrategy on an EphemeralNode: " + c);
+        }
+        super.start(c);
+    }
+
+    @Override
+    public void taskAccepted(Executor executor, Queue.Task task) {
+    }
+
+    @Override
+    public void taskCompleted(Executor executor, Queue.Task task, long durationMS) {
+        done(executor);
+    }
+
+    @Override
+    public void taskCompletedWithProblems(Executor executor, Queue.Task task, long durationMS, Throwable problems) {
+        done(executor);
+    }
+
+    private void done(Executor executor) {
+        final AbstractCloudComputer<?> c = (AbstractCloudComputer<?>) executor.getOwner();
+        final int builds = COMPLETED_BUILDS.computeIfAbsent(c.getName(), name -> new AtomicInteger())
+                .incrementAndGet();
+        final boolean usedUp = isUsedUp(builds, getLifetimeMillis(c));
+        if (!usedUp && !wipeWorkspace) {
+            return;
+        }
+
+        c.setAcceptingTasks(false);
+        if (AgentExecutors.hasOtherBusyExecutors(c, executor)) {
+            // The last build to complete terminates the agent or wipes the workspace
+            return;
+        }
+        if (usedUp) {
+            LOGGER.log(Level.INFO, "terminating {0} in {1} s after {2} builds",
+                    new Object[] {c.getName(), getGracePeriodSeconds(), builds});
+            terminate(c, TimeUnit.SECONDS.toMillis(getGracePeriodSeconds()));
+        } else {
+            wipe(c);
+        }
+    }
+
+    private static void wipe(AbstractCloudComputer<?> c) {
+        WIPING.add(c.getName());
+        Computer.threadPoolForRemoting.submit(() -> {
+            try {
+                AbstractCloudSlave node = c.getNode();
+                FilePath workspace = node == null ? null : node.getWorkspaceRoot();
+                if (workspace != null) {
+                    workspace.deleteContents();
+                }
+                c.setAcceptingTasks(true);
+            } catch (IOException | InterruptedException e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                // A dirty workspace is worse than a new container
+                LOGGER.log(Level.WARNING, "Failed to wipe the workspace of {0}, terminating it: {1}",
+                        new Object[] {c.getName(), e});
+                terminate(c, 0);
+            } finally {
+                WIPING.remove(c.getName());
+            }
+        });
+    }
+
+    private static void terminate(AbstractCloudComputer<?> c, long delayMillis) {
+        COMPLETED_BUILDS.remove(c.getName());
+        TerminationScheduler.terminate(c, delayMillis);
+    }
+
+    private static int getCompletedBuilds(AbstractCloudComputer<?> c) {
+        AtomicInteger builds = COMPLETED_BUILDS.get(c.getName());
+        return builds == null ? 0 : builds.get();
+    }
+
+    private static long getLifetimeMillis(AbstractCloudComputer<?> c) {
+        return c.getConnectTime() > 0 ? System.currentTimeMillis() - c.getConnectTime() : 0;
+    }
+
+    @Override
+    public DescriptorImpl getDescriptor() {
+        return DESCRIPTOR;
+    }
+
+    @Restricted(NoExternalUse.class)
+    @Extension
+    public static final DescriptorImpl DESCRIPTOR = new DescriptorImpl();
+
+    public static final class DescriptorImpl extends Descriptor<RetentionStrategy<?>> {
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Container Reuse Retention Strategy";
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.microsoft.jenkins.containeragents.strategy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Forecasts the demand for agents from the recent arrival rate of queue items, per label expression.
+ * <p>
+ * The rate of a label is an exponentially weighted moving average, so a burst shows up after a few arrivals and the
+ * rate decays smoothly once the arrivals stop.
+ */
+public final class DemandForecast {
+    // Time constant of the moving average, an arrival this old counts a third of a new one
+    static final long TIME_CONSTANT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    // Rates below this are dropped so that labels which aren't used anymore don't accumulate
+    private static final double NEGLIGIBLE_PER_MINUTE = 0.001;
+
+    private static final double MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private static final DemandForecast INSTANCE = new DemandForecast(System::currentTimeMillis);
+
+    private final LongSupplier clock;
+
+    private final Map<String, Rate> rates = new ConcurrentHashMap<>();
+
+    DemandForecast(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public static DemandForecast get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records a queue item waiting for an agent.
+     *
+     * @param label the label expression the item is restricted to.
+     */
+    public void recordArrival(String label) {
+        rates.computeIfAbsent(label, key -> new Rate()).add(clock.getAsLong());
+    }
+
+    /**
+     * Current arrival rate of the queue items an agent could take.
+     *
+     * @param labels accepts the label expressions the agent matches.
+     * @return the arrivals per minute.
+     */
+    public double getArrivalsPerMinute(Predicate<String> labels) {
+        final long now = clock.getAsLong();
+        double sum = 0;
+        for (Map.Entry<String, Rate> entry : rates.entrySet()) {
+            double perMinute = entry.getValue().get(now) * MILLIS_PER_MINUTE;
+            if (perMinute < NEGLIGIBLE_PER_MINUTE) {
+                rates.remove(entry.getKey(), entry.getValue());
+            } else if (labels.test(entry.getKey())) {
+                sum += perMinute;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Expected arrivals while a new agent starts, i.e. how many idle agents are worth keeping instead of starting
+     * new ones on demand.
+     *
+     * @param arrivalsPerMinute the arrival rate.
+     * @param startupMillis     the startup time of a new agent.
+     * @return the expected number of arrivals.
+     */
+    public static double getExpectedArrivals(double arrivalsPerMinute, long startupMillis) {
+        return arrivalsPerMinute * startupMillis / MILLIS_PER_MINUTE;
+    }
+
+    /**
+     * Executors worth keeping ready for the expected arrivals while a new agent starts. Pre-provisioning starts and
+     * the predictive retention keeps this same number, so neither undoes the other.
+     *
+     * @param arrivalsPerMinute the arrival rate.
+     * @param startupMillis     the startup time of a new agent.
+     * @return the number of executors, the expected arrivals rounded.
+     */
+    public static int getJustifiedExecutors(double arrivalsPerMinute, long startupMillis) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.round(getExpectedArrivals(arrivalsPerMinute, startupMillis)));
+    }
+
+    private static final class Rate {
+        private double perMilli;
+        private long updated;
+
+        synchronized void add(long now) {
+            perMilli = get(now) + 1.0 / TIME_CONSTANT_MILLIS;
+            updated = Math.max(updated, now);
+        }
+
+        synchronized double get(long now) {
+            return perMilli * Math.exp(-(double) Math.max(0, now - updated) / TIME_CONSTANT_MILLIS);
+        }
+    }
+}
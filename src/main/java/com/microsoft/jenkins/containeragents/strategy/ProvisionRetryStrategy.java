@@ -20,6 +20,15 @@ public class ProvisionRetryStrategy {
         record.setLastFail(System.currentTimeMillis());
     }
 
+    /**
+     * A failure retrying won't fix until the template or the registry is changed, backed off the longest right away.
+     */
+    public synchronized void configurationFailure(String name) {
+        Record record = records.computeIfAbsent(name, key -> new Record());
+        record.setInterval(MAX_INTERVAL);
+        record.setLastFail(System.currentTimeMillis());
+    }
+
     public synchronized void success(String name) {
         records.remove(name);
     }
@@ -0,0 +1,110 @@
+package com.microsoft.jenkins.containeragents.strategy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory provisioning statistics of the templates of one cloud, used to balance the load between templates.
+ */
+public class ProvisionStatistics {
+    // Weight of the latest startup time in the moving average
+    private static final double STARTUP_SMOOTHING = 0.3;
+
+    // Assumed until a template has started an agent
+    static final long DEFAULT_STARTUP_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Map<String, Record> records = new ConcurrentHashMap<>();
+
+    private final AtomicLong provisionCounter = new AtomicLong();
+
+    public void provisionStarted(String name) {
+        Record record = getRecord(name);
+        synchronized (record) {
+            record.inFlight++;
+        }
+    }
+
+    public void provisionSucceeded(String name, long startupMillis) {
+        Record record = getRecord(name);
+        synchronized (record) {
+            record.inFlight = Math.max(0, record.inFlight - 1);
+            record.addStartupSample(startupMillis);
+        }
+    }
+
+    /**
+     * A provision failed for a reason that says nothing about the template, e.g. ARM throttling.
+     *
+     * @param name the template name.
+     */
+    public void provisionFailed(String name) {
+        Record record = getRecord(name);
+        synchronized (record) {
+            record.inFlight = Math.max(0, record.inFlight - 1);
+        }
+    }
+
+    /**
+     * A provision of the template failed. It counts as a startup as long as the timeout, so that a template which
+     * keeps failing ranks behind the ones which start.
+     *
+     * @param name          the template name.
+     * @param timeoutMillis the startup timeout of the template.
+     */
+    public void provisionFailed(String name, long timeoutMillis) {
+        Record record = getRecord(name);
+        synchronized (record) {
+            record.inFlight = Math.max(0, record.inFlight - 1);
+            record.addStartupSample(timeoutMillis);
+        }
+    }
+
+    public int getInFlight(String name) {
+        Record record = records.get(name);
+        return record == null ? 0 : record.inFlight;
+    }
+
+    /**
+     * Moving average of the recent startup times of a template.
+     *
+     * @param name the template name.
+     * @return the average startup time in milliseconds, failed provisions counting as the timeout, or -1 if no
+     * provision of the template has completed yet.
+     */
+    public long getAverageStartupMillis(String name) {
+        Record record = records.get(name);
+        return record == null ? -1 : record.averageStartupMillis;
+    }
+
+    /**
+     * Startup time to plan with for a template, its recent average or a default if it has not started an agent yet.
+     *
+     * @param name the template name.
+     * @return the startup time in milliseconds.
+     */
+    public long getExpectedStartupMillis(String name) {
+        long average = getAverageStartupMillis(name);
+        return average > 0 ? average : DEFAULT_STARTUP_MILLIS;
+    }
+
+    long nextProvisionCount() {
+        return provisionCounter.getAndIncrement();
+    }
+
+    private Record getRecord(String name) {
+        return records.computeIfAbsent(name, key -> new Record());
+    }
+
+    private static final class Record {
+        private volatile int inFlight;
+        private volatile long averageStartupMillis = -1;
+
+        private void addStartupSample(long startupMillis) {
+            averageStartupMillis = averageStartupMillis < 0
+                    ? startupMillis
+                    : (long) (STARTUP_SMOOTHING * startupMillis + (1 - STARTUP_SMOOTHING) * averageStartupMillis);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.microsoft.jenkins.containeragents.strategy;
+
+import com.microsoft.jenkins.containeragents.aci.AciContainerTemplate;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * How a cloud picks the template of a new agent when several healthy templates match the requested label.
+ * <p>
+ * The policies are a fixed set, chosen per cloud.
+ */
+public enum TemplateSelectionPolicy {
+    FIRST_MATCH("First match") {
+        @Override
+        public AciContainerTemplate select(List<AciContainerTemplate> candidates, ProvisionStatistics statistics) {
+            return candidates.get(0);
+        }
+    },
+    ROUND_ROBIN("Round robin") {
+        @Override
+        public AciContainerTemplate select(List<AciContainerTemplate> candidates, ProvisionStatistics statistics) {
+            return candidates.get((int) (statistics.nextProvisionCount() % candidates.size()));
+        }
+    },
+    LEAST_IN_FLIGHT("Least in-flight provisions") {
+        @Override
+        public AciContainerTemplate select(List<AciContainerTemplate> candidates, ProvisionStatistics statistics) {
+            return candidates.stream()
+                    .min(Comparator.comparingInt(template -> statistics.getInFlight(template.getName())))
+                    .orElseThrow();
+        }
+    },
+    WEIGHTED("Weighted") {
+        @Override
+        public AciContainerTemplate select(List<AciContainerTemplate> candidates, ProvisionStatistics statistics) {
+            long totalWeight = candidates.stream().mapToLong(AciContainerTemplate::getWeight).sum();
+            long position = statistics.nextProvisionCount() % totalWeight;
+            for (AciContainerTemplate template : candidates) {
+                position -= template.getWeight();
+                if (position < 0) {
+                    return template;
+                }
+            }
+            return candidates.get(candidates.size() - 1);
+        }
+    },
+    FASTEST_STARTUP("Fastest recent startup") {
+        @Override
+        public AciContainerTemplate select(List<AciContainerTemplate> candidates, ProvisionStatistics statistics) {
+            // A template without startup history is tried by one provision at a time until it is measured
+            for (AciContainerTemplate template : candidates) {
+                if (statistics.getAverageStartupMillis(template.getName()) < 0
+                        && statistics.getInFlight(template.getName()) == 0) {
+                    return template;
+                }
+            }
+            List<AciContainerTemplate> measured = candidates.stream()
+                    .filter(template -> statistics.getAverageStartupMillis(template.getName()) >= 0)
+                    .toList();
+            return (measured.isEmpty() ? candidates : measured).stream()
+                    .min(Comparator.<AciContainerTemplate>comparingLong(template ->
+                                    statistics.getExpectedStartupMillis(template.getName()))
+                            .thenComparingInt(template -> statistics.getInFlight(template.getName())))
+                    .orElseThrow();
+        }
+    };
+
+    private final String displayName;
+
+    TemplateSelectionPolicy(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Pick the template of the next agent.
+     *
+     * @param candidates the healthy templates matching the label, never empty.
+     * @param statistics the provisioning statistics of the cloud.
+     * @return the template to provision the next agent from.
+     */
+    public abstract AciContainerTemplate select(List<AciContainerTemplate> candidates,
+                                                ProvisionStatistics statistics);
+}
@@ -0,0 +1,125 @@
+package com.microsoft.jenkins.containeragents.strategy;
+
+import hudson.model.Computer;
+import hudson.slaves.AbstractCloudComputer;
+import hudson.slaves.AbstractCloudSlave;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Terminates cloud agents after a delay, without parking executor threads or holding the queue lock.
+ * <p>
+ * One scheduler thread keeps the timers, the terminations themselves run on a worker pool since they talk to Azure.
+ * A node is only scheduled once, further requests for it are ignored until its termination ran.
+ */
+final class TerminationScheduler {
+    private static final Logger LOGGER = Logger.getLogger(TerminationScheduler.class.getName());
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Executor worker;
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    TerminationScheduler(ScheduledExecutorService scheduler, Executor worker) {
+        this.scheduler = scheduler;
+        this.worker = worker;
+    }
+
+    static TerminationScheduler get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Stops an agent from accepting tasks and schedules its termination.
+     * <p>
+     * No queue lock is needed, the agent doesn't accept tasks anymore and {@code Jenkins.removeNode} takes the lock
+     * itself.
+     *
+     * @param c           the computer of the agent.
+     * @param delayMillis how long to wait before terminating.
+     */
+    static void terminate(AbstractCloudComputer<?> c, long delayMillis) {
+        c.setAcceptingTasks(false);
+        get().schedule(c.getName(), delayMillis, () -> {
+            AbstractCloudSlave node = c.getNode();
+            if (node != null) {
+                node.terminate();
+            }
+        });
+    }
+
+    /**
+     * Schedules the termination of a node unless it is already scheduled.
+     *
+     * @param nodeName    the node name.
+     * @param delayMillis how long to wait before terminating.
+     * @param termination terminates the node.
+     * @return whether the termination was scheduled by this call.
+     */
+    boolean schedule(String nodeName, long delayMillis, Termination termination) {
+        if (!pending.add(nodeName)) {
+            return false;
+        }
+        try {
+            scheduler.schedule(() -> submit(nodeName, termination), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            pending.remove(nodeName);
+            throw e;
+        }
+        return true;
+    }
+
+    boolean isPending(String nodeName) {
+        return pending.contains(nodeName);
+    }
+
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    private void submit(String nodeName, Termination termination) {
+        try {
+            worker.execute(() -> terminate(nodeName, termination));
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.WARNING, "Failed to submit the termination of {0}: {1}", new Object[]{nodeName, e});
+            pending.remove(nodeName);
+        }
+    }
+
+    private void terminate(String nodeName, Termination termination) {
+        try {
+            termination.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.log(Level.WARNING, "Interrupted while terminating {0}", nodeName);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to terminate {0}: {1}", new Object[]{nodeName, e});
+        } finally {
+            // Terminated nodes are gone, failed ones may be scheduled again by the next retention check
+            pending.remove(nodeName);
+        }
+    }
+
+    interface Termination {
+        void run() throws Exception;
+    }
+
+    private static final class Holder {
+        private static final TerminationScheduler INSTANCE = new TerminationScheduler(
+                Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "ACI agent termination scheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }),
+                Computer.threadPoolForRemoting);
+    }
+}
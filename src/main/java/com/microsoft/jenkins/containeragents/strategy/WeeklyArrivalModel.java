@@ -0,0 +1,343 @@
+package com.microsoft.jenkins.containeragents.strategy;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Learns the arrival rate of queue items per label expression and hour of the week, to forecast daily and weekly
+ * peaks.
+ * <p>
+ * Every hour of the week keeps a moving average of the arrivals in that hour over the past weeks. Hours without
+ * arrivals count as zero, so a pattern which stops fades out over a few weeks. The forecasts of the last day are
+ * kept next to the actual arrivals, to check how well the model predicts the load. The model is saved in the Jenkins
+ * home every few minutes and on shutdown, so a restart doesn't lose the weeks learned.
+ */
+public final class WeeklyArrivalModel {
+    private static final Logger LOGGER = Logger.getLogger(WeeklyArrivalModel.class.getName());
+
+    static final int HOURS_PER_WEEK = 168;
+
+    private static final int HISTORY_HOURS = 24;
+
+    private static final int MAX_CATCH_UP_HOURS = 52 * HOURS_PER_WEEK;
+
+    // Weight of the latest week in the average of an hour of the week
+    private static final double SMOOTHING = 0.3;
+
+    private static final long MILLIS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private static final double MINUTES_PER_HOUR = 60;
+
+    private static final WeeklyArrivalModel INSTANCE =
+            new WeeklyArrivalModel(System::currentTimeMillis, ZoneId.systemDefault());
+
+    private final LongSupplier clock;
+
+    private final ZoneId zone;
+
+    private final Map<String, LabelModel> labels = new ConcurrentHashMap<>();
+
+    WeeklyArrivalModel(LongSupplier clock, ZoneId zone) {
+        this.clock = clock;
+        this.zone = zone;
+    }
+
+    public static WeeklyArrivalModel get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Saves the averages and outcomes of all labels.
+     *
+     * @param file the file to write.
+     * @throws IOException if writing fails.
+     */
+    public void save(XmlFile file) throws IOException {
+        Map<String, LabelModel> copy = new HashMap<>();
+        labels.forEach((label, model) -> copy.put(label, model.copy()));
+        file.write(new State(copy));
+    }
+
+    /**
+     * Restores the labels saved by {@link #save(XmlFile)}, hours passed since are folded in as without arrivals.
+     *
+     * @param file the file to read, may be missing.
+     * @throws IOException if reading fails.
+     */
+    public void load(XmlFile file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        if (file.read() instanceof State state && state.labels != null) {
+            labels.putAll(state.labels);
+        }
+    }
+
+    private static XmlFile getConfigFile() {
+        return new XmlFile(Jenkins.XSTREAM2, new File(Jenkins.get().getRootDir(), WeeklyArrivalModel.class.getName()
+                + ".xml"));
+    }
+
+    @Initializer(after = InitMilestone.JOB_CONFIG_ADAPTED)
+    public static void loadOnStartup() {
+        try {
+            INSTANCE.load(getConfigFile());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "WeeklyArrivalModel: failed to load the arrival model", e);
+        }
+    }
+
+    @Terminator
+    public static void saveOnShutdown() {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return;
+        }
+        try {
+            INSTANCE.save(getConfigFile());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "WeeklyArrivalModel: failed to save the arrival model", e);
+        }
+    }
+
+    /**
+     * Records a queue item waiting for an agent.
+     *
+     * @param label the label expression the item is restricted to.
+     */
+    public void recordArrival(String label) {
+        labels.computeIfAbsent(label, key -> new LabelModel()).record(getHour(clock.getAsLong()));
+    }
+
+    /**
+     * @return the label expressions with recorded arrivals.
+     */
+    public Set<String> getLabels() {
+        return labels.keySet();
+    }
+
+    /**
+     * Forecast arrival rate of a label in the hour of the week of the given time.
+     *
+     * @param label the label expression.
+     * @param time  the time in epoch milliseconds, usually a little ahead of now.
+     * @return the arrivals per minute, 0 if the hour wasn't observed yet.
+     */
+    public double getForecastPerMinute(String label, long time) {
+        LabelModel model = labels.get(label);
+        if (model == null) {
+            return 0;
+        }
+        return model.forecast(getHour(clock.getAsLong()), getHour(time)) / MINUTES_PER_HOUR;
+    }
+
+    /**
+     * Forecast arrival rate of the queue items an agent could take.
+     *
+     * @param matching accepts the label expressions the agent matches.
+     * @param time     the time in epoch milliseconds.
+     * @return the arrivals per minute.
+     */
+    public double getForecastPerMinute(Predicate<String> matching, long time) {
+        double sum = 0;
+        for (String label : labels.keySet()) {
+            if (matching.test(label)) {
+                sum += getForecastPerMinute(label, time);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * The forecast and actual arrivals of the hours of the last day which had a forecast.
+     *
+     * @param label the label expression.
+     * @return the outcomes, oldest first.
+     */
+    public List<HourlyOutcome> getOutcomes(String label) {
+        LabelModel model = labels.get(label);
+        return model == null ? List.of() : model.getOutcomes(getHour(clock.getAsLong()));
+    }
+
+    /**
+     * @param label the label expression.
+     * @return the forecast of the next hour and the accuracy over the last day.
+     */
+    public String getSummary(String label) {
+        final long now = clock.getAsLong();
+        final double next = getForecastPerMinute(label, now + MILLIS_PER_HOUR) * MINUTES_PER_HOUR;
+        final List<HourlyOutcome> outcomes = getOutcomes(label);
+        double forecast = 0;
+        long actual = 0;
+        double error = 0;
+        for (HourlyOutcome outcome : outcomes) {
+            forecast += outcome.getForecast();
+            actual += outcome.getActual();
+            error += Math.abs(outcome.getForecast() - outcome.getActual());
+        }
+        return String.format("next hour %.1f forecast, last %d hours %.1f forecast / %d actual "
+                        + "(mean absolute error %.1f per hour)",
+                next, outcomes.size(), forecast, actual, outcomes.isEmpty() ? 0 : error / outcomes.size());
+    }
+
+    // Hours since the epoch in the local time zone, so that the hours of the week follow the working days
+    private long getHour(long time) {
+        long offset = TimeUnit.SECONDS.toMillis(
+                zone.getRules().getOffset(Instant.ofEpochMilli(time)).getTotalSeconds());
+        return Math.floorDiv(time + offset, MILLIS_PER_HOUR);
+    }
+
+    /**
+     * Arrivals of one hour, next to the arrivals forecast for it.
+     */
+    public static final class HourlyOutcome {
+        private final long hour;
+        private final double forecast;
+        private final int actual;
+
+        HourlyOutcome(long hour, double forecast, int actual) {
+            this.hour = hour;
+            this.forecast = forecast;
+            this.actual = actual;
+        }
+
+        /**
+         * @return the hour since the epoch, in the local time zone.
+         */
+        public long getHour() {
+            return hour;
+        }
+
+        public double getForecast() {
+            return forecast;
+        }
+
+        public int getActual() {
+            return actual;
+        }
+    }
+
+    /**
+     * Saves the model every few minutes, so a crash loses little of it.
+     */
+    @Extension
+    public static final class Saver extends AsyncPeriodicWork {
+        private static final long RECURRENCE_PERIOD_IN_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+        public Saver() {
+            super("ACI Arrival Model Saver");
+        }
+
+        @Override
+        protected void execute(TaskListener listener) throws IOException {
+            if (!INSTANCE.labels.isEmpty()) {
+                INSTANCE.save(getConfigFile());
+            }
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return RECURRENCE_PERIOD_IN_MILLIS;
+        }
+    }
+
+    // The saved form of the model, without the clock and time zone
+    private static final class State {
+        private final Map<String, LabelModel> labels;
+
+        State(Map<String, LabelModel> labels) {
+            this.labels = labels;
+        }
+    }
+
+    private static final class LabelModel {
+        private final double[] averages = new double[HOURS_PER_WEEK];
+        private final Deque<HourlyOutcome> outcomes = new ArrayDeque<>();
+        private long currentHour = -1;
+        private int currentCount;
+
+        LabelModel() {
+            Arrays.fill(averages, Double.NaN);
+        }
+
+        synchronized LabelModel copy() {
+            LabelModel copy = new LabelModel();
+            System.arraycopy(averages, 0, copy.averages, 0, HOURS_PER_WEEK);
+            copy.outcomes.addAll(outcomes);
+            copy.currentHour = currentHour;
+            copy.currentCount = currentCount;
+            return copy;
+        }
+
+        synchronized void record(long hour) {
+            roll(hour);
+            currentCount++;
+        }
+
+        synchronized double forecast(long now, long hour) {
+            roll(now);
+            double average = averages[(int) Math.floorMod(hour, (long) HOURS_PER_WEEK)];
+            return Double.isNaN(average) ? 0 : average;
+        }
+
+        synchronized List<HourlyOutcome> getOutcomes(long now) {
+            roll(now);
+            return new ArrayList<>(outcomes);
+        }
+
+        private void roll(long hour) {
+            if (currentHour < 0) {
+                currentHour = hour;
+                return;
+            }
+            if (hour <= currentHour) {
+                return;
+            }
+            fold(currentHour, currentCount);
+            // After a year without arrivals the averages are as good as zero, no need to fold more
+            for (long h = Math.max(currentHour + 1, hour - MAX_CATCH_UP_HOURS); h < hour; h++) {
+                fold(h, 0);
+            }
+            currentHour = hour;
+            currentCount = 0;
+        }
+
+        private void fold(long hour, int count) {
+            final int slot = (int) Math.floorMod(hour, (long) HOURS_PER_WEEK);
+            final double average = averages[slot];
+            if (Double.isNaN(average)) {
+                averages[slot] = count;
+                return;
+            }
+            outcomes.addLast(new HourlyOutcome(hour, average, count));
+            while (outcomes.size() > HISTORY_HOURS) {
+                outcomes.removeFirst();
+            }
+            averages[slot] = SMOOTHING * count + (1 - SMOOTHING) * average;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import com.microsoft.azure.util.AzureBaseCredentials;
 import com.microsoft.azure.util.AzureCredentialUtil;
 import com.microsoft.azure.util.AzureCredentials;
 import com.microsoft.jenkins.containeragents.Messages;
+import com.microsoft.jenkins.containeragents.helper.ArmRateLimitPolicy;
 import hudson.util.ListBoxModel;
 import io.jenkins.plugins.azuresdk.HttpClientRetriever;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -84,6 +85,7 @@ public final class AzureContainerUtils {
         return AzureResourceManager
                 .configure()
                 .withHttpClient(HttpClientRetriever.get())
+                .withPolicy(new ArmRateLimitPolicy(subscriptionId))
                 .authenticate(tokenCredential, profile)
                 .withSubscription(subscriptionId);
     }
@@ -10,8 +10,17 @@ public final class Constants {
 
     public static final String AI_ACI_CPU_CORE = "CpuCores";
 
+    public static final String TAG_JENKINS_INSTANCE = "JenkinsInstance";
+
+    public static final String TAG_JENKINS_CLOUD = "JenkinsCloud";
+
     public static final int ACI_RANDOM_NAME_LENGTH = 5;
 
+    // Names of the ACI usages of a region which limit how many agents can start
+    public static final String ACI_QUOTA_CORES = "StandardCores";
+
+    public static final String ACI_QUOTA_CONTAINER_GROUPS = "ContainerGroups";
+
     public static final int ACI_DEPLOYMENT_RANDOM_NAME_LENGTH = 8;
 
     public static final int ACI_VOLUME_NAME_LENGTH = 3;
@@ -24,6 +33,10 @@ public final class Constants {
 
     public static final int SSH_PORT_MAX = 65535;
 
+    public static final int DEFAULT_SSH_PORT = 22;
+
+    public static final int DEFAULT_SSH_TIMEOUT_MINUTES = 10;
+
     public static final int MILLIS_IN_SECOND = 1000;
 
     public static final int MILLIS_IN_MINUTE = 60 * MILLIS_IN_SECOND;
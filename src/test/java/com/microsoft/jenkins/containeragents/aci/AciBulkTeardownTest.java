@@ -0,0 +1,41 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+class AciBulkTeardownTest {
+    private static final String INSTANCE = "instance";
+
+    @Test
+    void ownsContainerGroupsTaggedWithTheCloud() {
+        Map<String, String> tags = Map.of("JenkinsInstance", INSTANCE, "JenkinsCloud", "aci");
+
+        assertThat(AciBulkTeardown.isOwned(tags, INSTANCE, "aci", true, Set.of(), "agent-1"), equalTo(true));
+        assertThat(AciBulkTeardown.isOwned(tags, INSTANCE, "other", false, Set.of("agent-1"), "agent-1"),
+                equalTo(false));
+    }
+
+    @Test
+    void ignoresContainerGroupsOfOtherInstances() {
+        Map<String, String> tags = Map.of("JenkinsInstance", "another", "JenkinsCloud", "aci");
+
+        assertThat(AciBulkTeardown.isOwned(tags, INSTANCE, "aci", false, Set.of("agent-1"), "agent-1"),
+                equalTo(false));
+        assertThat(AciBulkTeardown.isOwned(null, INSTANCE, "aci", false, Set.of(), "agent-1"), equalTo(false));
+    }
+
+    @Test
+    void ownsUntaggedContainerGroupsOnlyIfTheResourceGroupIsNotShared() {
+        Map<String, String> tags = Map.of("JenkinsInstance", INSTANCE);
+
+        assertThat(AciBulkTeardown.isOwned(tags, INSTANCE, "aci", false, Set.of(), "agent-1"), equalTo(true));
+        assertThat(AciBulkTeardown.isOwned(tags, INSTANCE, "aci", true, Set.of(), "agent-1"), equalTo(false));
+        assertThat(AciBulkTeardown.isOwned(tags, INSTANCE, "aci", true, Set.of("agent-1"), "agent-1"),
+                equalTo(true));
+    }
+}
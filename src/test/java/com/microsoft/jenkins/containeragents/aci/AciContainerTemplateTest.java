@@ -15,4 +15,30 @@ class AciContainerTemplateTest {
 
         assertThat(templateUnderTest.getImage(), equalTo("image"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void numExecutorsDefaultsToOne() {
+        AciContainerTemplate templateUnderTest = new AciContainerTemplate("name", "label", 100,
+                "osType", "image", "command" , "rootFs", null, null,
+                null, null, null, "cpu", "memory");
+
+        assertThat(templateUnderTest.getNumExecutors(), equalTo(1));
+        templateUnderTest.setNumExecutors(0);
+        assertThat(templateUnderTest.getNumExecutors(), equalTo(1));
+        templateUnderTest.setNumExecutors(4);
+        assertThat(templateUnderTest.getNumExecutors(), equalTo(4));
+    }
+
+    @Test
+    void maxInstancesDefaultsToUnlimited() {
+        AciContainerTemplate templateUnderTest = new AciContainerTemplate("name", "label", 100,
+                "osType", "image", "command" , "rootFs", null, null,
+                null, null, null, "cpu", "memory");
+
+        assertThat(templateUnderTest.getMaxInstances(), equalTo(0));
+        templateUnderTest.setMaxInstances(-1);
+        assertThat(templateUnderTest.getMaxInstances(), equalTo(0));
+        templateUnderTest.setMaxInstances(5);
+        assertThat(templateUnderTest.getMaxInstances(), equalTo(5));
+    }
+}
@@ -0,0 +1,29 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+class AciProvisioningResultTest {
+
+    @Test
+    void readsIpAddressFromOutputs() {
+        Object outputs = Map.of("containerIPv4Address", Map.of("type", "String", "value", "10.0.0.4"));
+        AciProvisioningResult result = new AciProvisioningResult("deploy", "Succeeded", outputs);
+
+        assertThat(result.getIpAddress(), equalTo("10.0.0.4"));
+        assertThat(result.getOutputs(), equalTo(Map.of("containerIPv4Address", "10.0.0.4")));
+        assertThat(result.getProvisioningState(), equalTo("Succeeded"));
+    }
+
+    @Test
+    void ipAddressIsNullWithoutOutput() {
+        assertThat(new AciProvisioningResult("deploy", "Succeeded", null).getIpAddress(), nullValue());
+        assertThat(new AciProvisioningResult("deploy", "Succeeded",
+                Map.of("containerIPv4Address", Map.of("type", "String", "value", ""))).getIpAddress(), nullValue());
+    }
+}
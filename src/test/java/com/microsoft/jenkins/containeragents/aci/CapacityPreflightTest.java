@@ -0,0 +1,88 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+class CapacityPreflightTest {
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private CapacityPreflight.Capacity capacity = new CapacityPreflight.Capacity(10, 4, Map.of("rg/vnet/subnet", 2));
+
+    private final CapacityPreflight preflight = new CapacityPreflight(() -> {
+        loads.incrementAndGet();
+        return capacity;
+    }, Runnable::run, clock::get);
+
+    @Test
+    void headroomIsTheScarcestResource() {
+        assertThat(preflight.getHeadroom(2, null), equalTo(4));
+        assertThat(preflight.getHeadroom(4, null), equalTo(2));
+        assertThat(preflight.getHeadroom(1, "rg/vnet/subnet"), equalTo(2));
+        assertThat(preflight.getHeadroom(1, "rg/vnet/other"), equalTo(4));
+    }
+
+    @Test
+    void reservationsCountUntilReleased() {
+        CapacityPreflight.Reservation first = preflight.tryReserve(4, null);
+        assertThat(first, notNullValue());
+        assertThat(preflight.tryReserve(4, null), notNullValue());
+        assertThat(preflight.tryReserve(4, null), nullValue());
+        assertThat(preflight.getHeadroom(2, null), equalTo(1));
+
+        clock.addAndGet(CapacityPreflight.REFRESH_MILLIS);
+        assertThat(preflight.getHeadroom(2, null), equalTo(1));
+
+        first.release();
+        first.release();
+        assertThat(preflight.getHeadroom(2, null), equalTo(3));
+    }
+
+    @Test
+    void reservesSubnetAddresses() {
+        CapacityPreflight.Reservation first = preflight.tryReserve(1, "rg/vnet/subnet");
+        assertThat(first, notNullValue());
+        assertThat(preflight.tryReserve(1, "rg/vnet/subnet"), notNullValue());
+        assertThat(preflight.tryReserve(1, "rg/vnet/subnet"), nullValue());
+        assertThat(preflight.tryReserve(1, null), notNullValue());
+
+        first.release();
+        assertThat(preflight.getHeadroom(1, "rg/vnet/subnet"), equalTo(1));
+    }
+
+    @Test
+    void loadsAtMostEveryRefreshInterval() {
+        preflight.getHeadroom(1, null);
+        preflight.getHeadroom(1, null);
+        assertThat(loads.get(), equalTo(1));
+
+        clock.addAndGet(CapacityPreflight.REFRESH_MILLIS);
+        preflight.getHeadroom(1, null);
+        assertThat(loads.get(), equalTo(2));
+    }
+
+    @Test
+    void unlimitedWhileLoadingOrAfterFailure() {
+        List<Runnable> pending = new ArrayList<>();
+        CapacityPreflight background = new CapacityPreflight(() -> capacity, pending::add, clock::get);
+        assertThat(background.getHeadroom(1, null), equalTo(Integer.MAX_VALUE));
+        pending.get(0).run();
+        assertThat(background.getHeadroom(1, null), equalTo(4));
+
+        CapacityPreflight failing = new CapacityPreflight(() -> {
+            throw new IllegalStateException("throttled");
+        }, Runnable::run, clock::get);
+        assertThat(failing.getHeadroom(1, null), equalTo(Integer.MAX_VALUE));
+    }
+}
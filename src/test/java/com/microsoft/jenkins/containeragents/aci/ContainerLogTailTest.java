@@ -0,0 +1,60 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.startsWith;
+
+class ContainerLogTailTest {
+    private final AtomicLong clock = new AtomicLong();
+
+    private final ContainerLogTail tail = new ContainerLogTail(clock::get);
+
+    @Test
+    void forwardsOnlyNewLines() {
+        assertThat(tail.update("t1 starting\nt2 pulling\n"), contains("t1 starting", "t2 pulling"));
+        assertThat(tail.update("t1 starting\nt2 pulling\nt3 done\n"), contains("t3 done"));
+        assertThat(tail.update("t1 starting\nt2 pulling\nt3 done\n"), empty());
+        assertThat(tail.getRecentLines(), contains("t1 starting", "t2 pulling", "t3 done"));
+    }
+
+    @Test
+    void marksLinesMissedBetweenFetches() {
+        tail.update("t1 a\n");
+
+        assertThat(tail.update("t5 e\nt6 f\n"), contains("...", "t5 e", "t6 f"));
+    }
+
+    @Test
+    void fetchesAtMostEveryInterval() {
+        assertThat(tail.isDue(), equalTo(true));
+        tail.update(null);
+        assertThat(tail.isDue(), equalTo(false));
+
+        clock.addAndGet(ContainerLogTail.MIN_INTERVAL_MILLIS);
+        assertThat(tail.isDue(), equalTo(true));
+    }
+
+    @Test
+    void stopsAfterMaxBytes() {
+        String line = "x".repeat(1023);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < ContainerLogTail.MAX_BYTES / 1024 + 1; i++) {
+            content.append(line).append('\n');
+        }
+
+        List<String> lines = tail.update(content.toString());
+
+        assertThat(lines, hasSize(ContainerLogTail.MAX_BYTES / 1024 + 1));
+        assertThat(lines.get(lines.size() - 1), startsWith("... log truncated"));
+        clock.addAndGet(ContainerLogTail.MIN_INTERVAL_MILLIS);
+        assertThat(tail.isDue(), equalTo(false));
+    }
+}
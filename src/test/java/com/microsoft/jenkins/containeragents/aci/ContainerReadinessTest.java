@@ -0,0 +1,55 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import com.azure.json.JsonProviders;
+import com.azure.json.JsonReader;
+import com.azure.resourcemanager.containerinstance.models.ContainerPropertiesInstanceView;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+class ContainerReadinessTest {
+    private static final String RUNNING = "\"currentState\": {\"state\": \"Running\"}";
+
+    private final ContainerReadiness readiness = new ContainerReadiness();
+
+    @Test
+    void readyOnceProbeFailuresStopGrowing() throws IOException {
+        assertThat(readiness.observe(view(RUNNING + ", \"events\": [" + unhealthy("Readiness", 2) + "]")),
+                equalTo(false));
+        assertThat(readiness.observe(view(RUNNING + ", \"events\": [" + unhealthy("Readiness", 3) + "]")),
+                equalTo(false));
+        assertThat(readiness.observe(view(RUNNING + ", \"events\": [" + unhealthy("Readiness", 3) + "]")),
+                equalTo(true));
+    }
+
+    @Test
+    void notReadyUnlessRunning() throws IOException {
+        assertThat(readiness.observe(view(RUNNING)), equalTo(false));
+        assertThat(readiness.observe(view("\"currentState\": {\"state\": \"Waiting\"}")), equalTo(false));
+        assertThat(readiness.observe(view(RUNNING)), equalTo(false));
+        assertThat(readiness.observe(null), equalTo(false));
+    }
+
+    @Test
+    void countsFailuresPerProbe() throws IOException {
+        ContainerPropertiesInstanceView view = view(RUNNING + ", \"events\": [" + unhealthy("Readiness", 2) + ", "
+                + unhealthy("Liveness", 4) + ", {\"name\": \"Started\", \"count\": 1}]");
+
+        assertThat(ContainerReadiness.countProbeFailures(view, ContainerReadiness.READINESS), equalTo(2));
+        assertThat(ContainerReadiness.countProbeFailures(view, ContainerReadiness.LIVENESS), equalTo(4));
+    }
+
+    private static String unhealthy(String probe, int count) {
+        return String.format("{\"name\": \"Unhealthy\", \"count\": %d, \"message\": \"%s probe failed\"}",
+                count, probe);
+    }
+
+    private static ContainerPropertiesInstanceView view(String properties) throws IOException {
+        try (JsonReader reader = JsonProviders.createReader("{" + properties + "}")) {
+            return ContainerPropertiesInstanceView.fromJson(reader);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.microsoft.jenkins.containeragents.aci;
+
+import com.azure.json.JsonProviders;
+import com.azure.json.JsonReader;
+import com.azure.resourcemanager.containerinstance.models.ContainerPropertiesInstanceView;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+class ContainerStartExceptionTest {
+
+    @Test
+    void startingContainerIsNoFailure() throws IOException {
+        assertThat(detect("{\"restartCount\": 0, \"currentState\": {\"state\": \"Waiting\"},"
+                + " \"events\": [{\"name\": \"Pulling\", \"message\": \"pulling image \\\"jenkins/agent\\\"\"}]}"),
+                nullValue());
+        assertThat(ContainerStartException.detect("agent", null), nullValue());
+    }
+
+    @Test
+    void detectsImagePullFailure() throws IOException {
+        ContainerStartException failure = detect("{\"events\": [{\"name\": \"Failed\","
+                + " \"message\": \"Failed to pull image \\\"jenkins/missing\\\": manifest unknown\"}]}");
+
+        assertThat(failure.getMessage(), containsString("failed to pull the image"));
+        assertThat(failure.isConfigurationError(), equalTo(true));
+    }
+
+    @Test
+    void detectsRegistryAuthenticationFailure() throws IOException {
+        ContainerStartException failure = detect("{\"events\": [{\"name\": \"Failed\","
+                + " \"message\": \"Failed to pull image: unauthorized: authentication required\"}]}");
+
+        assertThat(failure.getMessage(), containsString("registry authentication failed"));
+        assertThat(failure.isConfigurationError(), equalTo(true));
+    }
+
+    @Test
+    void transientPullFailureIsNoConfigurationError() throws IOException {
+        ContainerStartException rateLimited = detect("{\"events\": [{\"name\": \"Failed\","
+                + " \"message\": \"Failed to pull image \\\"jenkins/agent\\\": toomanyrequests: rate limit\"}]}");
+        assertThat(rateLimited.getMessage(), containsString("failed to pull the image"));
+        assertThat(rateLimited.isConfigurationError(), equalTo(false));
+
+        ContainerStartException timeout = detect("{\"events\": [{\"name\": \"BackOff\","
+                + " \"message\": \"Back-off pulling image: context deadline exceeded\"}]}");
+        assertThat(timeout.getMessage(), containsString("backing off pulling the image"));
+        assertThat(timeout.isConfigurationError(), equalTo(false));
+    }
+
+    @Test
+    void authenticationWordsOutsideOfPullEventsAreNoFailure() throws IOException {
+        assertThat(detect("{\"events\": [{\"name\": \"Failed\","
+                + " \"message\": \"Readiness probe failed: HTTP 401 Unauthorized\"}]}"), nullValue());
+        assertThat(detect("{\"events\": [{\"name\": \"Started\","
+                + " \"message\": \"Started container, access denied warnings are expected\"}]}"), nullValue());
+    }
+
+    @Test
+    void detectsCrashLoop() throws IOException {
+        assertThat(detect("{\"restartCount\": 1, \"events\": [{\"name\": \"BackOff\","
+                + " \"message\": \"Back-off restarting failed container\"}]}"), nullValue());
+
+        ContainerStartException backOff = detect("{\"restartCount\": 3, \"events\": [{\"name\": \"BackOff\","
+                + " \"message\": \"Back-off restarting failed container\"}]}");
+        assertThat(backOff.getMessage(), containsString("backing off restarting"));
+        assertThat(backOff.isConfigurationError(), equalTo(false));
+
+        ContainerStartException restarts = detect("{\"restartCount\": 3,"
+                + " \"previousState\": {\"state\": \"Terminated\", \"exitCode\": 1}}");
+        assertThat(restarts.getMessage(), containsString("restarted 3 times: last exit code 1"));
+    }
+
+    @Test
+    void detectsTermination() throws IOException {
+        ContainerStartException failure = detect("{\"currentState\": {\"state\": \"Terminated\", \"exitCode\": 127}}");
+
+        assertThat(failure.getMessage(), equalTo("ACI container agent terminated: exit code 127"));
+    }
+
+    private static ContainerStartException detect(String instanceView) throws IOException {
+        try (JsonReader reader = JsonProviders.createReader(instanceView)) {
+            return ContainerStartException.detect("agent", ContainerPropertiesInstanceView.fromJson(reader));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.microsoft.jenkins.containeragents.aci.usage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+
+class JarCacheStatisticsTest {
+
+    @Test
+    void emptyStatistics() {
+        JarCacheStatistics statistics = new JarCacheStatistics();
+
+        assertThat(statistics.getAgents(), equalTo(0L));
+        assertThat(statistics.getHitRate(), equalTo(0.0));
+    }
+
+    @Test
+    void addsTheActivityBetweenSnapshots() {
+        JarCacheStatistics statistics = new JarCacheStatistics();
+        statistics.add(new JarCacheSnapshot(10, 5, 20, 2000), new JarCacheSnapshot(110, 85, 0, 0));
+        statistics.add(new JarCacheSnapshot(0, 0, 23, 2600), new JarCacheSnapshot(100, 100, 0, 0));
+
+        assertThat(statistics.getAgents(), equalTo(2L));
+        assertThat(statistics.getClassLoads(), equalTo(200L));
+        assertThat(statistics.getCacheHits(), equalTo(180L));
+        assertThat(statistics.getHitRate(), closeTo(0.9, 1e-9));
+        assertThat(statistics.getBytesCached(), equalTo(4600L));
+    }
+
+    @Test
+    void concurrentAgentsCountTheVolumeGrowthOnce() {
+        AtomicLong clock = new AtomicLong(JarCacheStatistics.WINDOW_MILLIS);
+        JarCacheStatistics statistics = new JarCacheStatistics(clock::get);
+        // Two agents online at the same time see the same growth
+        statistics.addVolumeSample(new JarCacheSnapshot(0, 0, 20, 2000));
+        statistics.addVolumeSample(new JarCacheSnapshot(0, 0, 20, 2000));
+        statistics.addVolumeSample(new JarCacheSnapshot(0, 0, 23, 2600));
+        statistics.addVolumeSample(new JarCacheSnapshot(0, 0, 23, 2600));
+
+        assertThat(statistics.getJarsDownloaded(), equalTo(3L));
+        assertThat(statistics.getBytesDownloaded(), equalTo(600L));
+
+        clock.addAndGet(JarCacheStatistics.WINDOW_MILLIS + 1);
+        assertThat(statistics.getJarsDownloaded(), equalTo(0L));
+    }
+
+    @Test
+    void sharedCacheShrinkingIsNotNegative() {
+        JarCacheStatistics statistics = new JarCacheStatistics();
+        statistics.addVolumeSample(new JarCacheSnapshot(0, 0, 30, 3000));
+        statistics.addVolumeSample(new JarCacheSnapshot(0, 0, 25, 2500));
+
+        assertThat(statistics.getJarsDownloaded(), equalTo(0L));
+        assertThat(statistics.getBytesDownloaded(), equalTo(0L));
+    }
+}
@@ -0,0 +1,38 @@
+package com.microsoft.jenkins.containeragents.aci.usage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UsageStatisticsTest {
+
+    @Test
+    void percentilesAndRecommendation() {
+        UsageStatistics statistics = new UsageStatistics();
+        for (int i = 1; i <= 100; i++) {
+            statistics.addCpu(i / 100.0);
+            statistics.addMemory(i / 50.0);
+        }
+
+        assertEquals(100, statistics.getSampleCount());
+        assertEquals(0.5, statistics.getCpuP50(), 0.001);
+        assertEquals(0.95, statistics.getCpuP95(), 0.001);
+        assertEquals(1.0, statistics.getCpuMax(), 0.001);
+        assertEquals(2.0, statistics.getMemoryMax(), 0.001);
+
+        // 0.95 * 1.2 = 1.14 cores, rounded up to 1.5
+        assertEquals(1.5, statistics.getRecommendedCpu(), 0.001);
+        // 2.0 * 1.2 = 2.4 GiB, rounded up to 2.5
+        assertEquals(2.5, statistics.getRecommendedMemory(), 0.001);
+    }
+
+    @Test
+    void idleContainerGetsSmallestSize() {
+        UsageStatistics statistics = new UsageStatistics();
+        statistics.addCpu(0.01);
+        statistics.addMemory(0.1);
+
+        assertEquals(0.5, statistics.getRecommendedCpu(), 0.001);
+        assertEquals(0.5, statistics.getRecommendedMemory(), 0.001);
+    }
+}
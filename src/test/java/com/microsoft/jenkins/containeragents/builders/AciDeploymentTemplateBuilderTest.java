@@ -1,9 +1,14 @@
 package com.microsoft.jenkins.containeragents.builders;
 
+import com.microsoft.jenkins.containeragents.PodEnvVar;
 import com.microsoft.jenkins.containeragents.aci.AciAgent;
 import com.microsoft.jenkins.containeragents.aci.AciCloud;
 import com.microsoft.jenkins.containeragents.aci.AciContainerTemplate;
+import com.microsoft.jenkins.containeragents.aci.AciInitContainer;
+import com.microsoft.jenkins.containeragents.aci.AciPort;
 import com.microsoft.jenkins.containeragents.aci.AciPrivateIpAddress;
+import com.microsoft.jenkins.containeragents.aci.AciProbe;
+import com.microsoft.jenkins.containeragents.aci.AciSidecarContainer;
 import com.microsoft.jenkins.containeragents.aci.dns.AciDnsConfig;
 import com.microsoft.jenkins.containeragents.aci.dns.AciDnsServer;
 import hudson.slaves.RetentionStrategy;
@@ -38,6 +43,18 @@ class AciDeploymentTemplateBuilderTest {
         builderUnderTest = new AciDeploymentTemplateBuilder(jenkinsFacade);
     }
 
+    @Test
+    void templateWithJarCache() throws IOException {
+        when(agentMock.getJarCachePath()).thenReturn("/jar-cache");
+        AciCloud cloud = new AciCloud("testcloud", "credentialId", "resourceGroup", emptyList());
+
+        AciContainerTemplate template = new AciContainerTemplate("containerName", "label", 100, "linux", "helloworld", "jenkins-agent -jarCache ${jarCache}", "rootFs", emptyList(), emptyList(), emptyList(), emptyList(), new RetentionStrategy.Always(), "cpu", "memory" );
+
+        AciDeploymentTemplateBuilder.AciDeploymentTemplate aciDeploymentTemplate = builderUnderTest.buildDeploymentTemplate(cloud, template, agentMock);
+
+        assertThat(aciDeploymentTemplate.deploymentTemplateAsString(), containsString("\"command\":[\"jenkins-agent\",\"-jarCache\",\"/jar-cache\"]"));
+    }
+
     @Test
     void templateWithVnet() throws IOException {
         AciCloud cloud = new AciCloud("testcloud", "credentialId", "resourceGroup", emptyList());
@@ -144,4 +161,88 @@ class AciDeploymentTemplateBuilderTest {
         assertThat(aciDeploymentTemplate.deploymentTemplateAsString(), not(containsString("\"subnetName\": \"subnet\"")));
         assertThat(aciDeploymentTemplate.deploymentTemplateAsString(), not(containsString("\"subnetIds\":")));
     }
-}
\ No newline at end of file
+
+    @Test
+    void templateWithSidecar() throws IOException {
+        AciCloud cloud = new AciCloud("testcloud", "credentialId", "resourceGroup", emptyList());
+
+        AciContainerTemplate template = new AciContainerTemplate("containerName", "label", 100, "linux", "helloworld", "command", "rootFs", emptyList(), emptyList(), emptyList(), emptyList(), new RetentionStrategy.Always(), "cpu", "memory" );
+        AciSidecarContainer sidecar = new AciSidecarContainer("redis", "redis:7", "0.5", "1");
+        sidecar.setCommand("redis-server --save");
+        sidecar.setPorts(List.of(new AciPort("6379")));
+        sidecar.setEnvVars(List.of(new PodEnvVar("KEY", "value")));
+        template.setSidecars(List.of(sidecar));
+
+        AciDeploymentTemplateBuilder.AciDeploymentTemplate aciDeploymentTemplate = builderUnderTest.buildDeploymentTemplate(cloud, template, agentMock);
+
+        assertThat(aciDeploymentTemplate.deploymentTemplateAsString(), containsString("{\"name\":\"redis\",\"properties\":{\"image\":\"redis:7\","
+                + "\"command\":[\"redis-server\",\"--save\"],\"resources\":{\"requests\":{\"cpu\":\"0.5\",\"memoryInGb\":\"1\"}},"
+                + "\"ports\":[{\"port\":\"6379\"}],\"environmentVariables\":[{\"name\":\"KEY\",\"value\":\"value\"}],"
+                + "\"volumeMounts\":[]}}"));
+        // Sidecar ports are reachable through localhost only, not on the group IP address
+        assertThat(aciDeploymentTemplate.deploymentTemplateAsString(), not(containsString("\"protocol\":\"tcp\",\"port\":\"6379\"")));
+    }
+
+    @Test
+    void templateWithInitContainer() throws IOException {
+        AciCloud cloud = new AciCloud("testcloud", "credentialId", "resourceGroup", emptyList());
+
+        AciContainerTemplate template = new AciContainerTemplate("containerName", "label", 100, "linux", "helloworld", "command", "rootFs", emptyList(), emptyList(), emptyList(), emptyList(), new RetentionStrategy.Always(), "cpu", "memory" );
+        AciInitContainer initContainer = new AciInitContainer("restore-cache", "busybox");
+        initContainer.setCommand("/restore.sh");
+        template.setInitContainers(List.of(initContainer));
+        template.setInitVolumeMountPath("/cache");
+
+        AciDeploymentTemplateBuilder.AciDeploymentTemplate aciDeploymentTemplate = builderUnderTest.buildDeploymentTemplate(cloud, template, agentMock);
+
+        assertThat(aciDeploymentTemplate.deploymentTemplateAsString(), containsString("\"initContainers\":[{\"name\":\"restore-cache\",\"properties\":{\"image\":\"busybox\","
+                + "\"command\":[\"/restore.sh\"],\"environmentVariables\":[],"
+                + "\"volumeMounts\":[{\"name\":\"init-volume\",\"mountPath\":\"/cache\"}]}}]"));
+        assertThat(aciDeploymentTemplate.deploymentTemplateAsString(), containsString("\"volumes\":[{\"name\":\"init-volume\",\"emptyDir\":{}}]"));
+    }
+
+    @Test
+    void templateWithProbes() throws IOException {
+        AciCloud cloud = new AciCloud("testcloud", "credentialId", "resourceGroup", emptyList());
+
+        AciContainerTemplate template = new AciContainerTemplate("containerName", "label", 100, "linux", "helloworld", "command", "rootFs", emptyList(), emptyList(), emptyList(), emptyList(), new RetentionStrategy.Always(), "cpu", "memory" );
+        AciProbe readinessProbe = new AciProbe();
+        readinessProbe.setCommand("test -f /tmp/ready");
+        readinessProbe.setPeriodSeconds(5);
+        template.setReadinessProbe(readinessProbe);
+        AciProbe livenessProbe = new AciProbe();
+        livenessProbe.setHttpPath("/healthz");
+        livenessProbe.setHttpPort("8080");
+        template.setLivenessProbe(livenessProbe);
+
+        String deploymentTemplate = builderUnderTest.buildDeploymentTemplate(cloud, template, agentMock).deploymentTemplateAsString();
+
+        assertThat(deploymentTemplate, containsString("\"readinessProbe\":{\"exec\":{\"command\":[\"test\",\"-f\",\"/tmp/ready\"]},\"initialDelaySeconds\":0,\"periodSeconds\":5,\"failureThreshold\":3}"));
+        assertThat(deploymentTemplate, containsString("\"livenessProbe\":{\"httpGet\":{\"path\":\"/healthz\",\"port\":8080,\"scheme\":\"http\"}"));
+    }
+
+    @Test
+    void templateWithInvalidProbePort() throws IOException {
+        AciCloud cloud = new AciCloud("testcloud", "credentialId", "resourceGroup", emptyList());
+
+        AciContainerTemplate template = new AciContainerTemplate("containerName", "label", 100, "linux", "helloworld", "command", "rootFs", emptyList(), emptyList(), emptyList(), emptyList(), new RetentionStrategy.Always(), "cpu", "memory" );
+        AciProbe livenessProbe = new AciProbe();
+        livenessProbe.setHttpPath("/healthz");
+        livenessProbe.setHttpPort("http");
+        template.setLivenessProbe(livenessProbe);
+
+        String deploymentTemplate = builderUnderTest.buildDeploymentTemplate(cloud, template, agentMock).deploymentTemplateAsString();
+
+        assertThat(deploymentTemplate, containsString("\"httpGet\":{\"path\":\"/healthz\",\"port\":80,"));
+    }
+
+    @Test
+    void templateWithoutProbeCommand() throws IOException {
+        AciCloud cloud = new AciCloud("testcloud", "credentialId", "resourceGroup", emptyList());
+
+        AciContainerTemplate template = new AciContainerTemplate("containerName", "label", 100, "linux", "helloworld", "command", "rootFs", emptyList(), emptyList(), emptyList(), emptyList(), new RetentionStrategy.Always(), "cpu", "memory" );
+        template.setLivenessProbe(new AciProbe());
+
+        assertThat(builderUnderTest.buildDeploymentTemplate(cloud, template, agentMock).deploymentTemplateAsString(), not(containsString("livenessProbe")));
+    }
+}
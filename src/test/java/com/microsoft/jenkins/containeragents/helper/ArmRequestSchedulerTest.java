@@ -0,0 +1,101 @@
+package com.microsoft.jenkins.containeragents.helper;
+
+import com.azure.core.http.HttpMethod;
+import com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Budget;
+import com.microsoft.jenkins.containeragents.helper.ArmRequestScheduler.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArmRequestSchedulerTest {
+
+    private final AtomicLong now = new AtomicLong(1000);
+
+    private final ArmRequestScheduler scheduler = new ArmRequestScheduler(now::get);
+
+    @Test
+    void readsAndWritesHaveSeparateBudgets() {
+        scheduler.updateRemaining(Budget.WRITE, 0);
+
+        assertFalse(scheduler.getBucket(Budget.WRITE).tryAcquire(Priority.PROVISION));
+        assertTrue(scheduler.getBucket(Budget.READ).tryAcquire(Priority.PROVISION));
+    }
+
+    @Test
+    void bucketRefillsOverTime() {
+        ArmRequestScheduler.Bucket reads = scheduler.getBucket(Budget.READ);
+        scheduler.updateRemaining(Budget.READ, 0);
+        assertFalse(reads.tryAcquire(Priority.PROVISION));
+
+        now.addAndGet(1000);
+        assertTrue(reads.tryAcquire(Priority.PROVISION));
+    }
+
+    @Test
+    void cleanupKeepsReserveForProvisioning() {
+        ArmRequestScheduler.Bucket writes = scheduler.getBucket(Budget.WRITE);
+        scheduler.updateRemaining(Budget.WRITE, 10);
+
+        assertFalse(writes.tryAcquire(Priority.CLEANUP));
+        assertTrue(writes.tryAcquire(Priority.PROVISION));
+    }
+
+    @Test
+    void remainingHeaderIsCappedAtCapacity() {
+        ArmRequestScheduler.Bucket reads = scheduler.getBucket(Budget.READ);
+        scheduler.updateRemaining(Budget.READ, 11999);
+        double tokens = reads.getTokens();
+
+        scheduler.updateRemaining(Budget.READ, 11998);
+        assertEquals(tokens, reads.getTokens());
+    }
+
+    @Test
+    void throttlingPausesBudget() {
+        ArmRequestScheduler.Bucket reads = scheduler.getBucket(Budget.READ);
+        scheduler.throttled(Budget.READ, 5000);
+        assertFalse(reads.tryAcquire(Priority.PROVISION));
+
+        now.addAndGet(5000);
+        assertTrue(reads.tryAcquire(Priority.PROVISION));
+    }
+
+    @Test
+    void deletesHaveTheirOwnBudget() {
+        scheduler.updateRemaining(Budget.WRITE, 0);
+
+        assertTrue(scheduler.getBucket(Budget.DELETE).tryAcquire(Priority.PROVISION));
+        assertEquals(Budget.DELETE, ArmRateLimitPolicy.getBudget(HttpMethod.DELETE));
+        assertEquals(Budget.READ, ArmRateLimitPolicy.getBudget(HttpMethod.GET));
+        assertEquals(Budget.WRITE, ArmRateLimitPolicy.getBudget(HttpMethod.PUT));
+    }
+
+    @Test
+    void callIsChargedPerRequest() throws Exception {
+        ArmRequestScheduler.Bucket reads = scheduler.getBucket(Budget.READ);
+        scheduler.updateRemaining(Budget.READ, 100);
+
+        scheduler.run(Budget.READ, Priority.PROVISION, () -> {
+            for (int page = 0; page < 5; page++) {
+                scheduler.charge(Budget.READ);
+            }
+        });
+        assertEquals(95, reads.getTokens());
+    }
+
+    @Test
+    void requestsBeyondTheBudgetDelayLaterCalls() {
+        ArmRequestScheduler.Bucket reads = scheduler.getBucket(Budget.READ);
+        scheduler.updateRemaining(Budget.READ, 0);
+        scheduler.charge(Budget.READ);
+
+        now.addAndGet(40);
+        assertFalse(reads.tryAcquire(Priority.PROVISION));
+        now.addAndGet(40);
+        assertTrue(reads.tryAcquire(Priority.PROVISION));
+    }
+}
@@ -0,0 +1,55 @@
+package com.microsoft.jenkins.containeragents.remote;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+class AgentJarTest {
+
+    private static final String ABC_SHA256 = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @Test
+    void digest() throws IOException {
+        String digest = AgentJar.digest(new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(digest, equalTo(ABC_SHA256));
+        assertThat(AgentJar.getRemotePath(digest), equalTo("agent-ba7816bf8f01cfea.jar"));
+    }
+
+    @Test
+    void launchCommand() {
+        assertThat(AgentJar.getLaunchCommand("agent-ba7816bf8f01cfea.jar", "", false, null),
+                equalTo("java -jar agent-ba7816bf8f01cfea.jar"));
+        assertThat(AgentJar.getLaunchCommand("agent-ba7816bf8f01cfea.jar", " -Xmx512m ", false, ""),
+                equalTo("java -Xmx512m -jar agent-ba7816bf8f01cfea.jar"));
+        assertThat(AgentJar.getLaunchCommand("agent-ba7816bf8f01cfea.jar", "-Xmx512m", true, null),
+                equalTo("java -XX:+AutoCreateSharedArchive -XX:SharedArchiveFile=agent-ba7816bf8f01cfea.jsa"
+                        + " -Xmx512m -jar agent-ba7816bf8f01cfea.jar"));
+        assertThat(AgentJar.getLaunchCommand("agent-ba7816bf8f01cfea.jar", "", false, "/mnt/jar cache"),
+                equalTo("java -jar agent-ba7816bf8f01cfea.jar -jarCache '/mnt/jar cache'"));
+    }
+
+    @Test
+    void parseJavaVersion() {
+        assertThat(AgentJar.parseJavaVersion("openjdk version \"21.0.2\" 2024-01-16\nOpenJDK Runtime Environment"),
+                equalTo(21));
+        assertThat(AgentJar.parseJavaVersion("openjdk version \"17\" 2021-09-14"), equalTo(17));
+        assertThat(AgentJar.parseJavaVersion("java version \"1.8.0_402\""), equalTo(8));
+        assertThat(AgentJar.parseJavaVersion("sh: java: not found"), equalTo(0));
+        assertThat(AgentJar.parseJavaVersion(null), equalTo(0));
+    }
+
+    @Test
+    void parseSha256sum() {
+        assertThat(AgentJar.parseSha256sum(ABC_SHA256.toUpperCase() + "  agent-ba7816bf8f01cfea.jar\n"),
+                equalTo(ABC_SHA256));
+        assertThat(AgentJar.parseSha256sum(""), nullValue());
+        assertThat(AgentJar.parseSha256sum(null), nullValue());
+    }
+}
@@ -0,0 +1,90 @@
+package com.microsoft.jenkins.containeragents.remote;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+
+@Timeout(60)
+class BootstrapUploaderTest {
+
+    @TempDir
+    private Path local;
+
+    @TempDir
+    private Path remote;
+
+    @Test
+    void parseSha256sumOutput() {
+        BootstrapUploader.RemoteState state = BootstrapUploader.parse(
+                "ABCDEF  settings.xml\n0123 *tools/jdk.tar.gz\nbootstrap:gzip\n");
+
+        assertThat(state.getDigests(), hasEntry("settings.xml", "abcdef"));
+        assertThat(state.getDigests(), hasEntry("tools/jdk.tar.gz", "0123"));
+        assertThat(state.hasGzip(), equalTo(true));
+        assertThat(BootstrapUploader.parse("").hasGzip(), equalTo(false));
+    }
+
+    @Test
+    void compressesOnlyUncompressedFiles() {
+        assertThat(BootstrapUploader.isCompressible("settings.xml"), equalTo(true));
+        assertThat(BootstrapUploader.isCompressible("README"), equalTo(true));
+        assertThat(BootstrapUploader.isCompressible("jdk.tar.GZ"), equalTo(false));
+        assertThat(BootstrapUploader.isCompressible("tool.jar"), equalTo(false));
+    }
+
+    @Test
+    void quotesForTheShell() {
+        assertThat(BootstrapUploader.quote("it's here"), equalTo("'it'\\''s here'"));
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void uploadsChangedFilesOnly() throws Exception {
+        Path settings = Files.writeString(local.resolve("settings.xml"), "<settings/>".repeat(1000));
+        Path tool = Files.write(local.resolve("tool.jar"), new byte[]{1, 2, 3});
+        List<BootstrapFile> files = List.of(file(settings, ".m2/settings.xml"), file(tool, "tools/tool.jar"));
+
+        try (EmbeddedSshServer server = new EmbeddedSshServer(remote, 10, true);
+             SSHClient client = server.newClient().connect()) {
+            BootstrapUploader.upload(client, files);
+            assertThat(Files.readString(remote.resolve(".m2/settings.xml")), equalTo(Files.readString(settings)));
+            assertThat(Files.readAllBytes(remote.resolve("tools/tool.jar")), equalTo(new byte[]{1, 2, 3}));
+
+            int channels = server.getChannelCount();
+            BootstrapUploader.upload(client, files);
+            // Only the digest check
+            assertThat(server.getChannelCount(), equalTo(channels + 1));
+
+            Files.writeString(settings, "<settings><offline>true</offline></settings>", StandardCharsets.UTF_8);
+            BootstrapUploader.upload(client, files);
+            assertThat(Files.readString(remote.resolve(".m2/settings.xml")), equalTo(Files.readString(settings)));
+            // Digest check, mkdir and the gzip upload of the changed file
+            assertThat(server.getChannelCount(), equalTo(channels + 4));
+        }
+    }
+
+    private static BootstrapFile file(Path source, String remotePath) {
+        return new BootstrapFile() {
+            @Override
+            public String getSource() {
+                return source.toString();
+            }
+
+            @Override
+            public String getRemotePath() {
+                return remotePath;
+            }
+        };
+    }
+}
@@ -0,0 +1,228 @@
+package com.microsoft.jenkins.containeragents.remote;
+
+import org.apache.sshd.common.channel.Channel;
+import org.apache.sshd.common.channel.ChannelListener;
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.common.session.SessionListener;
+import org.apache.sshd.core.CoreModuleProperties;
+import org.apache.sshd.server.Environment;
+import org.apache.sshd.server.ExitCallback;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.channel.ChannelSession;
+import org.apache.sshd.server.command.Command;
+import org.apache.sshd.server.forward.AcceptAllForwardingFilter;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process SSH server with SFTP rooted at a directory, for testing the SSH client and launcher.
+ * <p>
+ * Supported commands:
+ * <ul>
+ * <li>{@code cat}: copies stdin to stdout until EOF, like a remoting stream.</li>
+ * <li>{@code echo <text>}: prints the text.</li>
+ * <li>{@code warn <text>}: prints the text to stderr.</li>
+ * <li>{@code seq <n>}: prints the numbers from 1 to n, one per line.</li>
+ * <li>{@code exit <status>}: exits with the status.</li>
+ * </ul>
+ * Anything else exits with status 127, unless the server runs commands through the shell.
+ */
+class EmbeddedSshServer implements AutoCloseable {
+    static final String USERNAME = "jenkins";
+    static final String PASSWORD = "secret";
+
+    private static final int COMMAND_NOT_FOUND = 127;
+    private static final int BUFFER_SIZE = 8192;
+    private static final int DEFAULT_MAX_SESSIONS = 10;
+
+    private final SshServer server;
+
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    private final AtomicInteger channels = new AtomicInteger();
+
+    EmbeddedSshServer(Path root) throws IOException {
+        this(root, DEFAULT_MAX_SESSIONS, false);
+    }
+
+    EmbeddedSshServer(Path root, int maxSessions) throws IOException {
+        this(root, maxSessions, false);
+    }
+
+    /**
+     * @param maxSessions the channels allowed per session, like the {@code MaxSessions} of OpenSSH.
+     * @param shell       run every command with {@code /bin/sh} in the root directory, like a real SSH server.
+     */
+    EmbeddedSshServer(Path root, int maxSessions, boolean shell) throws IOException {
+        server = SshServer.setUpDefaultServer();
+        CoreModuleProperties.MAX_CONCURRENT_CHANNELS.set(server, maxSessions);
+        server.setHost("127.0.0.1");
+        server.setPort(0);
+        server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+        server.setPasswordAuthenticator((username, password, session) ->
+                USERNAME.equals(username) && PASSWORD.equals(password));
+        server.setSubsystemFactories(List.of(new SftpSubsystemFactory()));
+        server.setFileSystemFactory(new VirtualFileSystemFactory(root));
+        // Lets the server act as a jump host
+        server.setForwardingFilter(AcceptAllForwardingFilter.INSTANCE);
+        server.setCommandFactory((channel, command) -> new TestCommand(command, shell ? root : null));
+        server.addSessionListener(new SessionListener() {
+            @Override
+            public void sessionCreated(Session session) {
+                sessions.incrementAndGet();
+            }
+        });
+        server.addChannelListener(new ChannelListener() {
+            @Override
+            public void channelOpenSuccess(Channel channel) {
+                channels.incrementAndGet();
+            }
+        });
+        server.start();
+    }
+
+    int getPort() {
+        return server.getPort();
+    }
+
+    /**
+     * @return the number of SSH sessions, i.e. TCP connections with key exchange, accepted so far.
+     */
+    int getSessionCount() {
+        return sessions.get();
+    }
+
+    /**
+     * @return the number of channels, i.e. exec commands and SFTP subsystems, opened so far.
+     */
+    int getChannelCount() {
+        return channels.get();
+    }
+
+    SSHClient newClient() throws Exception {
+        return new SSHClient("127.0.0.1", getPort(), USERNAME, PASSWORD);
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.stop(true);
+    }
+
+    private static final class TestCommand implements Command, Runnable {
+        private final String command;
+        private final Path shellDirectory;
+        private InputStream in;
+        private OutputStream out;
+        private OutputStream err;
+        private ExitCallback exitCallback;
+
+        TestCommand(String command, Path shellDirectory) {
+            this.command = command;
+            this.shellDirectory = shellDirectory;
+        }
+
+        @Override
+        public void setInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public void setOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void setErrorStream(OutputStream err) {
+            this.err = err;
+        }
+
+        @Override
+        public void setExitCallback(ExitCallback callback) {
+            this.exitCallback = callback;
+        }
+
+        @Override
+        public void start(ChannelSession channel, Environment env) {
+            Thread thread = new Thread(this, "EmbeddedSshServer " + command);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            int status = 0;
+            try {
+                if (shellDirectory != null) {
+                    status = runShell();
+                } else if (command.equals("cat")) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int len;
+                    while ((len = in.read(buffer)) >= 0) {
+                        out.write(buffer, 0, len);
+                        out.flush();
+                    }
+                } else if (command.startsWith("echo ")) {
+                    out.write((command.substring("echo ".length()) + "\n").getBytes(StandardCharsets.UTF_8));
+                } else if (command.startsWith("warn ")) {
+                    err.write((command.substring("warn ".length()) + "\n").getBytes(StandardCharsets.UTF_8));
+                    err.flush();
+                } else if (command.startsWith("seq ")) {
+                    int count = Integer.parseInt(command.substring("seq ".length()).trim());
+                    for (int i = 1; i <= count; i++) {
+                        out.write((i + "\n").getBytes(StandardCharsets.UTF_8));
+                    }
+                } else if (command.startsWith("exit ")) {
+                    status = Integer.parseInt(command.substring("exit ".length()).trim());
+                } else {
+                    status = COMMAND_NOT_FOUND;
+                }
+                out.flush();
+            } catch (IOException e) {
+                status = 1;
+            }
+            exitCallback.onExit(status);
+        }
+
+        private int runShell() throws IOException {
+            Process process = new ProcessBuilder("/bin/sh", "-c", command).directory(shellDirectory.toFile()).start();
+            Thread stdin = pump(in, process.getOutputStream());
+            Thread stderr = pump(process.getErrorStream(), err);
+            process.getInputStream().transferTo(out);
+            try {
+                stderr.join();
+                int status = process.waitFor();
+                stdin.interrupt();
+                return status;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+
+        private static Thread pump(InputStream from, OutputStream to) {
+            Thread thread = new Thread(() -> {
+                try (OutputStream target = to) {
+                    from.transferTo(target);
+                } catch (IOException e) {
+                    // The process exited or the channel closed
+                }
+            }, "EmbeddedSshServer pump");
+            thread.setDaemon(true);
+            thread.start();
+            return thread;
+        }
+
+        @Override
+        public void destroy(ChannelSession channel) {
+        }
+    }
+}
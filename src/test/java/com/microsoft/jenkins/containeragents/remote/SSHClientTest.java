@@ -0,0 +1,155 @@
+package com.microsoft.jenkins.containeragents.remote;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Timeout(60)
+class SSHClientTest {
+
+    @TempDir
+    private Path root;
+
+    private EmbeddedSshServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new EmbeddedSshServer(root);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void copyAndExecShareOneSession() throws Exception {
+        byte[] jar = "agent".getBytes(StandardCharsets.UTF_8);
+        try (SSHClient client = server.newClient().connect()) {
+            client.copyTo(new ByteArrayInputStream(jar), "agent.jar");
+
+            ChannelExec channel = client.openExecChannel("cat");
+            try {
+                OutputStream out = channel.getOutputStream();
+                InputStream in = channel.getInputStream();
+                out.write("ping".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                assertThat(new String(in.readNBytes(4), StandardCharsets.UTF_8), equalTo("ping"));
+            } finally {
+                client.closeExecChannel(channel);
+            }
+        }
+
+        assertThat(Files.readAllBytes(root.resolve("agent.jar")), equalTo(jar));
+        assertThat(server.getSessionCount(), equalTo(1));
+    }
+
+    @Test
+    void execRemote() throws Exception {
+        try (SSHClient client = server.newClient().connect()) {
+            assertThat(client.execRemote("echo hello"), equalTo("hello\n"));
+            SSHClient.ExitStatusException e = assertThrows(SSHClient.ExitStatusException.class,
+                    () -> client.execRemote("exit 3"));
+            assertThat(e.getExitStatus(), equalTo(3));
+        }
+    }
+
+    @Test
+    void execRemoteAsyncStreamsLines() throws Exception {
+        try (SSHClient client = server.newClient().connect()) {
+            List<String> lines = new CopyOnWriteArrayList<>();
+            SSHClient.ExitStatus status = client.execRemoteAsync("seq 3", lines::add, 1024).get();
+
+            assertThat(status.getCode(), equalTo(0));
+            assertThat(status.getOutput(), equalTo("1\n2\n3\n"));
+            assertThat(status.isTruncated(), equalTo(false));
+            assertThat(lines, contains("1", "2", "3"));
+
+            lines.clear();
+            status = client.execRemoteAsync("warn careful", lines::add, 1024).get();
+            assertThat(status.getOutput(), equalTo(""));
+            assertThat(lines, contains("careful"));
+        }
+    }
+
+    @Test
+    void execRemoteAsyncCapsCapture() throws Exception {
+        try (SSHClient client = server.newClient().connect()) {
+            AtomicInteger lines = new AtomicInteger();
+            SSHClient.ExitStatus status = client.execRemoteAsync("seq 10000", line -> lines.incrementAndGet(), 100)
+                    .get();
+
+            assertThat(status.getCode(), equalTo(0));
+            assertThat(status.getOutput().length(), equalTo(100));
+            assertThat(status.isTruncated(), equalTo(true));
+            assertThat(lines.get(), equalTo(10000));
+        }
+    }
+
+    @Test
+    void tunnelsThroughJumpHost(@TempDir Path jumpRoot) throws Exception {
+        try (EmbeddedSshServer jumpServer = new EmbeddedSshServer(jumpRoot);
+             SSHClient jump = jumpServer.newClient().connect()) {
+            for (int i = 0; i < 3; i++) {
+                try (SSHClient agent = jump.forwardSSH("127.0.0.1", server.getPort()).connect()) {
+                    assertThat(agent.getPort(), equalTo(server.getPort()));
+                    assertThat(agent.execRemote("echo agent" + i), equalTo("agent" + i + "\n"));
+                }
+            }
+            assertThat(jump.isConnected(), equalTo(true));
+            assertThat(jumpServer.getSessionCount(), equalTo(1));
+            assertThat(server.getSessionCount(), equalTo(3));
+        }
+    }
+
+    @Test
+    void execRemoteAsyncStaysWithinChannelLimit() throws Exception {
+        try (EmbeddedSshServer limited = new EmbeddedSshServer(root, 3);
+             SSHClient client = limited.newClient().withMaxChannels(3).connect()) {
+            List<CompletableFuture<SSHClient.ExitStatus>> results = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                results.add(client.execRemoteAsync("seq 100", line -> { }, 1024));
+            }
+            for (CompletableFuture<SSHClient.ExitStatus> result : results) {
+                assertThat(result.get().getCode(), equalTo(0));
+            }
+            assertThat(limited.getSessionCount(), equalTo(1));
+        }
+    }
+
+    @Test
+    void copyToReusesSftpChannel() throws Exception {
+        try (SSHClient client = server.newClient().connect()) {
+            for (int i = 0; i < 5; i++) {
+                client.copyTo(new ByteArrayInputStream(new byte[]{(byte) i}), "file-" + i);
+            }
+            assertThrows(JSchException.class, () -> client.copyFrom("missing", new ByteArrayOutputStream()));
+            client.copyTo(new ByteArrayInputStream(new byte[]{1}), "file-5");
+        }
+
+        assertThat(Files.readAllBytes(root.resolve("file-3")), equalTo(new byte[]{3}));
+        assertThat(server.getChannelCount(), equalTo(1));
+    }
+}
@@ -0,0 +1,98 @@
+package com.microsoft.jenkins.containeragents.remote;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.UnresolvedAddressException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Timeout(30)
+class SSHPortProbeTest {
+
+    private final SSHPortProbe probe = new SSHPortProbe(System::currentTimeMillis);
+
+    @Test
+    void readyOnceBannerIsSent() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            Thread sshd = serveBanner(server, "SSH-2.0-OpenSSH_9.6\r\n");
+
+            probe.probe("127.0.0.1", server.getLocalPort(), TimeUnit.SECONDS.toMillis(10))
+                    .get(10, TimeUnit.SECONDS);
+            sshd.join();
+        }
+    }
+
+    @Test
+    void waitsForLateServer() throws Exception {
+        int port;
+        try (ServerSocket free = new ServerSocket(0)) {
+            port = free.getLocalPort();
+        }
+        CompletableFuture<Void> ready = probe.probe("127.0.0.1", port, TimeUnit.SECONDS.toMillis(10));
+
+        Thread.sleep(300);
+        try (ServerSocket server = new ServerSocket()) {
+            server.setReuseAddress(true);
+            server.bind(new InetSocketAddress("127.0.0.1", port));
+            serveBanner(server, "SSH-2.0-late\r\n");
+
+            ready.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void timesOutWithoutServer() throws Exception {
+        int port;
+        try (ServerSocket free = new ServerSocket(0)) {
+            port = free.getLocalPort();
+        }
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> probe.probe("127.0.0.1", port, 300).get(10, TimeUnit.SECONDS));
+        assertThat(e.getCause(), instanceOf(TimeoutException.class));
+    }
+
+    @Test
+    void rejectsOtherProtocols() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            serveBanner(server, "HTTP/1.1 400 Bad Request\r\n");
+
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> probe.probe("127.0.0.1", server.getLocalPort(), 300).get(10, TimeUnit.SECONDS));
+            assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        }
+    }
+
+    @Test
+    void failsOnUnresolvedHost() {
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> probe.probe("unresolved.invalid", 22, TimeUnit.SECONDS.toMillis(10)).get(10, TimeUnit.SECONDS));
+        assertThat(e.getCause(), instanceOf(UnresolvedAddressException.class));
+    }
+
+    private static Thread serveBanner(ServerSocket server, String banner) {
+        Thread thread = new Thread(() -> {
+            try (Socket socket = server.accept(); OutputStream out = socket.getOutputStream()) {
+                out.write(banner.getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            } catch (Exception ignored) {
+                // server closed by the test
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
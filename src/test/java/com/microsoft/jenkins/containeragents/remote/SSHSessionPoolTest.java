@@ -0,0 +1,100 @@
+package com.microsoft.jenkins.containeragents.remote;
+
+import com.jcraft.jsch.JSchException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Timeout(60)
+class SSHSessionPoolTest {
+
+    @TempDir
+    private Path root;
+
+    private EmbeddedSshServer server;
+
+    private final SSHSessionPool pool = new SSHSessionPool();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new EmbeddedSshServer(root);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void leasesShareOneSession() throws Exception {
+        SSHSessionPool.Lease first = lease();
+        SSHSessionPool.Lease second = lease();
+        assertThat(second.getClient(), sameInstance(first.getClient()));
+        assertThat(first.getClient().execRemote("echo one"), equalTo("one\n"));
+        assertThat(second.getClient().execRemote("echo two"), equalTo("two\n"));
+
+        first.close();
+        first.close();
+        assertThat(second.getClient().isConnected(), equalTo(true));
+
+        second.close();
+        assertThat(second.getClient().isConnected(), equalTo(false));
+        assertThat(pool.size(), equalTo(0));
+        assertThat(server.getSessionCount(), equalTo(1));
+    }
+
+    @Test
+    void closedSessionIsReplaced() throws Exception {
+        try (SSHSessionPool.Lease first = lease()) {
+            first.getClient().close();
+            try (SSHSessionPool.Lease second = lease()) {
+                assertThat(second.getClient().execRemote("echo again"), equalTo("again\n"));
+            }
+        }
+        assertThat(server.getSessionCount(), equalTo(2));
+    }
+
+    @Test
+    void agentsShareOneJumpHostSession(@TempDir Path jumpRoot) throws Exception {
+        try (EmbeddedSshServer jumpServer = new EmbeddedSshServer(jumpRoot);
+             SSHSessionPool.Lease jump = pool.lease("127.0.0.1", jumpServer.getPort(), auth(), null)) {
+            // The same target twice stands in for two agents, one of them leased directly
+            try (SSHSessionPool.Lease tunnelled = pool.lease("127.0.0.1", server.getPort(), auth(), jump.getClient());
+                 SSHSessionPool.Lease direct = lease()) {
+                assertThat(tunnelled.getClient(), not(sameInstance(direct.getClient())));
+                assertThat(tunnelled.getClient().execRemote("echo tunnelled"), equalTo("tunnelled\n"));
+            }
+            assertThat(jumpServer.getSessionCount(), equalTo(1));
+            assertThat(server.getSessionCount(), equalTo(2));
+        }
+    }
+
+    @Test
+    void otherCredentialsOfTheSameUserDontShareTheSession() throws Exception {
+        try (SSHSessionPool.Lease first = lease()) {
+            UsernameAuth rotated = new UsernamePasswordAuth(EmbeddedSshServer.USERNAME, "rotated");
+            assertThrows(JSchException.class, () -> pool.lease("127.0.0.1", server.getPort(), rotated, null));
+            assertThat(pool.size(), equalTo(1));
+            assertThat(first.getClient().isConnected(), equalTo(true));
+        }
+    }
+
+    private static UsernameAuth auth() {
+        return new UsernamePasswordAuth(EmbeddedSshServer.USERNAME, EmbeddedSshServer.PASSWORD);
+    }
+
+    private SSHSessionPool.Lease lease() throws Exception {
+        return pool.lease("127.0.0.1", server.getPort(),
+                new UsernamePasswordAuth(EmbeddedSshServer.USERNAME, EmbeddedSshServer.PASSWORD), null);
+    }
+}
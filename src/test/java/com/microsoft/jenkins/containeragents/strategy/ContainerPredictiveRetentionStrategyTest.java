@@ -0,0 +1,47 @@
+package com.microsoft.jenkins.containeragents.strategy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+class ContainerPredictiveRetentionStrategyTest {
+
+    @Test
+    void keepsMostRecentlyIdleAgentsForTheExpectedArrivals() {
+        List<Integer> idle = List.of(1, 1, 1, 1);
+
+        assertThat(ContainerPredictiveRetentionStrategy.findSurplus(idle, 2, executors -> executors),
+                contains(1, 1));
+        assertThat(ContainerPredictiveRetentionStrategy.findSurplus(idle, 0, executors -> executors),
+                contains(1, 1, 1, 1));
+        assertThat(ContainerPredictiveRetentionStrategy.findSurplus(idle, 4, executors -> executors), empty());
+    }
+
+    @Test
+    void countsExecutorsOfMultiExecutorAgents() {
+        // Executors of the idle agents, the most recently idle first
+        List<Integer> idle = List.of(4, 4, 2);
+
+        assertThat(ContainerPredictiveRetentionStrategy.findSurplus(idle, 3, executors -> executors), contains(4, 2));
+        assertThat(ContainerPredictiveRetentionStrategy.findSurplus(idle, 5, executors -> executors), contains(2));
+    }
+
+    @Test
+    void preProvisionedAgentIsNoSurplus() {
+        // 0.6 arrivals expected while an agent starts, which pre-provisioning rounds up to one agent
+        int justified = DemandForecast.getJustifiedExecutors(0.6, TimeUnit.MINUTES.toMillis(1));
+        assertThat(justified, equalTo(1));
+
+        List<Integer> preProvisioned = List.of(1);
+        assertThat(ContainerPredictiveRetentionStrategy.findSurplus(preProvisioned, justified,
+                executors -> executors), empty());
+        assertThat(ContainerPredictiveRetentionStrategy.findSurplus(List.of(1, 1), justified,
+                executors -> executors), contains(1));
+    }
+}
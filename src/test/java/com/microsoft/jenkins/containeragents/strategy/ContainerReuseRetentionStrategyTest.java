@@ -0,0 +1,45 @@
+package com.microsoft.jenkins.containeragents.strategy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContainerReuseRetentionStrategyTest {
+
+    @Test
+    void usedUpAfterMaxBuilds() {
+        ContainerReuseRetentionStrategy strategy = new ContainerReuseRetentionStrategy(3, 0);
+        assertFalse(strategy.isUsedUp(2, TimeUnit.DAYS.toMillis(1)));
+        assertTrue(strategy.isUsedUp(3, 0));
+    }
+
+    @Test
+    void usedUpAfterMaxLifetime() {
+        ContainerReuseRetentionStrategy strategy = new ContainerReuseRetentionStrategy(10, 30);
+        assertFalse(strategy.isUsedUp(1, TimeUnit.MINUTES.toMillis(29)));
+        assertTrue(strategy.isUsedUp(1, TimeUnit.MINUTES.toMillis(30)));
+    }
+
+    @Test
+    void invalidLimitsAreClamped() {
+        ContainerReuseRetentionStrategy strategy = new ContainerReuseRetentionStrategy(0, -5);
+        assertEquals(1, strategy.getMaxBuilds());
+        assertEquals(0, strategy.getMaxLifetimeMinutes());
+        assertTrue(strategy.isUsedUp(1, 0));
+    }
+
+    @Test
+    void gracePeriodDefaultsToTenSeconds() {
+        ContainerReuseRetentionStrategy strategy = new ContainerReuseRetentionStrategy(3, 0);
+        assertEquals(10, strategy.getGracePeriodSeconds());
+
+        strategy.setGracePeriodSeconds(-1);
+        assertEquals(0, strategy.getGracePeriodSeconds());
+        strategy.setGracePeriodSeconds(30);
+        assertEquals(30, strategy.getGracePeriodSeconds());
+    }
+}
@@ -0,0 +1,62 @@
+package com.microsoft.jenkins.containeragents.strategy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+class DemandForecastTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private final DemandForecast forecast = new DemandForecast(now::get);
+
+    @Test
+    void steadyArrivalsConvergeToTheirRate() {
+        // Two arrivals a minute for an hour
+        for (int i = 0; i < 120; i++) {
+            forecast.recordArrival("linux");
+            now.addAndGet(TimeUnit.SECONDS.toMillis(30));
+        }
+        assertThat(forecast.getArrivalsPerMinute("linux"::equals), closeTo(2, 0.2));
+        assertThat(forecast.getArrivalsPerMinute("windows"::equals), equalTo(0.0));
+    }
+
+    @Test
+    void rateDecaysWhenArrivalsStop() {
+        for (int i = 0; i < 60; i++) {
+            forecast.recordArrival("linux");
+            now.addAndGet(TimeUnit.SECONDS.toMillis(10));
+        }
+        final double peak = forecast.getArrivalsPerMinute("linux"::equals);
+
+        now.addAndGet(DemandForecast.TIME_CONSTANT_MILLIS);
+        assertThat(forecast.getArrivalsPerMinute("linux"::equals), closeTo(peak / Math.E, 0.01));
+
+        now.addAndGet(TimeUnit.HOURS.toMillis(2));
+        assertThat(forecast.getArrivalsPerMinute(label -> true), lessThan(0.001));
+    }
+
+    @Test
+    void sumsTheMatchingLabels() {
+        for (int i = 0; i < 30; i++) {
+            forecast.recordArrival("linux");
+            forecast.recordArrival("linux && docker");
+            forecast.recordArrival("windows");
+            now.addAndGet(TimeUnit.SECONDS.toMillis(20));
+        }
+        final double linux = forecast.getArrivalsPerMinute("linux"::equals);
+        assertThat(forecast.getArrivalsPerMinute(label -> label.startsWith("linux")), closeTo(2 * linux, 0.001));
+    }
+
+    @Test
+    void expectedArrivalsDuringStartup() {
+        assertThat(DemandForecast.getExpectedArrivals(3, TimeUnit.SECONDS.toMillis(40)), closeTo(2, 0.001));
+        assertThat(DemandForecast.getExpectedArrivals(0, TimeUnit.MINUTES.toMillis(5)), equalTo(0.0));
+    }
+}
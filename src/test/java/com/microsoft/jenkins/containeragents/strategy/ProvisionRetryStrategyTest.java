@@ -34,6 +34,16 @@ class ProvisionRetryStrategyTest {
         assertEquals(interval * 2, record.getInterval());
     }
 
+    @Test
+    void testConfigurationFailure() {
+        final String templateName = "TEMPLATE4";
+        strategy.failure(templateName);
+        strategy.configurationFailure(templateName);
+        assertThat(strategy.getNextRetryTime(templateName) - System.currentTimeMillis(), greaterThan(60 * 1000L));
+        strategy.success(templateName);
+        assertTrue(strategy.isEnabled(templateName));
+    }
+
     @Test
     void testIsEnabled() {
         final String templateName = "TEMPLATE3";
@@ -0,0 +1,96 @@
+package com.microsoft.jenkins.containeragents.strategy;
+
+import com.microsoft.jenkins.containeragents.aci.AciContainerTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TemplateSelectionPolicyTest {
+
+    private final ProvisionStatistics statistics = new ProvisionStatistics();
+
+    private final AciContainerTemplate first = template("first");
+
+    private final AciContainerTemplate second = template("second");
+
+    private final List<AciContainerTemplate> candidates = List.of(first, second);
+
+    @Test
+    void firstMatch() {
+        assertSame(first, TemplateSelectionPolicy.FIRST_MATCH.select(candidates, statistics));
+        assertSame(first, TemplateSelectionPolicy.FIRST_MATCH.select(candidates, statistics));
+    }
+
+    @Test
+    void roundRobin() {
+        assertSame(first, TemplateSelectionPolicy.ROUND_ROBIN.select(candidates, statistics));
+        assertSame(second, TemplateSelectionPolicy.ROUND_ROBIN.select(candidates, statistics));
+        assertSame(first, TemplateSelectionPolicy.ROUND_ROBIN.select(candidates, statistics));
+    }
+
+    @Test
+    void leastInFlight() {
+        statistics.provisionStarted(first.getName());
+        assertSame(second, TemplateSelectionPolicy.LEAST_IN_FLIGHT.select(candidates, statistics));
+
+        statistics.provisionStarted(second.getName());
+        statistics.provisionStarted(second.getName());
+        assertSame(first, TemplateSelectionPolicy.LEAST_IN_FLIGHT.select(candidates, statistics));
+
+        statistics.provisionFailed(second.getName());
+        statistics.provisionSucceeded(second.getName(), 1000);
+        assertSame(second, TemplateSelectionPolicy.LEAST_IN_FLIGHT.select(candidates, statistics));
+    }
+
+    @Test
+    void weighted() {
+        first.setWeight(3);
+        List<AciContainerTemplate> selected = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            selected.add(TemplateSelectionPolicy.WEIGHTED.select(candidates, statistics));
+        }
+        assertEquals(6, selected.stream().filter(template -> template == first).count());
+        assertEquals(2, selected.stream().filter(template -> template == second).count());
+    }
+
+    @Test
+    void fastestStartup() {
+        statistics.provisionStarted(first.getName());
+        statistics.provisionSucceeded(first.getName(), 60000);
+        // second has no history yet, so it gets measured first
+        assertSame(second, TemplateSelectionPolicy.FASTEST_STARTUP.select(candidates, statistics));
+
+        statistics.provisionStarted(second.getName());
+        statistics.provisionSucceeded(second.getName(), 120000);
+        assertSame(first, TemplateSelectionPolicy.FASTEST_STARTUP.select(candidates, statistics));
+    }
+
+    @Test
+    void fastestStartupTriesOneUnmeasuredProvisionAtATime() {
+        statistics.provisionStarted(first.getName());
+        statistics.provisionSucceeded(first.getName(), 60000);
+
+        assertSame(second, TemplateSelectionPolicy.FASTEST_STARTUP.select(candidates, statistics));
+        statistics.provisionStarted(second.getName());
+        assertSame(first, TemplateSelectionPolicy.FASTEST_STARTUP.select(candidates, statistics));
+    }
+
+    @Test
+    void fastestStartupRanksFailingTemplatesLast() {
+        statistics.provisionStarted(first.getName());
+        statistics.provisionSucceeded(first.getName(), 120000);
+        statistics.provisionStarted(second.getName());
+        statistics.provisionFailed(second.getName(), 600000);
+
+        assertSame(first, TemplateSelectionPolicy.FASTEST_STARTUP.select(candidates, statistics));
+    }
+
+    private static AciContainerTemplate template(String name) {
+        return new AciContainerTemplate(name, "label", 100, "Linux", "image", "command", "rootFs",
+                null, null, null, null, null, "cpu", "memory");
+    }
+}
@@ -0,0 +1,117 @@
+package com.microsoft.jenkins.containeragents.strategy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Timeout(60)
+class TerminationSchedulerTest {
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    private final ExecutorService worker = Executors.newFixedThreadPool(4);
+
+    private final TerminationScheduler scheduler = new TerminationScheduler(timer, worker);
+
+    @AfterEach
+    void tearDown() {
+        timer.shutdownNow();
+        worker.shutdownNow();
+    }
+
+    @Test
+    void concurrentRequestsTerminateEveryNodeOnce() throws Exception {
+        final int nodes = 200;
+        final int threads = 8;
+        Map<String, AtomicInteger> terminations = new ConcurrentHashMap<>();
+        AtomicInteger scheduled = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        // Nodes stay pending until every caller is through, so each later request has to be recognised as duplicate
+        CountDownLatch callersDone = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(callers.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < nodes; i++) {
+                        String name = "aci-" + i;
+                        if (scheduler.schedule(name, i % 10, () -> {
+                            callersDone.await();
+                            terminations.computeIfAbsent(name, key -> new AtomicInteger()).incrementAndGet();
+                        })) {
+                            scheduled.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+            callersDone.countDown();
+        } finally {
+            callers.shutdown();
+        }
+        awaitIdle();
+
+        assertThat(scheduled.get(), equalTo(nodes));
+        assertThat(terminations.size(), equalTo(nodes));
+        for (AtomicInteger count : terminations.values()) {
+            assertThat(count.get(), equalTo(1));
+        }
+    }
+
+    @Test
+    void requestsDuringTheGracePeriodAreIgnored() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger terminations = new AtomicInteger();
+        assertTrue(scheduler.schedule("aci", 0, () -> {
+            release.await();
+            terminations.incrementAndGet();
+        }));
+        assertFalse(scheduler.schedule("aci", 0, terminations::incrementAndGet));
+        assertTrue(scheduler.isPending("aci"));
+
+        release.countDown();
+        awaitIdle();
+        assertThat(terminations.get(), equalTo(1));
+    }
+
+    @Test
+    void failedTerminationCanBeScheduledAgain() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        assertTrue(scheduler.schedule("aci", 0, () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("Azure is down");
+        }));
+        awaitIdle();
+
+        assertTrue(scheduler.schedule("aci", 0, attempts::incrementAndGet));
+        awaitIdle();
+        assertThat(attempts.get(), equalTo(2));
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        while (scheduler.getPendingCount() > 0) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.microsoft.jenkins.containeragents.strategy;
+
+import hudson.XmlFile;
+import hudson.util.XStream2;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThan;
+
+class WeeklyArrivalModelTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private static final long WEEK = WeeklyArrivalModel.HOURS_PER_WEEK * HOUR;
+
+    private final AtomicLong now = new AtomicLong(0);
+
+    private final WeeklyArrivalModel model = new WeeklyArrivalModel(now::get, ZoneOffset.UTC);
+
+    @Test
+    void learnsTheBusyHourOfTheWeek() {
+        // 60 arrivals in hour 9 of every week, none otherwise
+        for (int week = 0; week < 4; week++) {
+            arrive("linux", week * WEEK + 9 * HOUR, 60);
+        }
+        now.set(4 * WEEK + 8 * HOUR);
+
+        assertThat(model.getForecastPerMinute("linux", now.get() + HOUR), closeTo(1, 0.001));
+        assertThat(model.getForecastPerMinute("linux", now.get()), equalTo(0.0));
+        assertThat(model.getForecastPerMinute("windows", now.get() + HOUR), equalTo(0.0));
+        assertThat(model.getForecastPerMinute("linux"::equals, now.get() + HOUR), closeTo(1, 0.001));
+    }
+
+    @Test
+    void patternFadesWhenItStops() {
+        for (int week = 0; week < 4; week++) {
+            arrive("linux", week * WEEK + 9 * HOUR, 60);
+        }
+        now.set(12 * WEEK + 8 * HOUR);
+
+        assertThat(model.getForecastPerMinute("linux", now.get() + HOUR), lessThan(0.1));
+    }
+
+    @Test
+    void keepsForecastAndActualOfTheLastDay() {
+        for (int week = 0; week < 2; week++) {
+            arrive("linux", week * WEEK + 9 * HOUR, 30);
+        }
+        arrive("linux", 2 * WEEK + 9 * HOUR, 45);
+        now.set(2 * WEEK + 10 * HOUR);
+
+        List<WeeklyArrivalModel.HourlyOutcome> outcomes = model.getOutcomes("linux");
+        assertThat(outcomes, hasSize(24));
+        WeeklyArrivalModel.HourlyOutcome last = outcomes.get(outcomes.size() - 1);
+        assertThat(last.getHour(), equalTo(2 * WeeklyArrivalModel.HOURS_PER_WEEK + 9L));
+        assertThat(last.getForecast(), closeTo(30, 0.001));
+        assertThat(last.getActual(), equalTo(45));
+        assertThat(model.getSummary("linux"), equalTo(
+                "next hour 0.0 forecast, last 24 hours 30.0 forecast / 45 actual (mean absolute error 0.6 per hour)"));
+    }
+
+    @Test
+    void survivesRestart(@TempDir Path dir) throws Exception {
+        for (int week = 0; week < 4; week++) {
+            arrive("linux", week * WEEK + 9 * HOUR, 60);
+        }
+        XmlFile file = new XmlFile(new XStream2(), dir.resolve("model.xml").toFile());
+        model.save(file);
+
+        WeeklyArrivalModel restarted = new WeeklyArrivalModel(now::get, ZoneOffset.UTC);
+        restarted.load(file);
+        now.set(4 * WEEK + 8 * HOUR);
+
+        assertThat(restarted.getForecastPerMinute("linux", now.get() + HOUR), closeTo(1, 0.001));
+        assertThat(restarted.getOutcomes("linux"), hasSize(24));
+    }
+
+    private void arrive(String label, long hourStart, int count) {
+        for (int i = 0; i < count; i++) {
+            now.set(hourStart + i * (HOUR / count));
+            model.recordArrival(label);
+        }
+    }
+}